@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.benchmark;
+
+import ch.wisv.areafiftylan.products.model.Ticket;
+import ch.wisv.areafiftylan.products.model.TicketOption;
+import ch.wisv.areafiftylan.products.model.TicketType;
+import ch.wisv.areafiftylan.products.model.order.Order;
+import ch.wisv.areafiftylan.users.model.Gender;
+import ch.wisv.areafiftylan.users.model.User;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Builds the entities used by the benchmarks, without a database.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static User createUser(int number) {
+        User user = new User(number + "@mail.com", "passwordHash");
+        user.getProfile().setAllFields("User", String.valueOf(number), "DisplayName" + number,
+                LocalDate.of(1998, 1, 1), Gender.MALE, "Mekelweg " + number, "2628CD", "Delft", "0612345678", null);
+        return user;
+    }
+
+    static TicketType createTicketType(String name, List<TicketOption> options) {
+        TicketType type = new TicketType(name, "Benchmark ticket", 42.5F, 0, LocalDateTime.now().plusDays(1), true);
+        options.forEach(type::addPossibleOption);
+        return type;
+    }
+
+    static List<TicketOption> createTicketOptions() {
+        return List.of(new TicketOption("chMember", -5F), new TicketOption("pickupService", 2.5F),
+                new TicketOption("parking", 7.5F));
+    }
+
+    static Ticket createTicket(User owner, TicketType type) {
+        Ticket ticket = new Ticket(owner, type);
+        type.getPossibleOptions().forEach(ticket::addOption);
+        ticket.setValid(true);
+        return ticket;
+    }
+
+    /**
+     * Create an Order with the given number of Tickets. Tickets are only equal when all their fields are, so every
+     * Ticket gets its own type to keep them apart in the Set of the Order.
+     */
+    static Order createOrder(User user, int tickets) {
+        List<TicketOption> options = createTicketOptions();
+        Order order = new Order(user);
+        for (int i = 0; i < tickets; i++) {
+            order.addTicket(createTicket(user, createTicketType("type" + i, options)));
+        }
+        return order;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.benchmark;
+
+import ch.wisv.areafiftylan.extras.consumption.model.Consumption;
+import ch.wisv.areafiftylan.extras.consumption.model.ConsumptionMap;
+import ch.wisv.areafiftylan.products.model.Ticket;
+import ch.wisv.areafiftylan.products.model.order.Order;
+import ch.wisv.areafiftylan.security.token.AuthenticationToken;
+import ch.wisv.areafiftylan.users.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the model methods that run for every Ticket, Order or request: prices, consumptions and tokens.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DomainBenchmark {
+
+    /**
+     * Number of Tickets in the Order, and number of consumptions already made on the ConsumptionMap
+     */
+    @Param({ "1", "5" })
+    public int size;
+
+    private Ticket ticket;
+    private Order order;
+    private ConsumptionMap consumptionMap;
+    private Consumption consumption;
+    private AuthenticationToken authenticationToken;
+
+    @Setup
+    public void setup() {
+        User user = BenchmarkData.createUser(1);
+        order = BenchmarkData.createOrder(user, size);
+        ticket = order.getTickets().iterator().next();
+
+        consumptionMap = new ConsumptionMap(ticket);
+        for (int i = 0; i < size; i++) {
+            consumptionMap.consume(new Consumption("Consumption " + i));
+        }
+        consumption = new Consumption("Beer");
+
+        authenticationToken = new AuthenticationToken(user);
+    }
+
+    @Benchmark
+    public float ticketPrice() {
+        return ticket.getPrice();
+    }
+
+    @Benchmark
+    public float orderAmount() {
+        return order.getAmount();
+    }
+
+    @Benchmark
+    public boolean consumeAndReset() {
+        consumptionMap.consume(consumption);
+        boolean consumed = consumptionMap.isConsumed(consumption);
+        consumptionMap.reset(consumption);
+        return consumed;
+    }
+
+    @Benchmark
+    public boolean isConsumed() {
+        return consumptionMap.isConsumed(consumption);
+    }
+
+    @Benchmark
+    public boolean tokenIsValid() {
+        return authenticationToken.isValid();
+    }
+}
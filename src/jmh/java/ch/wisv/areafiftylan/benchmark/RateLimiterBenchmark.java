@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.benchmark;
+
+import ch.wisv.areafiftylan.security.ratelimit.SlidingWindowRateLimiter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the SlidingWindowRateLimiter with many threads counting requests at the same time: all on one key, spread
+ * over fewer keys than there are slots, and over so many keys that slots are evicted. The Guava cache of attempts that
+ * the login filter used before is included for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    private static final int COUNTERS = 8192;
+
+    private String[] fewKeys;
+    private String[] manyKeys;
+    private SlidingWindowRateLimiter rateLimiter;
+    private Cache<String, Integer> attemptsCache;
+
+    @Setup
+    public void setup() {
+        fewKeys = keys(COUNTERS / 8);
+        manyKeys = keys(COUNTERS * 16);
+        rateLimiter = new SlidingWindowRateLimiter(10, 60_000, COUNTERS);
+        attemptsCache = CacheBuilder.newBuilder().maximumSize(1000).expireAfterAccess(5, TimeUnit.MINUTES).build();
+    }
+
+    @Benchmark
+    public boolean sameKey() {
+        return rateLimiter.tryAcquire("10.0.0.1");
+    }
+
+    @Benchmark
+    public boolean fewKeys() {
+        return rateLimiter.tryAcquire(fewKeys[ThreadLocalRandom.current().nextInt(fewKeys.length)]);
+    }
+
+    @Benchmark
+    public boolean manyKeys() {
+        return rateLimiter.tryAcquire(manyKeys[ThreadLocalRandom.current().nextInt(manyKeys.length)]);
+    }
+
+    @Benchmark
+    public boolean manyKeysAttemptsCache() {
+        String key = manyKeys[ThreadLocalRandom.current().nextInt(manyKeys.length)];
+        Integer attempts = attemptsCache.getIfPresent(key);
+        attempts = attempts == null ? 1 : attempts + 1;
+        attemptsCache.put(key, attempts);
+        return attempts <= 10;
+    }
+
+    private static String[] keys(int count) {
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = "10." + (i >> 16 & 0xff) + "." + (i >> 8 & 0xff) + "." + (i & 0xff);
+        }
+        return keys;
+    }
+}
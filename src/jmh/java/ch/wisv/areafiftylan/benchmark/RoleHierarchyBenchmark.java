@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.benchmark;
+
+import ch.wisv.areafiftylan.security.SecurityConfiguration;
+import ch.wisv.areafiftylan.users.model.Role;
+import ch.wisv.areafiftylan.users.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.access.hierarchicalroles.RoleHierarchyImpl;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the role checks of CurrentUserServiceImpl, which resolve the role hierarchy through User.hasRole, against
+ * resolving the reachable authorities with the RoleHierarchyImpl of Spring Security on every check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoleHierarchyBenchmark {
+
+    private User user;
+    private RoleHierarchyImpl roleHierarchy;
+
+    @Setup
+    public void setup() {
+        user = BenchmarkData.createUser(1);
+        user.addRole(Role.ROLE_COMMITTEE);
+
+        roleHierarchy = new RoleHierarchyImpl();
+        roleHierarchy.setHierarchy(SecurityConfiguration.HIERARCHY);
+    }
+
+    @Benchmark
+    public boolean hasRole() {
+        return user.hasRole(Role.ROLE_OPERATOR);
+    }
+
+    @Benchmark
+    public boolean hasRoleAfterChange() {
+        // Changing the roles clears the cached reachable roles, so this resolves the hierarchy again
+        user.addRole(Role.ROLE_USER);
+        return user.hasRole(Role.ROLE_OPERATOR);
+    }
+
+    @Benchmark
+    public boolean roleHierarchyImpl() {
+        Collection<? extends GrantedAuthority> reachable =
+                roleHierarchy.getReachableGrantedAuthorities(user.getAuthorities());
+        return reachable.stream().anyMatch(authority -> authority.getAuthority().equals("ROLE_OPERATOR"));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.benchmark;
+
+import ch.wisv.areafiftylan.products.model.TicketType;
+import ch.wisv.areafiftylan.seats.model.Seat;
+import ch.wisv.areafiftylan.seats.model.SeatmapResponse;
+import ch.wisv.areafiftylan.seats.service.SeatRepository;
+import ch.wisv.areafiftylan.seats.service.SeatServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks grouping all Seats into the seatmap. The SeatRepository is mocked, so only the grouping is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeatMapBenchmark {
+
+    public static final int SEATS_PER_GROUP = 16;
+
+    /**
+     * Total number of Seats, of which half are taken
+     */
+    @Param({ "160", "640" })
+    public int seats;
+
+    private SeatServiceImpl seatService;
+
+    @Setup
+    public void setup() {
+        seatService = new SeatServiceImpl(createSeatRepository(seats), null, null, null,
+                new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public SeatmapResponse getSeatMap() {
+        return seatService.getSeatMap();
+    }
+
+    static SeatRepository createSeatRepository(int seats) {
+        TicketType type = BenchmarkData.createTicketType("Early bird", Collections.emptyList());
+        List<Seat> seatList = new ArrayList<>();
+        for (int i = 0; i < seats; i++) {
+            Seat seat = new Seat(String.valueOf((char) ('A' + i / SEATS_PER_GROUP)), i % SEATS_PER_GROUP + 1);
+            if (i % 2 == 0) {
+                seat.setTicket(BenchmarkData.createTicket(BenchmarkData.createUser(i), type));
+            }
+            seatList.add(seat);
+        }
+
+        SeatRepository seatRepository = Mockito.mock(SeatRepository.class);
+        Mockito.when(seatRepository.findAll()).thenReturn(seatList);
+        return seatRepository;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.benchmark;
+
+import ch.wisv.areafiftylan.products.model.order.Order;
+import ch.wisv.areafiftylan.seats.model.SeatmapResponse;
+import ch.wisv.areafiftylan.seats.service.SeatServiceImpl;
+import ch.wisv.areafiftylan.utils.view.View;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the JSON serialization of the seatmap and of an Order under each View. The ObjectMapper is configured
+ * like the one of the application, which leaves out fields without a JsonView.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    /**
+     * Simple name of the View to serialize with, see {@link View}
+     */
+    @Param({ "Public", "Participants", "Team", "NoProfile", "OrderOverview" })
+    public String view;
+
+    private ObjectWriter writer;
+    private SeatmapResponse seatmap;
+    private Order order;
+
+    @Setup
+    public void setup() throws ClassNotFoundException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        writer = objectMapper.writerWithView(Class.forName(View.class.getName() + "$" + view));
+
+        SeatServiceImpl seatService =
+                new SeatServiceImpl(SeatMapBenchmark.createSeatRepository(160), null, null, null,
+                        new SimpleMeterRegistry());
+        seatmap = seatService.getSeatMap();
+        order = BenchmarkData.createOrder(BenchmarkData.createUser(1), 5);
+    }
+
+    @Benchmark
+    public byte[] seatmap() throws JsonProcessingException {
+        return writer.writeValueAsBytes(seatmap);
+    }
+
+    @Benchmark
+    public byte[] order() throws JsonProcessingException {
+        return writer.writeValueAsBytes(order);
+    }
+}
@@ -18,6 +18,7 @@
 package ch.wisv.areafiftylan.exception;
 
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -80,6 +81,25 @@ public ResponseEntity<?> handleInvalidRFIDException(TicketAlreadyLinkedException
         return createResponseEntity(HttpStatus.CONFLICT, e.getMessage());
     }
 
+    @ExceptionHandler(PasswordEncoderSaturatedException.class)
+    public ResponseEntity<?> handlePasswordEncoderSaturatedException(PasswordEncoderSaturatedException ex) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        return createResponseEntity(HttpStatus.SERVICE_UNAVAILABLE, headers, ex.getMessage());
+    }
+
+    @ExceptionHandler(AccessTokenUnavailableException.class)
+    public ResponseEntity<?> handleAccessTokenUnavailableException(AccessTokenUnavailableException ex) {
+        return createResponseEntity(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage());
+    }
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<?> handleRateLimitExceededException(RateLimitExceededException ex) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()));
+        return createResponseEntity(HttpStatus.TOO_MANY_REQUESTS, headers, ex.getMessage());
+    }
+
     @ExceptionHandler(ConstraintViolationException.class)
     public ResponseEntity<?> handleConstraintViolationException(ConstraintViolationException ex) {
         StringBuilder b = new StringBuilder();
@@ -22,11 +22,14 @@
 import ch.wisv.areafiftylan.extras.consumption.model.Consumption;
 import ch.wisv.areafiftylan.extras.consumption.model.ConsumptionMap;
 import ch.wisv.areafiftylan.extras.consumption.service.ConsumptionService;
+import ch.wisv.areafiftylan.utils.KeysetPage;
+import ch.wisv.areafiftylan.utils.NdjsonStreamer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.Collection;
 
@@ -37,10 +40,12 @@
 @RequestMapping("/consumptions")
 public class ConsumptionController {
     private final ConsumptionService consumptionService;
+    private final NdjsonStreamer ndjsonStreamer;
 
     @Autowired
-    public ConsumptionController(ConsumptionService consumptionService) {
+    public ConsumptionController(ConsumptionService consumptionService, NdjsonStreamer ndjsonStreamer) {
         this.consumptionService = consumptionService;
+        this.ndjsonStreamer = ndjsonStreamer;
     }
 
     @GetMapping
@@ -53,6 +58,17 @@ public Collection<ConsumptionMap> getAllConsumptionMaps() {
         return consumptionService.getConsumptionMaps();
     }
 
+    @GetMapping(value = "/consumptionMaps", params = "limit")
+    public KeysetPage<ConsumptionMap> getConsumptionMaps(@RequestParam(defaultValue = "0") long after,
+                                                         @RequestParam int limit) {
+        return consumptionService.getConsumptionMaps(after, limit);
+    }
+
+    @GetMapping(value = "/consumptionMaps", produces = NdjsonStreamer.APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamConsumptionMaps() {
+        return ndjsonStreamer.stream(consumptionService::streamAllConsumptionMaps, null);
+    }
+
     @PostMapping
     public ResponseEntity<?> addAvailableConsumption(@RequestBody String consumptionName) {
         consumptionService.addPossibleConsumption(consumptionName);
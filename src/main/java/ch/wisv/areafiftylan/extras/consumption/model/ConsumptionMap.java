@@ -20,8 +20,10 @@
 import ch.wisv.areafiftylan.exception.AlreadyConsumedException;
 import ch.wisv.areafiftylan.products.model.Ticket;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
+import lombok.ToString;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -30,13 +32,18 @@
 @Entity
 @Data
 @NoArgsConstructor
+@NamedEntityGraph(name = ConsumptionMap.WITH_CONSUMPTIONS, attributeNodes = @NamedAttributeNode("consumptionsMade"))
 public class ConsumptionMap {
 
+    public static final String WITH_CONSUMPTIONS = "ConsumptionMap.consumptionsMade";
+
     @Id
     @GeneratedValue
     Long id;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Collection<Consumption> consumptionsMade;
 
     @NonNull
@@ -17,12 +17,32 @@
 
 package ch.wisv.areafiftylan.extras.consumption.model;
 
+import ch.wisv.areafiftylan.utils.NdjsonStreamer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface ConsumptionMapsRepository extends JpaRepository<ConsumptionMap, Long> {
+    @EntityGraph(ConsumptionMap.WITH_CONSUMPTIONS)
     Optional<ConsumptionMap> findByTicketId(Long ticketId);
+
+    @EntityGraph(ConsumptionMap.WITH_CONSUMPTIONS)
+    List<ConsumptionMap> findDistinctByOrderByIdAsc();
+
+    List<ConsumptionMap> findAllByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    @QueryHints({ @QueryHint(name = HINT_FETCH_SIZE, value = NdjsonStreamer.FETCH_SIZE),
+                  @QueryHint(name = HINT_READONLY, value = "true") })
+    Stream<ConsumptionMap> streamAllByOrderByIdAsc();
 }
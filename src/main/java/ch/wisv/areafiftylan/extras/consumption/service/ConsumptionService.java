@@ -19,8 +19,10 @@
 
 import ch.wisv.areafiftylan.extras.consumption.model.Consumption;
 import ch.wisv.areafiftylan.extras.consumption.model.ConsumptionMap;
+import ch.wisv.areafiftylan.utils.KeysetPage;
 
 import java.util.Collection;
+import java.util.stream.Stream;
 
 public interface ConsumptionService {
     ConsumptionMap getByTicketIdIfValid(Long ticketId);
@@ -37,6 +39,10 @@ public interface ConsumptionService {
 
     Collection<ConsumptionMap> getConsumptionMaps();
 
+    KeysetPage<ConsumptionMap> getConsumptionMaps(long after, int limit);
+
+    Stream<ConsumptionMap> streamAllConsumptionMaps();
+
     void removePossibleConsumption(Long consumptionId);
 
     Consumption addPossibleConsumption(String consumptionName);
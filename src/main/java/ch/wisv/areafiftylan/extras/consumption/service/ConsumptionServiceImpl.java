@@ -25,13 +25,21 @@
 import ch.wisv.areafiftylan.extras.consumption.model.PossibleConsumptionsRepository;
 import ch.wisv.areafiftylan.products.model.Ticket;
 import ch.wisv.areafiftylan.products.service.TicketService;
+import ch.wisv.areafiftylan.utils.KeysetPage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import javax.transaction.Transactional;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ConsumptionServiceImpl implements ConsumptionService {
@@ -39,13 +47,16 @@ public class ConsumptionServiceImpl implements ConsumptionService {
     private final PossibleConsumptionsRepository possibleConsumptionsRepository;
     private final TicketService ticketService;
 
+    private final Timer consumeTimer;
+
     @Autowired
     public ConsumptionServiceImpl(ConsumptionMapsRepository consumptionMapsRepository,
                                   PossibleConsumptionsRepository possibleConsumptionsRepository,
-                                  TicketService ticketService) {
+                                  TicketService ticketService, MeterRegistry meterRegistry) {
         this.consumptionMapsRepository = consumptionMapsRepository;
         this.possibleConsumptionsRepository = possibleConsumptionsRepository;
         this.ticketService = ticketService;
+        this.consumeTimer = Timer.builder("a5l.consumptions.consume").register(meterRegistry);
     }
 
     @Override
@@ -70,10 +81,12 @@ private ConsumptionMap initializeConsumptionMap(Long ticketId) {
 
     @Override
     public void consume(Long ticketId, Long consumptionId) {
-        ConsumptionMap consumptions = getByTicketIdIfValid(ticketId);
-        Consumption consumption = getByConsumptionId(consumptionId);
-        consumptions.consume(consumption);
-        consumptionMapsRepository.saveAndFlush(consumptions);
+        consumeTimer.record(() -> {
+            ConsumptionMap consumptions = getByTicketIdIfValid(ticketId);
+            Consumption consumption = getByConsumptionId(consumptionId);
+            consumptions.consume(consumption);
+            consumptionMapsRepository.saveAndFlush(consumptions);
+        });
     }
 
     @Override
@@ -97,7 +110,24 @@ public Collection<Consumption> getPossibleConsumptions() {
 
     @Override
     public Collection<ConsumptionMap> getConsumptionMaps() {
-        return consumptionMapsRepository.findAll();
+        return consumptionMapsRepository.findDistinctByOrderByIdAsc();
+    }
+
+    @Override
+    @Transactional
+    public KeysetPage<ConsumptionMap> getConsumptionMaps(long after, int limit) {
+        Pageable pageable = KeysetPage.pageable(limit);
+        List<ConsumptionMap> maps = consumptionMapsRepository.findAllByIdGreaterThanOrderByIdAsc(after, pageable);
+
+        // Fetching the consumptions in the page query would make Hibernate paginate in memory, so load them in batches
+        maps.forEach(map -> Hibernate.initialize(map.getConsumptionsMade()));
+
+        return KeysetPage.of(maps, pageable, ConsumptionMap::getId);
+    }
+
+    @Override
+    public Stream<ConsumptionMap> streamAllConsumptionMaps() {
+        return consumptionMapsRepository.streamAllByOrderByIdAsc();
     }
 
     @Override
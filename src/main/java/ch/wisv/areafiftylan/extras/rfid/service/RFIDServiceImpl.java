@@ -22,7 +22,10 @@
 import ch.wisv.areafiftylan.products.model.Ticket;
 import ch.wisv.areafiftylan.products.service.repository.TicketRepository;
 import ch.wisv.areafiftylan.users.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.Collection;
@@ -34,11 +37,17 @@ public class RFIDServiceImpl implements RFIDService {
 
     private final RFIDLinkRepository rfidLinkRepository;
     private final TicketRepository ticketRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Timer lookupTimer;
 
     @Autowired
-    public RFIDServiceImpl(RFIDLinkRepository rfidLinkRepository, TicketRepository ticketRepository) {
+    public RFIDServiceImpl(RFIDLinkRepository rfidLinkRepository, TicketRepository ticketRepository,
+                           ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
         this.rfidLinkRepository = rfidLinkRepository;
         this.ticketRepository = ticketRepository;
+        this.eventPublisher = eventPublisher;
+        this.lookupTimer = Timer.builder("a5l.rfid.lookup").register(meterRegistry);
     }
 
     private Ticket getTicketById(Long ticketId) {
@@ -77,14 +86,16 @@ public RFIDLink addRFIDLink(String rfid, Long ticketId) {
         }
 
         Ticket ticket = getTicketById(ticketId);
-        RFIDLink newLink = new RFIDLink(rfid, ticket);
-        return rfidLinkRepository.saveAndFlush(newLink);
+        RFIDLink newLink = rfidLinkRepository.saveAndFlush(new RFIDLink(rfid, ticket));
+        eventPublisher.publishEvent(new RFIDLinksChangedEvent());
+        return newLink;
     }
 
     @Override
     public RFIDLink removeRFIDLink(String rfid) {
         RFIDLink link = getLinkByRFID(rfid);
         rfidLinkRepository.delete(link);
+        eventPublisher.publishEvent(new RFIDLinksChangedEvent());
         return link;
     }
 
@@ -92,6 +103,7 @@ public RFIDLink removeRFIDLink(String rfid) {
     public RFIDLink removeRFIDLink(Long ticketId) {
         RFIDLink link = getLinkByTicketId(ticketId);
         rfidLinkRepository.delete(link);
+        eventPublisher.publishEvent(new RFIDLinksChangedEvent());
         return link;
     }
 
@@ -118,7 +130,7 @@ private boolean isValidTicket(Long ticketId) {
     }
 
     private RFIDLink getLinkByRFID(String rfid) {
-        return rfidLinkRepository.findByRfid(rfid).orElseThrow(RFIDNotFoundException::new);
+        return lookupTimer.record(() -> rfidLinkRepository.findByRfid(rfid)).orElseThrow(RFIDNotFoundException::new);
     }
 
     private RFIDLink getLinkByTicketId(Long ticketId) {
@@ -27,6 +27,8 @@
 import ch.wisv.areafiftylan.products.model.order.Order;
 import ch.wisv.areafiftylan.products.service.OrderService;
 import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.utils.KeysetPage;
+import ch.wisv.areafiftylan.utils.NdjsonStreamer;
 import ch.wisv.areafiftylan.utils.view.View;
 import com.fasterxml.jackson.annotation.JsonView;
 import lombok.extern.slf4j.Slf4j;
@@ -42,6 +44,7 @@
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.net.URI;
@@ -58,11 +61,14 @@ public class OrderRestController {
 
     private final OrderService orderService;
 
+    private final NdjsonStreamer ndjsonStreamer;
+
     private Marker controllerMarker = Markers.append("controller", "orders");
 
     @Autowired
-    public OrderRestController(OrderService orderService) {
+    public OrderRestController(OrderService orderService, NdjsonStreamer ndjsonStreamer) {
         this.orderService = orderService;
+        this.ndjsonStreamer = ndjsonStreamer;
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -73,6 +79,34 @@ public Collection<Order> getAllOrders() {
 
     }
 
+    /**
+     * Get a page of Orders, ordered by id.
+     *
+     * @param after  The nextCursor of the previous page, omit for the first page
+     * @param limit  The maximum number of Orders on the page
+     * @param status Optional status to filter on
+     *
+     * @return The page of Orders
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(params = "limit")
+    @JsonView(View.OrderOverview.class)
+    public KeysetPage<Order> getOrders(@RequestParam(defaultValue = "0") long after, @RequestParam int limit,
+                                       @RequestParam(required = false) OrderStatus status) {
+        return orderService.getOrders(after, status, limit);
+    }
+
+    /**
+     * Stream all Orders as newline delimited JSON.
+     *
+     * @return The Orders, one per line
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(produces = NdjsonStreamer.APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamOrders() {
+        return ndjsonStreamer.stream(orderService::streamAllOrders, View.OrderOverview.class);
+    }
+
     /**
      * When a User does a POST request to /orders, a new Order is created. The requestbody is a TicketDTO, so an order
      * always contains at least one ticket. Optional next tickets should be added to the order by POSTing to the
@@ -19,25 +19,33 @@
 
 import ch.wisv.areafiftylan.exception.TicketTransferTokenException;
 import ch.wisv.areafiftylan.products.model.AvailableTicketsDTO;
+import ch.wisv.areafiftylan.products.model.TeamMemberTicketResponse;
 import ch.wisv.areafiftylan.products.model.Ticket;
 import ch.wisv.areafiftylan.products.model.TicketOption;
 import ch.wisv.areafiftylan.products.model.TicketType;
-import ch.wisv.areafiftylan.products.service.OrderService;
+import ch.wisv.areafiftylan.products.model.TransportTicketDTO;
+import ch.wisv.areafiftylan.products.service.TicketAvailabilityBroadcaster;
 import ch.wisv.areafiftylan.products.service.TicketService;
 import ch.wisv.areafiftylan.security.token.TicketTransferToken;
 import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.utils.KeysetPage;
+import ch.wisv.areafiftylan.utils.NdjsonStreamer;
 import lombok.extern.slf4j.Slf4j;
 import net.logstash.logback.argument.StructuredArguments;
 import net.logstash.logback.marker.Markers;
 import org.slf4j.Marker;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.Collection;
 
@@ -48,7 +56,8 @@
 @Slf4j
 public class TicketRestController {
     private final TicketService ticketService;
-    private final OrderService orderService;
+    private final TicketAvailabilityBroadcaster ticketAvailabilityBroadcaster;
+    private final NdjsonStreamer ndjsonStreamer;
 
     @Value("${a5l.ticketLimit}")
     private int TICKET_LIMIT;
@@ -56,9 +65,12 @@ public class TicketRestController {
     private Marker controllerMarker = Markers.append("controller", "tickets");
 
     @Autowired
-    public TicketRestController(TicketService ticketService, OrderService orderService) {
+    public TicketRestController(TicketService ticketService,
+                                TicketAvailabilityBroadcaster ticketAvailabilityBroadcaster,
+                                NdjsonStreamer ndjsonStreamer) {
         this.ticketService = ticketService;
-        this.orderService = orderService;
+        this.ticketAvailabilityBroadcaster = ticketAvailabilityBroadcaster;
+        this.ndjsonStreamer = ndjsonStreamer;
     }
 
     @PreAuthorize("@currentUserServiceImpl.isTicketOwner(principal, #ticketId)")
@@ -110,12 +122,25 @@ public ResponseEntity<?> getTicketTokensOpenForTransfer(@AuthenticationPrincipal
      */
     @GetMapping("/available")
     public AvailableTicketsDTO getAvailableTickets() {
-        return new AvailableTicketsDTO(orderService.getAvailableTickets(), TICKET_LIMIT);
+        return new AvailableTicketsDTO(ticketService.getAvailableTickets(), TICKET_LIMIT);
+    }
+
+    /**
+     * Stream the availability of the tickets as Server-Sent Events, instead of polling the overview above. See the
+     * TicketAvailabilityBroadcaster for the events. When there are too many subscribers already, this responds with 503
+     * without a body, so the shop page polls the overview instead.
+     *
+     * @return The stream of availability events
+     */
+    @GetMapping(value = "/available", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamAvailableTickets() {
+        return ticketAvailabilityBroadcaster.subscribe().map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.
+                status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "60").build());
     }
 
     @PreAuthorize("isAuthenticated()")
     @GetMapping("/teammembers")
-    public Collection<Ticket> getTicketsFromTeamMembers(@AuthenticationPrincipal User user) {
+    public Collection<TeamMemberTicketResponse> getTicketsFromTeamMembers(@AuthenticationPrincipal User user) {
         return ticketService.getOwnedTicketsAndFromTeamMembers(user);
     }
 
@@ -125,12 +150,38 @@ public Collection<Ticket> getAllTickets() {
         return ticketService.getAllTickets();
     }
 
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(params = "limit")
+    public KeysetPage<Ticket> getTickets(@RequestParam(defaultValue = "0") long after, @RequestParam int limit,
+                                         @RequestParam(required = false) Boolean valid) {
+        return ticketService.getTickets(after, valid, limit);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(produces = NdjsonStreamer.APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamTickets() {
+        return ndjsonStreamer.stream(ticketService::streamAllTickets, null);
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @GetMapping("/transfer")
     public Collection<TicketTransferToken> getAllTransferTickets() {
         return ticketService.getAllTransferTickets();
     }
 
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(value = "/transfer", params = "limit")
+    public KeysetPage<TicketTransferToken> getTransferTickets(@RequestParam(defaultValue = "0") long after,
+                                                              @RequestParam int limit) {
+        return ticketService.getTransferTickets(after, limit);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(value = "/transfer", produces = NdjsonStreamer.APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamTransferTickets() {
+        return ndjsonStreamer.stream(ticketService::streamAllTransferTickets, null);
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @DeleteMapping("{ticketId}")
     public ResponseEntity<?> deleteTicket(@PathVariable Long ticketId) {
@@ -140,10 +191,26 @@ public ResponseEntity<?> deleteTicket(@PathVariable Long ticketId) {
 
     @PreAuthorize("hasRole('ADMIN')")
     @GetMapping("/transport")
-    public Collection<Ticket> getAllTicketsWithTransport() {
+    public Collection<TransportTicketDTO> getAllTicketsWithTransport() {
         return ticketService.getAllTicketsWithTransport();
     }
 
+    /**
+     * Get a page of the Tickets with the pickup service, ordered by id. Only the owner fields needed for the pickup are
+     * included.
+     *
+     * @param after The nextCursor of the previous page, omit for the first page
+     * @param limit The maximum number of Tickets on the page
+     *
+     * @return The page of Tickets
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(value = "/transport", params = "limit")
+    public KeysetPage<TransportTicketDTO> getTicketsWithTransport(@RequestParam(defaultValue = "0") long after,
+                                                                  @RequestParam int limit) {
+        return ticketService.getTicketsWithTransport(after, limit);
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping("/types")
     public ResponseEntity<?> addTicketType(@RequestBody @Validated TicketType type) {
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.products.model;
+
+import lombok.Data;
+
+/**
+ * A Ticket as the seat picker shows it, with only the fields it needs. The fields are in the same place as in the JSON
+ * of a Ticket.
+ */
+@Data
+public class TeamMemberTicketResponse {
+
+    private final Long id;
+
+    private final boolean valid;
+
+    private final Owner owner;
+
+    public TeamMemberTicketResponse(Long id, boolean valid, Long ownerId, String ownerEmail, String displayName) {
+        this.id = id;
+        this.valid = valid;
+        this.owner = new Owner(ownerId, ownerEmail, new OwnerProfile(displayName));
+    }
+
+    @Data
+    public static class Owner {
+
+        private final Long id;
+
+        private final String email;
+
+        private final OwnerProfile profile;
+    }
+
+    @Data
+    public static class OwnerProfile {
+
+        private final String displayName;
+    }
+}
@@ -18,6 +18,7 @@
 package ch.wisv.areafiftylan.products.model;
 
 import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.utils.RequestEntityCacheListener;
 import ch.wisv.areafiftylan.utils.view.View;
 import com.fasterxml.jackson.annotation.JsonView;
 import lombok.AccessLevel;
@@ -32,6 +33,7 @@
 @Entity
 @Data
 @NoArgsConstructor
+@EntityListeners(RequestEntityCacheListener.class)
 public class Ticket {
 
     @Id
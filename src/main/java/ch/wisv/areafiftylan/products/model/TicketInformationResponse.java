@@ -17,12 +17,14 @@
 
 package ch.wisv.areafiftylan.products.model;
 
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
 import java.util.HashMap;
 import java.util.Map;
 
 @Getter
+@EqualsAndHashCode
 public class TicketInformationResponse {
 
     private String ticketType;
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.products.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A Ticket with the pickup service, with only the fields of the owner the transport team needs. The owner fields are
+ * null for Tickets without an owner.
+ */
+@Data
+@AllArgsConstructor
+public class TransportTicketDTO {
+
+    private Long ticketId;
+
+    private boolean valid;
+
+    private String email;
+
+    private String firstName;
+
+    private String lastName;
+
+    private String phoneNumber;
+
+    private String address;
+
+    private String zipcode;
+
+    private String city;
+}
@@ -19,6 +19,7 @@
 
 import ch.wisv.areafiftylan.products.model.Ticket;
 import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.utils.RequestEntityCacheListener;
 import ch.wisv.areafiftylan.utils.view.View;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonView;
@@ -32,15 +33,22 @@
 
 @Entity
 @Getter
+@EntityListeners(RequestEntityCacheListener.class)
 @Table(name = "orders")
+@NamedEntityGraph(name = Order.WITH_TICKETS, attributeNodes = @NamedAttributeNode("tickets"))
 public class Order {
 
+    /**
+     * Entity graph fetching the Tickets together with the Order, as needed for the OrderOverview view
+     */
+    public static final String WITH_TICKETS = "Order.tickets";
+
     @Id
     @GeneratedValue
     @JsonView(View.OrderOverview.class)
     private Long id;
 
-    @OneToMany(cascade = CascadeType.MERGE, targetEntity = Ticket.class, fetch = FetchType.EAGER)
+    @OneToMany(cascade = CascadeType.MERGE, targetEntity = Ticket.class)
     @JsonView(View.OrderOverview.class)
     private Set<Ticket> tickets;
 
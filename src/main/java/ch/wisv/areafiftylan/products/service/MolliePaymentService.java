@@ -17,12 +17,12 @@
 
 package ch.wisv.areafiftylan.products.service;
 
-import ch.wisv.areafiftylan.exception.OrderNotFoundException;
 import ch.wisv.areafiftylan.exception.PaymentException;
 import ch.wisv.areafiftylan.exception.PaymentServiceConnectionException;
 import ch.wisv.areafiftylan.products.model.order.Order;
 import ch.wisv.areafiftylan.products.model.order.OrderStatus;
 import ch.wisv.areafiftylan.products.service.repository.OrderRepository;
+import com.google.common.base.Strings;
 import nl.stil4m.mollie.Client;
 import nl.stil4m.mollie.ClientBuilder;
 import nl.stil4m.mollie.ResponseOrError;
@@ -42,20 +42,28 @@ public class MolliePaymentService implements PaymentService {
 
     private final OrderRepository orderRepository;
 
-    @Value("${a5l.molliekey:null}")
-    String apiKey;
+    /**
+     * The client keeps its HTTP connections open, so it's shared by all calls to Mollie
+     */
+    private final Client mollie;
 
     @Value("${a5l.paymentReturnUrl}")
     String returnUrl;
 
     @Autowired
-    public MolliePaymentService(OrderRepository orderRepository) {
+    public MolliePaymentService(OrderRepository orderRepository, @Value("${a5l.molliekey:null}") String apiKey,
+                                @Value("${a5l.mollieEndpoint:}") String endpoint) {
         this.orderRepository = orderRepository;
+
+        ClientBuilder clientBuilder = new ClientBuilder().withApiKey(apiKey);
+        if (!Strings.isNullOrEmpty(endpoint)) {
+            clientBuilder = clientBuilder.withEndpoint(endpoint);
+        }
+        this.mollie = clientBuilder.build();
     }
 
     @Override
     public String registerOrder(Order order) {
-        Client mollie = new ClientBuilder().withApiKey(apiKey).build();
         Map<String, Object> metadata = new HashMap<>();
         metadata.put("A5LId", order.getId());
 
@@ -93,67 +101,45 @@ private void updateOrder(Order order, ResponseOrError<Payment> molliePayment) {
     }
 
     @Override
-    public Order updateStatus(String orderReference) {
-        Client mollie = new ClientBuilder().withApiKey(apiKey).build();
-
-        Order order = orderRepository.findByReference(orderReference)
-                .orElseThrow(() -> new OrderNotFoundException("Order with reference " + orderReference + " not found"));
-
-        // This try is for the Mollie API internal HttpClient
+    public Optional<OrderStatus> getStatus(String orderReference) {
         try {
-            // Request a payment from Mollie
             ResponseOrError<Payment> molliePaymentStatus = mollie.payments().get(orderReference);
 
-            // If the request was a success, we can update the order
             if (molliePaymentStatus.getSuccess()) {
-                // There are a couple of possible statuses. Enum would have been nice. We select a couple of relevant
-                // statuses to translate to our own status.
-                switch (molliePaymentStatus.getData().getStatus()) {
-                    case "pending": {
-                        order.setStatus(OrderStatus.PENDING);
-                        break;
-                    }
-                    case "open": {
-                        order.setStatus(OrderStatus.PENDING);
-                        break;
-                    }
-                    case "cancelled": {
-                        order.setStatus(OrderStatus.CANCELLED);
-                        break;
-                    }
-                    case "failed": {
-                        order.setStatus(OrderStatus.CANCELLED);
-                        break;
-                    }
-                    case "expired": {
-                        order.setStatus(OrderStatus.EXPIRED);
-                        break;
-                    }
-                    case "paid": {
-                        order.setStatus(OrderStatus.PAID);
-                        break;
-                    }
-                    case "paidout": {
-                        order.setStatus(OrderStatus.PAID);
-                        break;
-                    }
-                }
-                return orderRepository.save(order);
+                return toOrderStatus(molliePaymentStatus.getData().getStatus());
             } else {
-                // Order status could not be updated for some reason. Return the original order
                 handleMollieError(molliePaymentStatus);
-                return order;
+                return Optional.empty();
             }
         } catch (IOException e) {
-            // This indicates the HttpClient encountered some error
             throw new PaymentServiceConnectionException(e.getMessage());
         }
     }
 
+    /**
+     * There are a couple of possible statuses. Enum would have been nice. We select a couple of relevant statuses to
+     * translate to our own status.
+     */
+    private static Optional<OrderStatus> toOrderStatus(String mollieStatus) {
+        switch (mollieStatus) {
+            case "pending":
+            case "open":
+                return Optional.of(OrderStatus.PENDING);
+            case "cancelled":
+            case "failed":
+                return Optional.of(OrderStatus.CANCELLED);
+            case "expired":
+                return Optional.of(OrderStatus.EXPIRED);
+            case "paid":
+            case "paidout":
+                return Optional.of(OrderStatus.PAID);
+            default:
+                return Optional.empty();
+        }
+    }
+
     @Override
     public String getPaymentUrl(String orderReference) {
-        Client mollie = new ClientBuilder().withApiKey(apiKey).build();
-
         try {
             ResponseOrError<Payment> paymentResponseOrError = mollie.payments().get(orderReference);
 
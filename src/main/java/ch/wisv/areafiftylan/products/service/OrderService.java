@@ -17,11 +17,14 @@
 
 package ch.wisv.areafiftylan.products.service;
 
-import ch.wisv.areafiftylan.products.model.TicketInformationResponse;
 import ch.wisv.areafiftylan.products.model.order.Order;
+import ch.wisv.areafiftylan.products.model.order.OrderStatus;
+import ch.wisv.areafiftylan.utils.KeysetPage;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface OrderService {
 
@@ -31,6 +34,24 @@ public interface OrderService {
 
     List<Order> getAllOrders();
 
+    /**
+     * Get the Orders with an id greater than the cursor, ordered by id.
+     *
+     * @param after  The id of the last Order on the previous page, 0 for the first page
+     * @param status Optional status to filter on
+     * @param limit  The maximum number of Orders
+     *
+     * @return The page of Orders
+     */
+    KeysetPage<Order> getOrders(long after, OrderStatus status, int limit);
+
+    /**
+     * Stream all Orders, ordered by id. Has to be consumed within a transaction.
+     *
+     * @return The Stream of Orders, which should be closed after use
+     */
+    Stream<Order> streamAllOrders();
+
     Collection<Order> findOrdersByEmail(String email);
 
     List<Order> getOpenOrders(String email);
@@ -76,6 +97,16 @@ public interface OrderService {
 
     Order updateOrderStatusByOrderId(Long orderId);
 
+    /**
+     * Apply payment statuses that were retrieved from the payment provider, like updateOrderStatusByReference does
+     * for a single Order. The changed Orders are saved together.
+     *
+     * @param statuses The status reported by the payment provider, by the reference of the Order
+     *
+     * @return The Orders of which the status changed
+     */
+    List<Order> applyPaymentStatuses(Map<String, OrderStatus> statuses);
+
     /**
      * Manually approve an order, without going through the paymentprovider. This method sets the Orderstatus to PAID
      * and validates all the tickets
@@ -88,12 +119,5 @@ public interface OrderService {
      */
     void expireOrder(Order o);
 
-    /**
-     * This method returns an overview of all available tickets, and information about them
-     *
-     * @return A collection of TicketInformation objects
-     */
-    Collection<TicketInformationResponse> getAvailableTickets();
-
     String getPaymentUrl(Long orderId);
 }
@@ -19,8 +19,6 @@
 
 import ch.wisv.areafiftylan.exception.*;
 import ch.wisv.areafiftylan.products.model.Ticket;
-import ch.wisv.areafiftylan.products.model.TicketInformationResponse;
-import ch.wisv.areafiftylan.products.model.TicketType;
 import ch.wisv.areafiftylan.products.model.order.ExpiredOrder;
 import ch.wisv.areafiftylan.products.model.order.Order;
 import ch.wisv.areafiftylan.products.model.order.OrderStatus;
@@ -28,18 +26,28 @@
 import ch.wisv.areafiftylan.products.service.repository.OrderRepository;
 import ch.wisv.areafiftylan.users.model.User;
 import ch.wisv.areafiftylan.users.service.UserService;
-import ch.wisv.areafiftylan.utils.mail.MailService;
+import ch.wisv.areafiftylan.utils.KeysetPage;
+import ch.wisv.areafiftylan.utils.RequestEntityCache;
 import com.google.common.base.Strings;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import net.logstash.logback.argument.StructuredArguments;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import javax.transaction.Transactional;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
@@ -50,7 +58,10 @@ public class OrderServiceImpl implements OrderService {
     private final TicketService ticketService;
     private final UserService userService;
     private final PaymentService paymentService;
-    private final MailService mailService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Timer checkoutTimer;
+    private final Timer statusUpdateTimer;
 
     @Value("${a5l.paymentReturnUrl}")
     private String RETURN_URL;
@@ -61,13 +72,15 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     public OrderServiceImpl(OrderRepository orderRepository, UserService userService, TicketService ticketService,
                             PaymentService paymentService, ExpiredOrderRepository expiredOrderRepository,
-                            MailService mailService) {
+                            ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
         this.orderRepository = orderRepository;
         this.userService = userService;
         this.ticketService = ticketService;
         this.paymentService = paymentService;
         this.expiredOrderRepository = expiredOrderRepository;
-        this.mailService = mailService;
+        this.eventPublisher = eventPublisher;
+        this.checkoutTimer = Timer.builder("a5l.orders.checkout").register(meterRegistry);
+        this.statusUpdateTimer = Timer.builder("a5l.orders.status.update").register(meterRegistry);
     }
 
     @Override
@@ -75,8 +88,8 @@ public Order getOrderById(Long id) {
         if (id == null) {
             throw new OrderNotFoundException("OrderID can't be null");
         }
-        return orderRepository.findById(id)
-                .orElseThrow(() -> new OrderNotFoundException("Order with id: " + id + " not found"));
+        return RequestEntityCache.get(Order.class, id, () -> orderRepository.findById(id)
+                .orElseThrow(() -> new OrderNotFoundException("Order with id: " + id + " not found")));
     }
 
     @Override
@@ -91,12 +104,31 @@ public Order getOrderByReference(String reference) {
 
     @Override
     public List<Order> getAllOrders() {
-        return orderRepository.findAll();
+        return orderRepository.findDistinctByOrderByIdAsc();
+    }
+
+    @Override
+    @Transactional
+    public KeysetPage<Order> getOrders(long after, OrderStatus status, int limit) {
+        Pageable pageable = KeysetPage.pageable(limit);
+        List<Order> orders = status == null ?
+                orderRepository.findAllByIdGreaterThanOrderByIdAsc(after, pageable) :
+                orderRepository.findAllByIdGreaterThanAndStatusOrderByIdAsc(after, status, pageable);
+
+        // Fetching the Tickets in the page query would make Hibernate paginate in memory, so load them in batches
+        orders.forEach(order -> Hibernate.initialize(order.getTickets()));
+
+        return KeysetPage.of(orders, pageable, Order::getId);
+    }
+
+    @Override
+    public Stream<Order> streamAllOrders() {
+        return orderRepository.streamAllByOrderByIdAsc();
     }
 
     @Override
     public Collection<Order> findOrdersByEmail(String email) {
-        return orderRepository.findAllByUserEmailIgnoreCase(email);
+        return orderRepository.findDistinctByUserEmailIgnoreCase(email);
     }
 
     @Override
@@ -123,7 +155,9 @@ public Order create(String type, List<String> options) {
 
         order.addTicket(ticket);
 
-        return orderRepository.save(order);
+        order = orderRepository.save(order);
+        eventPublisher.publishEvent(new OrdersChangedEvent());
+        return order;
     }
 
     @Override
@@ -134,6 +168,7 @@ public Order removeOrder(Long orderId) {
         
         Order order = getOrderById(orderId);
         orderRepository.delete(order);
+        eventPublisher.publishEvent(new OrdersChangedEvent());
 
         return order;
     }
@@ -170,7 +205,7 @@ public Order assignOrderToUser(Long orderId, String email) {
         User user = userService.getUserByEmail(email);
 
         // Expire all other open orders for this user
-        getOpenOrders(email).forEach(this::expireOrder);
+        orderRepository.findDistinctByUserIdAndStatus(user.getId(), OrderStatus.ASSIGNED).forEach(this::expireOrder);
 
         if (order.getStatus() != OrderStatus.ANONYMOUS) {
             throw new ImmutableOrderException(order.getId());
@@ -178,7 +213,9 @@ public Order assignOrderToUser(Long orderId, String email) {
 
         order.setUser(user);
         order.setStatus(OrderStatus.ASSIGNED);
-        return orderRepository.save(order);
+        order = orderRepository.save(order);
+        eventPublisher.publishEvent(new OrdersChangedEvent());
+        return order;
     }
 
     @Override
@@ -208,6 +245,10 @@ public Order removeTicketFromOrder(Long orderId, Long ticketId) {
 
     @Override
     public String requestPayment(Long orderId) {
+        return checkoutTimer.record(() -> registerPayment(orderId));
+    }
+
+    private String registerPayment(Long orderId) {
         Order order = getOrderById(orderId);
         if (order.getAmountTickets() == 0) {
             throw new IllegalStateException("Order can not be empty");
@@ -219,25 +260,84 @@ public String requestPayment(Long orderId) {
             order.setStatus(OrderStatus.PAID);
             validateTicketsIfPaid(order);
             orderRepository.save(order);
+            eventPublisher.publishEvent(new OrdersChangedEvent());
             return RETURN_URL + "?order=" + orderId;
         }
 
-        return paymentService.registerOrder(order);
+        String paymentUrl = paymentService.registerOrder(order);
+        eventPublisher.publishEvent(new OrdersChangedEvent());
+        return paymentUrl;
     }
 
     @Override
     public Order updateOrderStatusByReference(String orderReference) {
+        return statusUpdateTimer.record(() -> updateOrderStatus(orderReference));
+    }
 
+    private Order updateOrderStatus(String orderReference) {
         Order order = getOrderByReference(orderReference);
         OrderStatus statusBefore = order.getStatus();
-        order = paymentService.updateStatus(orderReference);
+        Optional<OrderStatus> status = paymentService.getStatus(orderReference);
+
+        if (status.isPresent() && status.get() != statusBefore && !changeStatus(order, statusBefore, status.get())) {
+            // The PaymentReconciler changed the status in the meantime, and handled the change
+            return getOrderByReference(orderReference);
+        }
+
+        handleStatusUpdate(order, statusBefore);
+        return order;
+    }
+
+    @Override
+    public List<Order> applyPaymentStatuses(Map<String, OrderStatus> statuses) {
+        if (statuses.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Order> changedOrders = new ArrayList<>();
+        List<OrderStatus> statusesBefore = new ArrayList<>();
+        for (Order order : orderRepository.findDistinctByReferenceIn(statuses.keySet())) {
+            OrderStatus statusBefore = order.getStatus();
+            OrderStatus status = statuses.get(order.getReference());
+            // Skip Orders of which the webhook changed the status in the meantime, it handled the change
+            if (statusBefore != status && changeStatus(order, statusBefore, status)) {
+                statusesBefore.add(statusBefore);
+                changedOrders.add(order);
+            }
+        }
+
+        if (!changedOrders.isEmpty()) {
+            eventPublisher.publishEvent(new OrdersChangedEvent());
+        }
+        for (int i = 0; i < changedOrders.size(); i++) {
+            handleStatusUpdate(changedOrders.get(i), statusesBefore.get(i));
+        }
+        return changedOrders;
+    }
+
+    /**
+     * Change the status of an Order, unless its status was changed since it was read.
+     *
+     * @return True if the status was changed by this call
+     */
+    private boolean changeStatus(Order order, OrderStatus statusBefore, OrderStatus status) {
+        if (orderRepository.updateStatus(order.getId(), statusBefore, status) == 0) {
+            return false;
+        }
+        order.setStatus(status);
+        return true;
+    }
+
+    private void handleStatusUpdate(Order order, OrderStatus statusBefore) {
+        if (order.getStatus() != statusBefore) {
+            eventPublisher.publishEvent(new OrdersChangedEvent());
+        }
 
         // Set all tickets from this Order to valid
         validateTicketsIfPaid(order);
         if (statusBefore != OrderStatus.PAID && order.getStatus().equals(OrderStatus.PAID)) {
-            mailService.sendOrderConfirmation(order);
+            eventPublisher.publishEvent(new OrderPaidEvent(order));
         }
-        return order;
     }
 
     private void validateTicketsIfPaid(Order order) {
@@ -246,10 +346,7 @@ private void validateTicketsIfPaid(Order order) {
         }
 
         if (order.getStatus().equals(OrderStatus.PAID)) {
-            for (Ticket ticket : order.getTickets()) {
-                ticketService.assignTicketToUser(ticket.getId(), order.getUser().getEmail());
-                ticketService.validateTicket(ticket.getId());
-            }
+            ticketService.markTicketsPaid(order.getTickets(), order.getUser());
         }
     }
 
@@ -270,6 +367,7 @@ public void adminApproveOrder(Long orderId) {
             order.setStatus(OrderStatus.PAID);
             validateTicketsIfPaid(order);
             orderRepository.save(order);
+            eventPublisher.publishEvent(new OrdersChangedEvent());
         } else {
             throw new UnassignedOrderException(orderId);
         }
@@ -282,19 +380,7 @@ public void expireOrder(Order o) {
         ExpiredOrder eo = new ExpiredOrder(o);
         expiredOrderRepository.save(eo);
         o.getTickets().forEach(t -> ticketService.removeTicket(t.getId()));
-    }
-
-    @Override
-    public Collection<TicketInformationResponse> getAvailableTickets() {
-        Collection<TicketInformationResponse> ticketInfo = new ArrayList<>();
-
-        for (TicketType ticketType : ticketService.getAllTicketTypes()) {
-            if (ticketType.isBuyable()) {
-                Integer typeSold = ticketService.getNumberSoldOfType(ticketType);
-                ticketInfo.add(new TicketInformationResponse(ticketType, typeSold));
-            }
-        }
-        return ticketInfo;
+        eventPublisher.publishEvent(new OrdersChangedEvent());
     }
 
     @Override
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.products.service;
+
+import ch.wisv.areafiftylan.products.model.order.Order;
+import ch.wisv.areafiftylan.products.model.order.OrderStatus;
+import ch.wisv.areafiftylan.products.service.repository.OrderRepository;
+import ch.wisv.areafiftylan.utils.KeysetPage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.logstash.logback.argument.StructuredArguments;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Checks the status of PENDING Orders at the payment provider, for when a webhook got lost. The Orders are read in
+ * pages of a5l.payments.reconcilePageSize, and the payment provider is asked for the status of a page of Orders on at
+ * most a5l.payments.reconcileParallelism threads at once. The changed statuses of a page are applied together.
+ */
+@Service
+@Slf4j
+public class PaymentReconciler {
+
+    private final OrderRepository orderRepository;
+    private final OrderService orderService;
+    private final PaymentService paymentService;
+
+    private final ExecutorService executor;
+    private final int pageSize;
+
+    private final Counter checkedCounter;
+    private final Counter changedCounter;
+    private final Counter failedCounter;
+
+    public PaymentReconciler(OrderRepository orderRepository, OrderService orderService,
+                             PaymentService paymentService, MeterRegistry meterRegistry,
+                             @Value("${a5l.payments.reconcileParallelism:4}") int parallelism,
+                             @Value("${a5l.payments.reconcilePageSize:100}") int pageSize) {
+        this.orderRepository = orderRepository;
+        this.orderService = orderService;
+        this.paymentService = paymentService;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism),
+                new CustomizableThreadFactory("payment-reconciler-"));
+        this.pageSize = pageSize;
+
+        this.checkedCounter = Counter.builder("a5l.payments.reconcile").tag("result", "checked")
+                .register(meterRegistry);
+        this.changedCounter = Counter.builder("a5l.payments.reconcile").tag("result", "changed")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("a5l.payments.reconcile").tag("result", "failed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Update the status of all PENDING Orders from the payment provider.
+     *
+     * @return The number of Orders that were checked
+     */
+    public int reconcilePendingOrders() {
+        Pageable pageable = KeysetPage.pageable(pageSize);
+        int checked = 0;
+        long after = 0;
+
+        List<Order> orders;
+        do {
+            orders = orderRepository.findAllByIdGreaterThanAndStatusOrderByIdAsc(after, OrderStatus.PENDING, pageable);
+            if (orders.isEmpty()) {
+                break;
+            }
+
+            reconcile(orders);
+            checked += orders.size();
+            after = orders.get(orders.size() - 1).getId();
+        } while (orders.size() == pageable.getPageSize());
+
+        return checked;
+    }
+
+    private void reconcile(List<Order> orders) {
+        Map<String, CompletableFuture<Optional<OrderStatus>>> requests = new HashMap<>();
+        for (Order order : orders) {
+            requests.put(order.getReference(),
+                    CompletableFuture.supplyAsync(() -> paymentService.getStatus(order.getReference()), executor));
+        }
+
+        Map<String, OrderStatus> statuses = new HashMap<>();
+        requests.forEach((reference, request) -> {
+            try {
+                request.join().filter(status -> status != OrderStatus.PENDING)
+                        .ifPresent(status -> statuses.put(reference, status));
+            } catch (CompletionException e) {
+                failedCounter.increment();
+                log.warn("Could not get the payment status of Order {}: {}", reference, e.getCause().getMessage(),
+                        StructuredArguments.v("order_reference", reference));
+            }
+        });
+        checkedCounter.increment(orders.size());
+
+        List<Order> changedOrders = orderService.applyPaymentStatuses(statuses);
+        changedCounter.increment(changedOrders.size());
+        if (!changedOrders.isEmpty()) {
+            log.info("Updated the status of {} pending orders", changedOrders.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -18,6 +18,9 @@
 package ch.wisv.areafiftylan.products.service;
 
 import ch.wisv.areafiftylan.products.model.order.Order;
+import ch.wisv.areafiftylan.products.model.order.OrderStatus;
+
+import java.util.Optional;
 
 public interface PaymentService {
 
@@ -31,13 +34,13 @@ public interface PaymentService {
     String registerOrder(Order order);
 
     /**
-     * Update the status of an Order at the payment provider
+     * Get the status of a payment at the payment provider, without changing the Order.
      *
      * @param orderReference The Id of the order from the payment provider.
      *
-     * @return The updated Order
+     * @return The status the Order should have, or empty if the payment provider reports an unknown status
      */
-    Order updateStatus(String orderReference);
+    Optional<OrderStatus> getStatus(String orderReference);
 
     String getPaymentUrl(String orderReference);
 }
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.products.service;
+
+import ch.wisv.areafiftylan.products.model.TicketInformationResponse;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Pushes the availability of the tickets to the shop pages as Server-Sent Events, so they don't have to poll.
+ * <p>
+ * A subscriber first gets a "tickets" event with all available tickets. After that, it gets a "tickets-changed" event
+ * with only the TicketTypes whose availability changed. Changes are collected and sent at most once per
+ * a5l.tickets.broadcastMillis, however many Tickets are sold in between. When TicketTypes are added or removed, all
+ * available tickets are sent again in a "tickets" event.
+ * <p>
+ * Events are written to the subscribers by a pool of a5l.tickets.broadcastThreads threads, in order per subscriber. A
+ * slow subscriber then only holds up its own events, not the other subscribers or the scheduler. Events a subscriber
+ * hasn't been sent yet are merged with the newer ones, since those replace the availability anyway. It then never has
+ * more waiting than the availability of every TicketType.
+ * <p>
+ * At most a5l.tickets.maxSubscribers subscribers are accepted at the same time, after that the shop pages have to poll.
+ * <p>
+ * Only changes made on this instance are noticed, so with several instances the subscribers of the others only see
+ * them after the next change there or when they reconnect.
+ */
+@Service
+@Slf4j
+public class TicketAvailabilityBroadcaster {
+
+    private static final String ALL_TICKETS = "tickets";
+    private static final String CHANGED_TICKETS = "tickets-changed";
+
+    private final TicketService ticketService;
+    private final long timeoutMillis;
+    private final int maxSubscribers;
+
+    private final ExecutorService sendExecutor;
+    /**
+     * The subscribers, with the events that still have to be written to them
+     */
+    private final Map<SseEmitter, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final AtomicBoolean changed = new AtomicBoolean();
+
+    /**
+     * The availability as last sent to the subscribers, by TicketType name. Guarded by this.
+     */
+    private Map<String, TicketInformationResponse> lastSent;
+
+    @Autowired
+    public TicketAvailabilityBroadcaster(TicketService ticketService, MeterRegistry meterRegistry,
+                                         @Value("${a5l.tickets.streamTimeoutMinutes:30}") int timeoutMinutes,
+                                         @Value("${a5l.tickets.broadcastThreads:4}") int threads,
+                                         @Value("${a5l.tickets.maxSubscribers:5000}") int maxSubscribers) {
+        this.ticketService = ticketService;
+        this.timeoutMillis = TimeUnit.MINUTES.toMillis(timeoutMinutes);
+        this.maxSubscribers = maxSubscribers;
+        this.sendExecutor =
+                Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("ticket-availability-"));
+        Gauge.builder("a5l.tickets.subscribers", subscribers, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Subscribe to the availability of the tickets. The stream ends after a5l.tickets.streamTimeoutMinutes, after
+     * which browsers reconnect by themselves.
+     *
+     * @return The emitter of the events, or empty when there are already a5l.tickets.maxSubscribers subscribers
+     */
+    public Optional<SseEmitter> subscribe() {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscribers.remove(emitter));
+
+        Subscriber subscriber = new Subscriber(emitter);
+        synchronized (this) {
+            if (subscribers.size() >= maxSubscribers) {
+                log.debug("Rejected ticket availability subscriber, already {} subscribers", subscribers.size());
+                return Optional.empty();
+            }
+            // Start from the availability the next changes will be relative to
+            if (lastSent == null) {
+                lastSent = index(ticketService.getAvailableTickets());
+            }
+            subscribers.put(emitter, subscriber);
+            subscriber.enqueue(ALL_TICKETS, lastSent.values(), lastSent.values());
+        }
+        return Optional.of(emitter);
+    }
+
+    @TransactionalEventListener(classes = TicketAvailabilityChangedEvent.class, fallbackExecution = true)
+    public void availabilityChanged() {
+        changed.set(true);
+    }
+
+    @Scheduled(fixedDelayString = "${a5l.tickets.broadcastMillis:500}")
+    public synchronized void broadcastChanges() {
+        if (!changed.getAndSet(false) || lastSent == null) {
+            return;
+        }
+        if (subscribers.isEmpty()) {
+            // Nobody to tell, the next subscriber starts from the availability at that time
+            lastSent = null;
+            return;
+        }
+
+        Map<String, TicketInformationResponse> current = index(ticketService.getAvailableTickets());
+        if (!current.keySet().equals(lastSent.keySet())) {
+            broadcast(ALL_TICKETS, current.values(), current.values());
+        } else {
+            List<TicketInformationResponse> changedTickets = current.values().stream().
+                    filter(ticketInfo -> !Objects.equals(ticketInfo, lastSent.get(ticketInfo.getTicketType()))).
+                    collect(Collectors.toList());
+            if (!changedTickets.isEmpty()) {
+                broadcast(CHANGED_TICKETS, changedTickets, current.values());
+            }
+        }
+        lastSent = current;
+    }
+
+    private void broadcast(String eventName, Collection<TicketInformationResponse> tickets,
+                           Collection<TicketInformationResponse> allTickets) {
+        subscribers.values().forEach(subscriber -> subscriber.enqueue(eventName, tickets, allTickets));
+    }
+
+    /**
+     * Write an event to a subscriber.
+     *
+     * @return Whether the subscriber is still there to get the next events
+     */
+    private boolean send(SseEmitter emitter, String eventName, Collection<TicketInformationResponse> tickets) {
+        if (!subscribers.containsKey(emitter)) {
+            return false;
+        }
+        try {
+            emitter.send(SseEmitter.event().name(eventName).data(tickets));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // The client went away, the container completes the emitter
+            log.debug("Could not send ticket availability to subscriber: {}", e.getMessage());
+            subscribers.remove(emitter);
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sendExecutor.shutdownNow();
+    }
+
+    private static Map<String, TicketInformationResponse> index(Collection<TicketInformationResponse> tickets) {
+        return Collections.unmodifiableMap(tickets.stream().collect(Collectors.toMap(
+                TicketInformationResponse::getTicketType, Function.identity(), (first, second) -> second,
+                LinkedHashMap::new)));
+    }
+
+    /**
+     * A subscriber with the events that weren't written to it yet. Only one task per subscriber writes to it at a
+     * time, which takes the waiting events until there are none left.
+     */
+    private class Subscriber {
+        private final SseEmitter emitter;
+
+        // Guarded by this. Either all tickets are waiting, or only the changed ones by TicketType name.
+        private Collection<TicketInformationResponse> pendingTickets;
+        private final Map<String, TicketInformationResponse> pendingChanges = new LinkedHashMap<>();
+        private boolean sending;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * Queue an event, replacing the waiting events it makes stale.
+         *
+         * @param eventName  The name of the event
+         * @param tickets    The tickets in the event
+         * @param allTickets The availability of all tickets after this event
+         */
+        void enqueue(String eventName, Collection<TicketInformationResponse> tickets,
+                     Collection<TicketInformationResponse> allTickets) {
+            synchronized (this) {
+                if (ALL_TICKETS.equals(eventName) || pendingTickets != null) {
+                    // The subscriber hasn't got all tickets yet, so it might as well get the latest ones
+                    pendingTickets = allTickets;
+                    pendingChanges.clear();
+                } else {
+                    tickets.forEach(ticketInfo -> pendingChanges.put(ticketInfo.getTicketType(), ticketInfo));
+                }
+                if (sending) {
+                    return;
+                }
+                sending = true;
+            }
+            sendExecutor.execute(this::sendPending);
+        }
+
+        private void sendPending() {
+            while (true) {
+                String eventName;
+                Collection<TicketInformationResponse> tickets;
+                synchronized (this) {
+                    if (pendingTickets != null) {
+                        eventName = ALL_TICKETS;
+                        tickets = pendingTickets;
+                        pendingTickets = null;
+                    } else if (!pendingChanges.isEmpty()) {
+                        eventName = CHANGED_TICKETS;
+                        tickets = new ArrayList<>(pendingChanges.values());
+                        pendingChanges.clear();
+                    } else {
+                        sending = false;
+                        return;
+                    }
+                }
+                if (!send(emitter, eventName, tickets)) {
+                    // Gone, so nothing is queued for it anymore
+                    return;
+                }
+            }
+        }
+    }
+}
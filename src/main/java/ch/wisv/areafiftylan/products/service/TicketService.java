@@ -18,15 +18,20 @@
 package ch.wisv.areafiftylan.products.service;
 
 import ch.wisv.areafiftylan.exception.TicketUnavailableException;
+import ch.wisv.areafiftylan.products.model.TeamMemberTicketResponse;
 import ch.wisv.areafiftylan.products.model.Ticket;
+import ch.wisv.areafiftylan.products.model.TicketInformationResponse;
 import ch.wisv.areafiftylan.products.model.TicketOption;
 import ch.wisv.areafiftylan.products.model.TicketType;
+import ch.wisv.areafiftylan.products.model.TransportTicketDTO;
 import ch.wisv.areafiftylan.security.token.TicketTransferToken;
 import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.utils.KeysetPage;
 
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface TicketService {
     Ticket getTicketById(Long ticketId);
@@ -41,6 +46,28 @@ public interface TicketService {
 
     Collection<Ticket> getAllTickets();
 
+    /**
+     * Get the Tickets with an id greater than the cursor, ordered by id.
+     *
+     * @param after The id of the last Ticket on the previous page, 0 for the first page
+     * @param valid Optional validity to filter on
+     * @param limit The maximum number of Tickets
+     *
+     * @return The page of Tickets
+     */
+    KeysetPage<Ticket> getTickets(long after, Boolean valid, int limit);
+
+    /**
+     * Stream all Tickets, ordered by id. Has to be consumed within a transaction.
+     *
+     * @return The Stream of Tickets, which should be closed after use
+     */
+    Stream<Ticket> streamAllTickets();
+
+    KeysetPage<TicketTransferToken> getTransferTickets(long after, int limit);
+
+    Stream<TicketTransferToken> streamAllTransferTickets();
+
     /**
      * Mark the ticket with the given Id as valid.
      *
@@ -48,6 +75,16 @@ public interface TicketService {
      */
     void validateTicket(Long ticketId);
 
+    /**
+     * Assign the Tickets of a paid Order to its User and mark them as valid, using a single update for all of them.
+     * Tickets that are already valid and owned by the User are skipped. The given Tickets are updated as well, so
+     * saving their Order afterwards doesn't undo the change.
+     *
+     * @param tickets The Tickets of the paid Order
+     * @param owner   The User that paid for the Order
+     */
+    void markTicketsPaid(Collection<Ticket> tickets, User owner);
+
     TicketOption getTicketOptionByName(String name);
 
     /**
@@ -95,13 +132,30 @@ default Ticket requestTicketOfType(String type, List<String> options) {
      *
      * @param user The user whose tickets are requested
      *
-     * @return All tickets over which a user has control.
+     * @return All tickets over which a user has control, with only the fields the seat picker needs.
      */
-    Collection<Ticket> getOwnedTicketsAndFromTeamMembers(User user);
+    Collection<TeamMemberTicketResponse> getOwnedTicketsAndFromTeamMembers(User user);
 
     Collection<TicketTransferToken> getValidTicketTransferTokensByUserEmail(String email);
 
-    Collection<Ticket> getAllTicketsWithTransport();
+    TicketTransferToken getTicketTransferToken(String token);
+
+    /**
+     * Get all Tickets with the pickup service, ordered by id. They are read a page of KeysetPage.MAX_LIMIT at a time.
+     *
+     * @return The Tickets, with only the owner fields needed for the pickup
+     */
+    Collection<TransportTicketDTO> getAllTicketsWithTransport();
+
+    /**
+     * Get the Tickets with the pickup service with an id greater than the cursor, ordered by id.
+     *
+     * @param after The id of the last Ticket on the previous page, 0 for the first page
+     * @param limit The maximum number of Tickets
+     *
+     * @return The page of Tickets, with only the owner fields needed for the pickup
+     */
+    KeysetPage<TransportTicketDTO> getTicketsWithTransport(long after, int limit);
 
     Ticket assignTicketToUser(Long TicketId, String email);
 
@@ -113,6 +167,13 @@ default Ticket requestTicketOfType(String type, List<String> options) {
 
     TicketType getTicketTypeById(Long typeId);
 
+    /**
+     * This method returns an overview of all available tickets, and information about them
+     *
+     * @return A collection of TicketInformation objects
+     */
+    Collection<TicketInformationResponse> getAvailableTickets();
+
     void deleteTicketType(Long typeId);
 
     TicketOption addTicketOption(TicketOption option);
@@ -19,42 +19,65 @@
 
 import ch.wisv.areafiftylan.exception.*;
 import ch.wisv.areafiftylan.extras.rfid.service.RFIDService;
+import ch.wisv.areafiftylan.products.model.TeamMemberTicketResponse;
 import ch.wisv.areafiftylan.products.model.Ticket;
+import ch.wisv.areafiftylan.products.model.TicketInformationResponse;
 import ch.wisv.areafiftylan.products.model.TicketOption;
 import ch.wisv.areafiftylan.products.model.TicketType;
+import ch.wisv.areafiftylan.products.model.TransportTicketDTO;
 import ch.wisv.areafiftylan.products.service.repository.TicketOptionRepository;
 import ch.wisv.areafiftylan.products.service.repository.TicketRepository;
+import ch.wisv.areafiftylan.products.service.repository.TicketRepository.TypeCount;
 import ch.wisv.areafiftylan.products.service.repository.TicketTypeRepository;
 import ch.wisv.areafiftylan.security.token.TicketTransferToken;
 import ch.wisv.areafiftylan.security.token.Token;
 import ch.wisv.areafiftylan.security.token.repository.TicketTransferTokenRepository;
-import ch.wisv.areafiftylan.teams.model.Team;
-import ch.wisv.areafiftylan.teams.service.TeamService;
 import ch.wisv.areafiftylan.users.model.User;
 import ch.wisv.areafiftylan.users.service.UserService;
-import ch.wisv.areafiftylan.utils.mail.MailService;
-import lombok.Synchronized;
+import ch.wisv.areafiftylan.utils.KeysetPage;
+import ch.wisv.areafiftylan.utils.RequestEntityCache;
+import ch.wisv.areafiftylan.utils.SnapshotCache;
+import ch.wisv.areafiftylan.utils.TimedLock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import javax.transaction.Transactional;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class TicketServiceImpl implements TicketService {
+    private static final String PICKUP_SERVICE_OPTION = "pickupService";
+
     private final TicketRepository ticketRepository;
     private final UserService userService;
     private final TicketTransferTokenRepository tttRepository;
     private final TicketTypeRepository ticketTypeRepository;
     private final TicketOptionRepository ticketOptionRepository;
-    private final MailService mailService;
-    private final TeamService teamService;
+    private final ApplicationEventPublisher eventPublisher;
     private RFIDService rfidService;
 
+    private final TimedLock ticketLock;
+    private final Timer requestTimer;
+
+    /**
+     * The shop page polls the available tickets constantly during a sale. They are computed at most once per change
+     * in the Tickets or TicketTypes, and shared by all requests in between.
+     */
+    private final SnapshotCache<Collection<TicketInformationResponse>> availableTickets;
+
     @Value("${a5l.user.acceptTransferUrl}")
     private String acceptTransferUrl;
 
@@ -64,15 +87,20 @@ public class TicketServiceImpl implements TicketService {
     @Autowired
     public TicketServiceImpl(TicketRepository ticketRepository, UserService userService,
                              TicketTransferTokenRepository tttRepository, TicketTypeRepository ticketTypeRepository,
-                             TicketOptionRepository ticketOptionRepository, MailService mailService,
-                             TeamService teamService) {
+                             TicketOptionRepository ticketOptionRepository, ApplicationEventPublisher eventPublisher,
+                             MeterRegistry meterRegistry,
+                             @Value("${a5l.tickets.availableCacheSeconds:5}") int availableCacheSeconds) {
         this.ticketRepository = ticketRepository;
         this.tttRepository = tttRepository;
         this.ticketTypeRepository = ticketTypeRepository;
         this.userService = userService;
         this.ticketOptionRepository = ticketOptionRepository;
-        this.mailService = mailService;
-        this.teamService = teamService;
+        this.eventPublisher = eventPublisher;
+        this.ticketLock = new TimedLock("tickets", meterRegistry);
+        this.requestTimer = Timer.builder("a5l.tickets.request").register(meterRegistry);
+        // The maximum age only matters for changes made on other instances of the application
+        this.availableTickets =
+                new SnapshotCache<>(this::loadAvailableTickets, Duration.ofSeconds(availableCacheSeconds));
     }
 
     @Autowired
@@ -85,14 +113,15 @@ public Ticket getTicketById(Long ticketId) {
         if (ticketId == null) {
             throw new TicketNotFoundException();
         }
-        return ticketRepository.findById(ticketId).
-                orElseThrow(TicketNotFoundException::new);
+        return RequestEntityCache.get(Ticket.class, ticketId,
+                () -> ticketRepository.findById(ticketId).orElseThrow(TicketNotFoundException::new));
     }
 
     @Override
     public Ticket removeTicket(Long ticketId) {
         Ticket ticket = getTicketById(ticketId);
         ticketRepository.delete(ticket);
+        availabilityChanged();
         return ticket;
     }
 
@@ -103,7 +132,7 @@ public Integer getNumberSoldOfType(TicketType type) {
 
     @Override
     public Collection<Ticket> findValidTicketsByOwnerEmail(String email) {
-        return ticketRepository.findAllByOwnerEmailIgnoreCase(email).stream().
+        return ticketRepository.findDistinctByOwnerEmailIgnoreCase(email).stream().
                 filter(Ticket::isValid).
                 collect(Collectors.toList());
     }
@@ -115,6 +144,27 @@ public void validateTicket(Long ticketId) {
         ticketRepository.save(ticket);
     }
 
+    @Override
+    @Transactional
+    public void markTicketsPaid(Collection<Ticket> tickets, User owner) {
+        List<Ticket> unpaidTickets = tickets.stream().
+                filter(ticket -> !ticket.isValid() || ticket.getOwner() == null ||
+                        !ticket.getOwner().getId().equals(owner.getId())).
+                collect(Collectors.toList());
+        if (unpaidTickets.isEmpty()) {
+            return;
+        }
+
+        ticketRepository.markPaid(owner, unpaidTickets.stream().map(Ticket::getId).collect(Collectors.toList()));
+        unpaidTickets.forEach(ticket -> {
+            ticket.setOwner(owner);
+            ticket.setValid(true);
+        });
+
+        // The bulk update doesn't trigger the entity listeners
+        RequestEntityCache.clear();
+    }
+
     @Override
     public TicketOption getTicketOptionByName(String name) {
         return ticketOptionRepository.findByName(name).
@@ -137,24 +187,27 @@ public Ticket requestTicketOfType(User user, String type, List<String> options)
     }
 
     @Override
-    @Synchronized
     public Ticket requestTicketOfType(User user, TicketType type, List<TicketOption> options) {
-        if (options == null) {
-            options = Collections.emptyList();
-        }
-        // Check if the TicketType has a numberAvailable and if the numberAvailable is reached
-        if (!isTicketAvailable(type)) {
-            throw new TicketUnavailableException();
-        } else {
-            Ticket ticket = new Ticket(user, type);
-            // If one of the ticketOptions is not supported
-            for (TicketOption option : options) {
-                if (!ticket.addOption(option)) {
-                    throw new TicketOptionNotSupportedException(option);
+        List<TicketOption> ticketOptions = (options == null) ? Collections.emptyList() : options;
+
+        // Check the availability and save the Ticket one request at a time, so Tickets can't be oversold
+        return requestTimer.record(() -> ticketLock.call(() -> {
+            // Check if the TicketType has a numberAvailable and if the numberAvailable is reached
+            if (!isTicketAvailable(type)) {
+                throw new TicketUnavailableException();
+            } else {
+                Ticket ticket = new Ticket(user, type);
+                // If one of the ticketOptions is not supported
+                for (TicketOption option : ticketOptions) {
+                    if (!ticket.addOption(option)) {
+                        throw new TicketOptionNotSupportedException(option);
+                    }
                 }
+                ticket = ticketRepository.save(ticket);
+                availabilityChanged();
+                return ticket;
             }
-            return ticketRepository.save(ticket);
-        }
+        }));
     }
 
     private boolean isTicketAvailable(TicketType type) {
@@ -196,7 +249,7 @@ public TicketTransferToken setupForTransfer(Long ticketId, String receiverEmail)
         ttt = tttRepository.save(ttt);
 
         String acceptUrl = acceptTransferUrl + "?token=" + ttt.getToken();
-        mailService.sendTicketTransferMail(ttt.getTicket().getOwner(), ttt.getUser(), acceptUrl);
+        eventPublisher.publishEvent(new TicketTransferredEvent(ttt, acceptUrl));
 
         return ttt;
     }
@@ -230,7 +283,7 @@ public Ticket cancelTicketTransfer(String token) {
 
     @Override
     public Collection<TicketTransferToken> getValidTicketTransferTokensByUserEmail(String email) {
-        return tttRepository.findAllByTicketOwnerEmailIgnoreCase(email).stream().
+        return tttRepository.findDistinctByTicketOwnerEmailIgnoreCase(email).stream().
                 filter(TicketTransferToken::isValid).
                 collect(Collectors.toList());
     }
@@ -246,12 +299,52 @@ public Collection<Ticket> getAllTickets() {
     }
 
     @Override
-    public List<Ticket> getAllTicketsWithTransport() {
-        TicketOption pickupServiceOption = getTicketOptionByName("pickupService");
+    public KeysetPage<Ticket> getTickets(long after, Boolean valid, int limit) {
+        Pageable pageable = KeysetPage.pageable(limit);
+        List<Ticket> tickets = valid == null ?
+                ticketRepository.findAllByIdGreaterThanOrderByIdAsc(after, pageable) :
+                ticketRepository.findAllByIdGreaterThanAndValidOrderByIdAsc(after, valid, pageable);
 
-        return ticketRepository.findAll().stream().
-                filter(ticket -> ticket.getEnabledOptions().contains(pickupServiceOption)).
-                collect(Collectors.toList());
+        return KeysetPage.of(tickets, pageable, Ticket::getId);
+    }
+
+    @Override
+    public Stream<Ticket> streamAllTickets() {
+        return ticketRepository.streamAllByOrderByIdAsc();
+    }
+
+    @Override
+    public KeysetPage<TicketTransferToken> getTransferTickets(long after, int limit) {
+        Pageable pageable = KeysetPage.pageable(limit);
+
+        return KeysetPage.of(tttRepository.findAllByIdGreaterThanOrderByIdAsc(after, pageable), pageable,
+                TicketTransferToken::getId);
+    }
+
+    @Override
+    public Stream<TicketTransferToken> streamAllTransferTickets() {
+        return tttRepository.streamAllByOrderByIdAsc();
+    }
+
+    @Override
+    public List<TransportTicketDTO> getAllTicketsWithTransport() {
+        List<TransportTicketDTO> tickets = new ArrayList<>();
+        KeysetPage<TransportTicketDTO> page = getTicketsWithTransport(0, KeysetPage.MAX_LIMIT);
+        tickets.addAll(page.getItems());
+        while (page.getNextCursor() != null) {
+            page = getTicketsWithTransport(page.getNextCursor(), KeysetPage.MAX_LIMIT);
+            tickets.addAll(page.getItems());
+        }
+        return tickets;
+    }
+
+    @Override
+    public KeysetPage<TransportTicketDTO> getTicketsWithTransport(long after, int limit) {
+        Pageable pageable = KeysetPage.pageable(limit);
+        List<TransportTicketDTO> tickets =
+                ticketRepository.findTransportByOptionName(PICKUP_SERVICE_OPTION, after, pageable);
+
+        return KeysetPage.of(tickets, pageable, TransportTicketDTO::getTicketId);
     }
 
     @Override
@@ -264,7 +357,9 @@ public Ticket assignTicketToUser(Long ticketId, String email) {
 
     @Override
     public TicketType addTicketType(TicketType type) {
-        return ticketTypeRepository.save(type);
+        type = ticketTypeRepository.save(type);
+        availabilityChanged();
+        return type;
     }
 
     @Override
@@ -278,7 +373,9 @@ public TicketType updateTicketType(Long typeId, TicketType type) {
             throw new TicketTypeNotFoundException("with ID " + typeId);
         }
         type.setId(typeId);
-        return ticketTypeRepository.save(type);
+        type = ticketTypeRepository.save(type);
+        availabilityChanged();
+        return type;
     }
 
     @Override
@@ -290,16 +387,20 @@ public TicketType getTicketTypeById(Long typeId) {
     @Override
     public void deleteTicketType(Long typeId) {
         ticketTypeRepository.deleteById(typeId);
+        availabilityChanged();
     }
 
     @Override
     public TicketOption addTicketOption(TicketOption option) {
-        return ticketOptionRepository.save(option);
+        option = ticketOptionRepository.save(option);
+        availabilityChanged();
+        return option;
     }
 
     @Override
     public void deleteTicketOption(Long optionId) {
         ticketOptionRepository.deleteById(optionId);
+        availabilityChanged();
     }
 
     @Override
@@ -307,8 +408,35 @@ public Collection<TicketOption> getAllTicketOptions() {
         return ticketOptionRepository.findAll();
     }
 
+    @Override
+    public Collection<TicketInformationResponse> getAvailableTickets() {
+        return availableTickets.get();
+    }
+
+    private void availabilityChanged() {
+        availableTickets.invalidate();
+        eventPublisher.publishEvent(new TicketAvailabilityChangedEvent());
+    }
+
+    private Collection<TicketInformationResponse> loadAvailableTickets() {
+        Map<Long, Long> soldPerType = ticketRepository.countGroupByType().stream().
+                collect(Collectors.toMap(TypeCount::getTypeId, TypeCount::getNumberSold));
+
+        return getAllTicketTypes().stream().
+                filter(TicketType::isBuyable).
+                map(type -> new TicketInformationResponse(type,
+                        Math.toIntExact(soldPerType.getOrDefault(type.getId(), 0L)))).
+                collect(Collectors.toUnmodifiableList());
+    }
+
+    @Override
+    public TicketTransferToken getTicketTransferToken(String token) {
+        return RequestEntityCache.get(TicketTransferToken.class, token,
+                () -> tttRepository.findByToken(token).orElseThrow(() -> new TokenNotFoundException(token)));
+    }
+
     private TicketTransferToken getTicketTransferTokenIfValid(String token) {
-        TicketTransferToken ttt = tttRepository.findByToken(token).orElseThrow(() -> new TokenNotFoundException(token));
+        TicketTransferToken ttt = getTicketTransferToken(token);
 
         //Check validity of the token
         if (!ttt.isValid()) {
@@ -319,24 +447,11 @@ private TicketTransferToken getTicketTransferTokenIfValid(String token) {
     }
 
     @Override
-    public Collection<Ticket> getOwnedTicketsAndFromTeamMembers(User user) {
+    public Collection<TeamMemberTicketResponse> getOwnedTicketsAndFromTeamMembers(User user) {
         if (user == null) {
             throw new IllegalArgumentException("User can't be null");
         }
 
-        Collection<Team> captainedTeams = teamService.getTeamByCaptainId(user.getId());
-
-        if (captainedTeams.isEmpty()) {
-            return ticketRepository.findAllByOwnerEmailIgnoreCase(user.getEmail());
-        } else {
-            return captainedTeams.stream().
-                    // Get all team members, including the owner
-                            flatMap(team -> team.getMembers().stream()).
-                    // Find all tickets of those members and filter for validity
-                            flatMap(
-                            member -> ticketRepository.findAllByOwnerEmailIgnoreCase(member.getEmail()).stream()).
-                            filter(Ticket::isValid).
-                            collect(Collectors.toSet());
-        }
+        return ticketRepository.findControlledByUserId(user.getId());
     }
 }
@@ -18,21 +18,91 @@
 package ch.wisv.areafiftylan.products.service.repository;
 
 import ch.wisv.areafiftylan.products.model.order.Order;
+import ch.wisv.areafiftylan.products.model.order.OrderStatus;
+import ch.wisv.areafiftylan.utils.NdjsonStreamer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import javax.transaction.Transactional;
 import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
 
+    @EntityGraph(Order.WITH_TICKETS)
     Optional<Order> findById(Long orderId);
 
-    Collection<Order> findAllByCreationDateTimeBefore(LocalDateTime creationDate);
+    @EntityGraph(Order.WITH_TICKETS)
+    List<Order> findDistinctByOrderByIdAsc();
+
+    @EntityGraph(Order.WITH_TICKETS)
+    Collection<Order> findDistinctByCreationDateTimeBefore(LocalDateTime creationDate);
+
+    /**
+     * Get the Orders of a User together with everything they show, like My Area does, in a single query.
+     *
+     * @param email The email of the User
+     *
+     * @return The Orders of the User
+     */
+    @EntityGraph(attributePaths = { "tickets", "tickets.type", "tickets.type.possibleOptions", "tickets.enabledOptions",
+            "user", "user.profile", "user.roles" })
+    Collection<Order> findDistinctByUserEmailIgnoreCase(String email);
 
-    Collection<Order> findAllByUserEmailIgnoreCase(String email);
+    @EntityGraph(Order.WITH_TICKETS)
+    Collection<Order> findDistinctByUserIdAndStatus(Long userId, OrderStatus status);
 
+    @EntityGraph(Order.WITH_TICKETS)
     Optional<Order> findByReference(String reference);
+
+    @EntityGraph(Order.WITH_TICKETS)
+    List<Order> findDistinctByReferenceIn(Collection<String> references);
+
+    /**
+     * Change the status of an Order in a single statement, but only if it still has the expected status. The webhook of
+     * the payment provider and the PaymentReconciler can update an Order at the same time, so only the one that
+     * changed the row should handle the change.
+     *
+     * @param id       The id of the Order
+     * @param expected The status the Order was read with
+     * @param status   The new status
+     *
+     * @return 1 if the status was changed, 0 if the Order no longer has the expected status
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("update Order o set o.status = :status where o.id = :id and o.status = :expected")
+    int updateStatus(@Param("id") Long id, @Param("expected") OrderStatus expected,
+                     @Param("status") OrderStatus status);
+
+    @Query("select o.status as status, count(o) as numberOfOrders from Order o group by o.status")
+    List<StatusCount> countGroupByStatus();
+
+    List<Order> findAllByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    List<Order> findAllByIdGreaterThanAndStatusOrderByIdAsc(Long id, OrderStatus status, Pageable pageable);
+
+    @QueryHints({ @QueryHint(name = HINT_FETCH_SIZE, value = NdjsonStreamer.FETCH_SIZE),
+                  @QueryHint(name = HINT_READONLY, value = "true") })
+    Stream<Order> streamAllByOrderByIdAsc();
+
+    interface StatusCount {
+        OrderStatus getStatus();
+
+        long getNumberOfOrders();
+    }
 }
@@ -17,13 +17,29 @@
 
 package ch.wisv.areafiftylan.products.service.repository;
 
+import ch.wisv.areafiftylan.products.model.TeamMemberTicketResponse;
 import ch.wisv.areafiftylan.products.model.Ticket;
 import ch.wisv.areafiftylan.products.model.TicketType;
+import ch.wisv.areafiftylan.products.model.TransportTicketDTO;
+import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.utils.NdjsonStreamer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface TicketRepository extends JpaRepository<Ticket, Long> {
@@ -32,5 +48,98 @@ public interface TicketRepository extends JpaRepository<Ticket, Long> {
 
     Integer countByType(TicketType type);
 
-    Collection<Ticket> findAllByOwnerEmailIgnoreCase(String email);
+    /**
+     * Count the Tickets of every TicketType in a single query. TicketTypes without Tickets are left out.
+     *
+     * @return The number of Tickets per TicketType id
+     */
+    @Query("select t.type.id as typeId, count(t) as numberSold from Ticket t group by t.type.id")
+    List<TypeCount> countGroupByType();
+
+    /**
+     * Count the sold and the valid Tickets of every TicketType in a single query.
+     *
+     * @return The number of sold and valid Tickets per TicketType name
+     */
+    @Query("select t.type.name as typeName, count(t) as numberSold, " +
+            "sum(case when t.valid = true then 1 else 0 end) as numberValid from Ticket t group by t.type.name")
+    List<TypeValidCount> countValidGroupByType();
+
+    /**
+     * Get the Tickets of a User together with everything they show, like My Area does, in a single query.
+     *
+     * @param email The email of the owner
+     *
+     * @return The Tickets of the owner
+     */
+    @EntityGraph(attributePaths = { "owner", "owner.profile", "owner.roles", "type", "type.possibleOptions",
+            "enabledOptions" })
+    Collection<Ticket> findDistinctByOwnerEmailIgnoreCase(String email);
+
+    /**
+     * Find the Tickets a User controls in a single query, whatever the number of Teams. A captain controls the valid
+     * Tickets of the members of their Teams, including their own. Anyone else controls all of their own Tickets.
+     *
+     * @param userId The id of the User
+     *
+     * @return The Tickets with only the fields the seat picker needs
+     */
+    @Query("select new ch.wisv.areafiftylan.products.model.TeamMemberTicketResponse(" +
+            "t.id, t.valid, o.id, o.email, p.displayName) from Ticket t join t.owner o join o.profile p " +
+            "where (t.valid = true and o.id in " +
+            "(select m.id from Team tm join tm.members m where tm.captain.id = :userId)) " +
+            "or (o.id = :userId and not exists (select tm from Team tm where tm.captain.id = :userId)) " +
+            "order by t.id")
+    List<TeamMemberTicketResponse> findControlledByUserId(@Param("userId") Long userId);
+
+    /**
+     * Assign Tickets to a User and make them valid in a single statement. This bypasses the persistence context, so
+     * it's flushed before and cleared after the update.
+     *
+     * @param owner     The new owner of the Tickets
+     * @param ticketIds The ids of the Tickets
+     *
+     * @return The number of updated Tickets
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Ticket t set t.owner = :owner, t.valid = true where t.id in :ticketIds")
+    int markPaid(@Param("owner") User owner, @Param("ticketIds") Collection<Long> ticketIds);
+
+    List<Ticket> findAllByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Get the Tickets with a TicketOption, with only the fields needed to pick up their owners. The index on
+     * ticket_enabled_options lets the database find the Tickets of an option without reading all Tickets.
+     *
+     * @param optionName The name of the TicketOption
+     * @param after      The id of the last Ticket on the previous page
+     * @param pageable   The Pageable of the page
+     *
+     * @return The Tickets with an id greater than after, ordered by id
+     */
+    @Query("select new ch.wisv.areafiftylan.products.model.TransportTicketDTO(t.id, t.valid, o.email, p.firstName, " +
+            "p.lastName, p.phoneNumber, p.address, p.zipcode, p.city) from Ticket t join t.enabledOptions e " +
+            "left join t.owner o left join o.profile p where e.name = :optionName and t.id > :after order by t.id")
+    List<TransportTicketDTO> findTransportByOptionName(@Param("optionName") String optionName,
+                                                       @Param("after") Long after, Pageable pageable);
+
+    List<Ticket> findAllByIdGreaterThanAndValidOrderByIdAsc(Long id, boolean valid, Pageable pageable);
+
+    @QueryHints({ @QueryHint(name = HINT_FETCH_SIZE, value = NdjsonStreamer.FETCH_SIZE),
+                  @QueryHint(name = HINT_READONLY, value = "true") })
+    Stream<Ticket> streamAllByOrderByIdAsc();
+
+    interface TypeCount {
+        Long getTypeId();
+
+        long getNumberSold();
+    }
+
+    interface TypeValidCount {
+        String getTypeName();
+
+        long getNumberSold();
+
+        long getNumberValid();
+    }
 }
@@ -18,15 +18,30 @@
 package ch.wisv.areafiftylan.seats.service;
 
 import ch.wisv.areafiftylan.seats.model.Seat;
+import ch.wisv.areafiftylan.users.model.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface SeatRepository extends JpaRepository<Seat, Long> {
-    List<Seat> findByTicketOwnerEmailIgnoreCase(String email);
+    /**
+     * Get the Seats of a User together with everything they show, like My Area does, in a single query.
+     *
+     * @param email The email of the owner of the Tickets on the Seats
+     *
+     * @return The Seats of the User
+     */
+    @EntityGraph(attributePaths = { "ticket", "ticket.owner", "ticket.owner.profile", "ticket.owner.roles",
+            "ticket.type", "ticket.type.possibleOptions", "ticket.enabledOptions" })
+    List<Seat> findDistinctByTicketOwnerEmailIgnoreCase(String email);
+
+    List<Seat> findByTicketOwnerIn(Collection<User> owners);
 
     List<Seat> findBySeatGroup(String seatGroup);
 
@@ -35,4 +50,19 @@ public interface SeatRepository extends JpaRepository<Seat, Long> {
     Optional<Seat> findByTicketId(Long ticketId);
 
     Optional<Seat> findFirstBySeatGroupOrderBySeatNumberDesc(String seatGroup);
+
+    @Query("select s.seatGroup as seatGroup, count(s) as numberOfSeats, " +
+            "sum(case when s.ticket is not null then 1 else 0 end) as numberTaken, " +
+            "sum(case when s.locked = true then 1 else 0 end) as numberLocked from Seat s group by s.seatGroup")
+    List<SeatGroupCount> countGroupBySeatGroup();
+
+    interface SeatGroupCount {
+        String getSeatGroup();
+
+        long getNumberOfSeats();
+
+        long getNumberTaken();
+
+        long getNumberLocked();
+    }
 }
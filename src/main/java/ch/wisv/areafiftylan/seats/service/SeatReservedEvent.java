@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.seats.service;
+
+import ch.wisv.areafiftylan.seats.model.Seat;
+import ch.wisv.areafiftylan.users.model.User;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when a Seat is reserved for a Ticket, or cleared.
+ */
+@Getter
+@AllArgsConstructor
+public class SeatReservedEvent {
+
+    private Seat seat;
+
+    /**
+     * The owner of the Ticket the Seat was reserved for before, or null if the Seat was free
+     */
+    private User previousOwner;
+}
@@ -27,9 +27,11 @@
 import ch.wisv.areafiftylan.teams.model.Team;
 import ch.wisv.areafiftylan.teams.service.TeamService;
 import ch.wisv.areafiftylan.users.model.User;
-import ch.wisv.areafiftylan.utils.mail.MailService;
-import lombok.Synchronized;
+import ch.wisv.areafiftylan.utils.TimedLock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -41,15 +43,20 @@ public class SeatServiceImpl implements SeatService {
     private final SeatRepository seatRepository;
     private final TeamService teamService;
     private final TicketService ticketService;
-    private final MailService mailService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final TimedLock seatLock;
+    private final Timer reserveTimer;
 
     @Autowired
     public SeatServiceImpl(SeatRepository seatRepository, TeamService teamService, TicketService ticketService,
-                           MailService mailService) {
+                           ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
         this.seatRepository = seatRepository;
         this.teamService = teamService;
         this.ticketService = ticketService;
-        this.mailService = mailService;
+        this.eventPublisher = eventPublisher;
+        this.seatLock = new TimedLock("seats", meterRegistry);
+        this.reserveTimer = Timer.builder("a5l.seats.reserve").register(meterRegistry);
     }
 
     @Override
@@ -66,19 +73,19 @@ public List<Seat> getAllSeats() {
 
     @Override
     public List<Seat> getSeatsByEmail(String email) {
-        return seatRepository.findByTicketOwnerEmailIgnoreCase(email);
+        return seatRepository.findDistinctByTicketOwnerEmailIgnoreCase(email);
 
     }
 
     @Override
     public List<Seat> getSeatsByTeamName(String teamName) {
         Team team = teamService.getTeamByTeamname(teamName);
+        if (team.getMembers().isEmpty()) {
+            return Collections.emptyList();
+        }
 
-        return team.getMembers().stream().
-                map(User::getEmail).
-                map(seatRepository::findByTicketOwnerEmailIgnoreCase).
-                flatMap(Collection::stream).
-                collect(Collectors.toList());
+        // One query for all members, instead of one per member
+        return seatRepository.findByTicketOwnerIn(team.getMembers());
     }
 
     @Override
@@ -101,28 +108,29 @@ public Seat getSeatBySeatGroupAndSeatNumber(String groupName, int seatNumber) {
     }
 
     @Override
-    @Synchronized
     public boolean reserveSeat(String groupName, int seatNumber, Long ticketId, boolean allowSeatOverride) {
-        Seat seat = getSeatBySeatGroupAndSeatNumber(groupName, seatNumber);
-        Ticket ticket = null;
+        return reserveTimer.record(() -> seatLock.call(() -> {
+            Seat seat = getSeatBySeatGroupAndSeatNumber(groupName, seatNumber);
+            Ticket ticket = null;
 
-        if (!allowSeatOverride && (seat.isTaken() || seat.isLocked() || ticketId == null)) {
-            return false;
-        }
+            if (!allowSeatOverride && (seat.isTaken() || seat.isLocked() || ticketId == null)) {
+                return false;
+            }
 
-        if (seat.isTaken() && seat.getTicket().getOwner() != null) {
-            mailService.sendSeatOverrideMail(seat.getTicket().getOwner());
-        }
-        if (ticketId != null) {
-            seatRepository.findByTicketId(ticketId).ifPresent(previousSeat -> previousSeat.setTicket(null));
-            ticket = ticketService.getTicketById(ticketId);
-            if (!ticket.isValid()) {
-                throw new InvalidTicketException("Unable to reserve seat for an invalid Ticket");
+            User previousOwner = seat.isTaken() ? seat.getTicket().getOwner() : null;
+            if (ticketId != null) {
+                seatRepository.findByTicketId(ticketId).ifPresent(previousSeat -> previousSeat.setTicket(null));
+                ticket = ticketService.getTicketById(ticketId);
+                if (!ticket.isValid()) {
+                    throw new InvalidTicketException("Unable to reserve seat for an invalid Ticket");
+                }
             }
-        }
-        seat.setTicket(ticket);
-        seatRepository.saveAndFlush(seat);
-        return true;
+            seat.setTicket(ticket);
+            seatRepository.saveAndFlush(seat);
+            eventPublisher.publishEvent(new SeatsChangedEvent());
+            eventPublisher.publishEvent(new SeatReservedEvent(seat, previousOwner));
+            return true;
+        }));
     }
 
     @Override
@@ -145,6 +153,7 @@ public void addSeats(SeatGroupDTO seatGroupDTO) {
             seatList.add(new Seat(seatGroupDTO.getSeatGroupName(), i));
         }
         seatRepository.saveAll(seatList);
+        eventPublisher.publishEvent(new SeatsChangedEvent());
     }
 
     @Override
@@ -163,6 +172,7 @@ public void removeSeats(SeatGroupDTO seatGroupDTO) {
             Seat seat = getSeatBySeatGroupAndSeatNumber(seatGroupName, i);
             seatRepository.delete(seat);
         }
+        eventPublisher.publishEvent(new SeatsChangedEvent());
     }
 
     @Override
@@ -170,6 +180,7 @@ public void setSeatLocked(String groupName, int seatNumber, boolean locked) {
         Seat seat = getSeatBySeatGroupAndSeatNumber(groupName, seatNumber);
         seat.setLocked(locked);
         seatRepository.save(seat);
+        eventPublisher.publishEvent(new SeatsChangedEvent());
     }
 
     @Override
@@ -177,6 +188,7 @@ public void setSeatGroupLocked(String groupName, boolean locked) {
         List<Seat> seatGroup = seatRepository.findBySeatGroup(groupName);
         seatGroup.forEach(seat -> seat.setLocked(locked));
         seatRepository.saveAll(seatGroup);
+        eventPublisher.publishEvent(new SeatsChangedEvent());
     }
 
     @Override
@@ -184,5 +196,6 @@ public void setAllSeatsLock(boolean locked) {
         List<Seat> seats = seatRepository.findAll();
         seats.forEach(seat -> seat.setLocked(locked));
         seatRepository.saveAll(seats);
+        eventPublisher.publishEvent(new SeatsChangedEvent());
     }
 }
@@ -17,6 +17,7 @@
 
 package ch.wisv.areafiftylan.security;
 
+import ch.wisv.areafiftylan.exception.AccessTokenUnavailableException;
 import ch.wisv.areafiftylan.security.authentication.AuthenticationService;
 import ch.wisv.areafiftylan.users.model.User;
 import com.google.common.cache.Cache;
@@ -37,10 +38,12 @@
 public class JsonLoginAuthenticationAttemptHandler implements AuthenticationSuccessHandler, LogoutSuccessHandler {
 
     private final AuthenticationService authenticationService;
+    private final boolean issueAccessTokens;
     private final Cache<String, Integer> attemptsCache;
 
-    public JsonLoginAuthenticationAttemptHandler(AuthenticationService service) {
+    public JsonLoginAuthenticationAttemptHandler(AuthenticationService service, boolean issueAccessTokens) {
         this.authenticationService = service;
+        this.issueAccessTokens = issueAccessTokens;
         // The attemptsCache automatically expires keys after 3 minutes
         attemptsCache = CacheBuilder.newBuilder().maximumSize(1000).expireAfterAccess(3, TimeUnit.MINUTES).build();
     }
@@ -59,7 +62,15 @@ public void onAuthenticationSuccess(HttpServletRequest request, HttpServletRespo
                     StructuredArguments.v("user_id", ((User) authentication.getPrincipal()).getId()));
         }
 
-        response.setHeader("X-Auth-Token", authenticationService.createNewAuthToken(authentication.getName()));
+        String xAuth = authenticationService.createNewAuthToken(authentication.getName());
+        response.setHeader("X-Auth-Token", xAuth);
+        if (issueAccessTokens) {
+            try {
+                response.setHeader("X-Access-Token", authenticationService.createAccessToken(xAuth));
+            } catch (AccessTokenUnavailableException e) {
+                // The login itself succeeded, so the client can continue with the X-Auth-Token alone
+            }
+        }
         response.setStatus(200);
     }
 
@@ -17,10 +17,14 @@
 
 package ch.wisv.areafiftylan.security;
 
-import ch.wisv.areafiftylan.users.model.UserDTO;
+import ch.wisv.areafiftylan.exception.PasswordEncoderSaturatedException;
+import ch.wisv.areafiftylan.security.ratelimit.RateLimitKeyType;
+import ch.wisv.areafiftylan.security.ratelimit.RateLimitRoute;
+import ch.wisv.areafiftylan.security.ratelimit.RateLimitService;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -35,76 +39,93 @@
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.Reader;
-import java.util.concurrent.TimeUnit;
 
 /**
  * This Login filter uses the default "Form" login filter, but parses a JSON requestbody instead. It accepts requests on
  * /login and returns an X-Auth-Token Header on successful authentication using the
  * JsonLoginAuthenticationAttemptHandler
+ * <p>
+ * A single instance handles all logins, so state belonging to a login is stored in the request attributes.
  */
 @Slf4j
 public class JsonLoginFilter extends UsernamePasswordAuthenticationFilter {
 
-    private UserDTO userDTO = new UserDTO();
+    /**
+     * Request attribute holding the email address of the login attempt
+     */
+    public static final String EMAIL_ATTRIBUTE = JsonLoginFilter.class.getName() + ".email";
+
+    // ObjectReaders are immutable and thread-safe, so one is shared by all logins
+    private static final ObjectReader JSON_READER = new ObjectMapper().reader();
+
     private AuthenticationManager authenticationManager;
     private JsonLoginAuthenticationAttemptHandler attemptHandler;
-    private final Cache<String, Integer> attemptsCache;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final RateLimitService rateLimitService;
 
     @Setter
     public static int MAX_ATTEMPTS_MINUTE;
-    @Setter
-    public static boolean RATELIMIT_ENABLED;
 
 
     public JsonLoginFilter(AuthenticationManager authenticationManager,
-                           JsonLoginAuthenticationAttemptHandler successHandler) {
+                           JsonLoginAuthenticationAttemptHandler successHandler,
+                           BoundedPasswordEncoder passwordEncoder, RateLimitService rateLimitService) {
         super();
         this.authenticationManager = authenticationManager;
         this.attemptHandler = successHandler;
-        attemptsCache = CacheBuilder.newBuilder().maximumSize(1000).expireAfterAccess(5, TimeUnit.MINUTES).build();
+        this.passwordEncoder = passwordEncoder;
+        this.rateLimitService = rateLimitService;
     }
 
     @Override
     public Authentication attemptAuthentication(HttpServletRequest request, HttpServletResponse response)
             throws AuthenticationException {
-        userDTO = getUserDTO(request);
+        // Turn logins away before doing any work when the password encoder can't keep up
+        if (passwordEncoder.isSaturated()) {
+            rejectLogin(response);
+            return null;
+        }
 
-        UsernamePasswordAuthenticationToken token =
-                new UsernamePasswordAuthenticationToken(userDTO.getEmail(), userDTO.getPassword());
+        UsernamePasswordAuthenticationToken token = readCredentials(request);
+        request.setAttribute(EMAIL_ATTRIBUTE, token.getPrincipal());
 
         // Allow subclasses to set the "details" property
         setDetails(request, token);
 
-        if (!RATELIMIT_ENABLED || addAttempt(request)) {
+        addAttempt(request, (String) token.getPrincipal());
+        try {
             return this.authenticationManager.authenticate(token);
-        } else {
-            throw new AuthenticationServiceException("IP Address blocked");
+        } catch (PasswordEncoderSaturatedException e) {
+            rejectLogin(response);
+            return null;
         }
     }
 
-    private boolean addAttempt(HttpServletRequest request) {
-        String ip = getClientIP(request);
-
-        Integer attempts = this.attemptsCache.getIfPresent(ip);
-        if (attempts != null) {
-            attempts++;
-        } else {
-            attempts = 1;
+    private void rejectLogin(HttpServletResponse response) {
+        try {
+            response.setHeader("Retry-After", "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many login attempts, try again later");
+        } catch (IOException e) {
+            log.warn("Could not reject login request", e);
         }
-        attemptsCache.put(ip, attempts);
+    }
 
-        if (attempts > MAX_ATTEMPTS_MINUTE) {
+    private void addAttempt(HttpServletRequest request, String email) {
+        String ip = rateLimitService.getClientIP(request);
+
+        if (!rateLimitService.tryAcquire(RateLimitRoute.LOGIN, RateLimitKeyType.IP, ip)) {
             log.warn("Blocking IP address {}", ip);
-            return false;
+            throw new AuthenticationServiceException("IP Address blocked");
+        }
+        if (!rateLimitService.tryAcquire(RateLimitRoute.LOGIN, RateLimitKeyType.EMAIL, email)) {
+            throw new AuthenticationServiceException("Too many login attempts for this email address");
         }
-        return true;
     }
 
     @Override
     protected void successfulAuthentication(HttpServletRequest request, HttpServletResponse response, FilterChain chain,
                                             Authentication authResult) throws IOException, ServletException {
-        attemptsCache.invalidate(getClientIP(request));
+        rateLimitService.reset(RateLimitRoute.LOGIN, RateLimitKeyType.IP, rateLimitService.getClientIP(request));
         attemptHandler.onAuthenticationSuccess(request, response, authResult);
     }
 
@@ -112,26 +133,48 @@ protected void successfulAuthentication(HttpServletRequest request, HttpServletR
     protected void unsuccessfulAuthentication(HttpServletRequest request, HttpServletResponse response,
                                               AuthenticationException failed) throws IOException, ServletException {
         // Register failed attempts
-        attemptHandler.onAuthenticationFailure(userDTO.getEmail());
+        attemptHandler.onAuthenticationFailure((String) request.getAttribute(EMAIL_ATTRIBUTE));
         super.unsuccessfulAuthentication(request, response, failed);
     }
 
-    private UserDTO getUserDTO(HttpServletRequest request) {
-        ObjectMapper mapper = new ObjectMapper();
-        try {
-            Reader reader = request.getReader();
-            return mapper.readValue(reader, UserDTO.class);
+    /**
+     * Read the email and password from the JSON body without binding the whole body to an object. Besides these, only
+     * the orderId field of the UserDTO is accepted.
+     *
+     * @param request The login request
+     *
+     * @return An unauthenticated token with the email as principal and the password as credentials
+     */
+    private UsernamePasswordAuthenticationToken readCredentials(HttpServletRequest request) {
+        String email = "";
+        String password = "";
+        try (JsonParser parser = JSON_READER.createParser(request.getReader())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Cant read request data");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (value == null || !value.isScalarValue()) {
+                    throw new IllegalArgumentException("Cant read request data");
+                }
+                switch (field) {
+                    case "email":
+                        email = parser.getValueAsString("");
+                        break;
+                    case "password":
+                        password = parser.getValueAsString("");
+                        break;
+                    case "orderId":
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Cant read request data");
+                }
+            }
         } catch (IOException e) {
             throw new IllegalArgumentException("Cant read request data");
         }
-    }
 
-    private String getClientIP(HttpServletRequest request) {
-        String xfHeader = request.getHeader("X-Forwarded-For");
-        if (xfHeader == null) {
-            return request.getRemoteAddr();
-        }
-        // Proxies sometimes store the entire path. We want the first step only
-        return xfHeader.split(",")[0];
+        return new UsernamePasswordAuthenticationToken(email, password);
     }
 }
@@ -18,10 +18,17 @@
 package ch.wisv.areafiftylan.security;
 
 import ch.wisv.areafiftylan.security.authentication.AuthenticationService;
-import ch.wisv.areafiftylan.security.token.repository.AuthenticationTokenRepository;
+import ch.wisv.areafiftylan.security.ratelimit.RateLimitFilter;
+import ch.wisv.areafiftylan.security.ratelimit.RateLimitKeyType;
+import ch.wisv.areafiftylan.security.ratelimit.RateLimitRoute;
+import ch.wisv.areafiftylan.security.ratelimit.RateLimitService;
+import ch.wisv.areafiftylan.security.token.SignedAccessTokenService;
+import ch.wisv.areafiftylan.security.waitingroom.WaitingRoomFilter;
+import ch.wisv.areafiftylan.security.waitingroom.WaitingRoomService;
+import ch.wisv.areafiftylan.utils.idempotency.IdempotencyFilter;
+import ch.wisv.areafiftylan.utils.idempotency.IdempotencyService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -34,9 +41,9 @@
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.web.FilterInvocation;
 import org.springframework.security.web.access.expression.DefaultWebSecurityExpressionHandler;
+import org.springframework.security.web.authentication.AnonymousAuthenticationFilter;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 @Configuration
@@ -49,22 +56,31 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     private final UserDetailsService userDetailsService;
 
-    private final AuthenticationTokenRepository authenticationTokenRepository;
-
     private AuthenticationService authenticationService;
 
-    @Value("${a5l.ratelimit.minutes:10}")
-    private int MAX_ATTEMPTS_MINUTE;
-    @Value("${a5l.ratelimit.enabled:true}")
-    private boolean RATELIMIT_ENABLED;
+    private final BoundedPasswordEncoder passwordEncoder;
+
+    private final RateLimitService rateLimitService;
+
+    private final SignedAccessTokenService signedAccessTokenService;
+
+    private final WaitingRoomService waitingRoomService;
+
+    private final IdempotencyService idempotencyService;
 
     @Autowired
-    public SecurityConfiguration(AuthenticationTokenRepository authenticationTokenRepository,
-                                 @Qualifier("userServiceImpl") UserDetailsService userDetailsService,
-                                 AuthenticationService authenticationService) {
-        this.authenticationTokenRepository = authenticationTokenRepository;
+    public SecurityConfiguration(@Qualifier("userServiceImpl") UserDetailsService userDetailsService,
+                                 AuthenticationService authenticationService,
+                                 BoundedPasswordEncoder passwordEncoder, RateLimitService rateLimitService,
+                                 SignedAccessTokenService signedAccessTokenService,
+                                 WaitingRoomService waitingRoomService, IdempotencyService idempotencyService) {
         this.userDetailsService = userDetailsService;
         this.authenticationService = authenticationService;
+        this.passwordEncoder = passwordEncoder;
+        this.rateLimitService = rateLimitService;
+        this.signedAccessTokenService = signedAccessTokenService;
+        this.waitingRoomService = waitingRoomService;
+        this.idempotencyService = idempotencyService;
     }
 
     /**
@@ -82,8 +98,8 @@ public SecurityConfiguration(AuthenticationTokenRepository authenticationTokenRe
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         http.sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS);
-        JsonLoginAuthenticationAttemptHandler attemptHandler =
-                new JsonLoginAuthenticationAttemptHandler(authenticationService);
+        JsonLoginAuthenticationAttemptHandler attemptHandler = new JsonLoginAuthenticationAttemptHandler(
+                authenticationService, signedAccessTokenService.isEnabled());
         http.logout().logoutSuccessHandler(attemptHandler);
 
         http.cors().and().authorizeRequests().expressionHandler(webExpressionHandler()).requestMatchers(EndpointRequest.to("health"))
@@ -93,19 +109,27 @@ protected void configure(HttpSecurity http) throws Exception {
         http.csrf().disable();
 
         // Set the login point to get X-Auth-Tokens
-        JsonLoginFilter jsonLoginFilter = new JsonLoginFilter(this.authenticationManagerBean(), attemptHandler);
-        JsonLoginFilter.setMAX_ATTEMPTS_MINUTE(MAX_ATTEMPTS_MINUTE);
-        JsonLoginFilter.setRATELIMIT_ENABLED(RATELIMIT_ENABLED);
+        JsonLoginFilter jsonLoginFilter = new JsonLoginFilter(this.authenticationManagerBean(), attemptHandler,
+                passwordEncoder, rateLimitService);
+        JsonLoginFilter.setMAX_ATTEMPTS_MINUTE(rateLimitService.getLimit(RateLimitRoute.LOGIN, RateLimitKeyType.IP));
 
         http.addFilterAfter(jsonLoginFilter, UsernamePasswordAuthenticationFilter.class);
         // Add support for Token-base authentication
-        http.addFilterAfter(new TokenAuthenticationFilter(authenticationTokenRepository),
+        http.addFilterAfter(new TokenAuthenticationFilter(authenticationService, signedAccessTokenService),
                 UsernamePasswordAuthenticationFilter.class);
+        // Rate limit the other sensitive endpoints, once we know who is making the request
+        http.addFilterAfter(new RateLimitFilter(rateLimitService), AnonymousAuthenticationFilter.class);
+        // Replay the response to retried Order requests with the same Idempotency-Key, once we know who is asking
+        http.addFilterAfter(new IdempotencyFilter(idempotencyService, waitingRoomService),
+                AnonymousAuthenticationFilter.class);
+        // Only let visitors that are admitted from the waiting room create Orders. This comes after the replays, as
+        // replayed retries don't create another Order with the queue token.
+        http.addFilterAfter(new WaitingRoomFilter(waitingRoomService), AnonymousAuthenticationFilter.class);
     }
 
     @Override
     public void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(userDetailsService).passwordEncoder(new BCryptPasswordEncoder());
+        auth.userDetailsService(userDetailsService).passwordEncoder(passwordEncoder);
     }
 
     @Bean
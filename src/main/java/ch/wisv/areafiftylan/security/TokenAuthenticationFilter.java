@@ -17,8 +17,10 @@
 
 package ch.wisv.areafiftylan.security;
 
+import ch.wisv.areafiftylan.security.authentication.AuthenticationService;
 import ch.wisv.areafiftylan.security.token.AuthenticationToken;
-import ch.wisv.areafiftylan.security.token.repository.AuthenticationTokenRepository;
+import ch.wisv.areafiftylan.security.token.SignedAccessToken;
+import ch.wisv.areafiftylan.security.token.SignedAccessTokenService;
 import ch.wisv.areafiftylan.users.model.User;
 import com.google.common.base.Strings;
 import org.slf4j.MDC;
@@ -37,10 +39,13 @@
 
 class TokenAuthenticationFilter extends GenericFilterBean {
 
-    private final AuthenticationTokenRepository authenticationTokenRepository;
+    private final AuthenticationService authenticationService;
+    private final SignedAccessTokenService signedAccessTokenService;
 
-    TokenAuthenticationFilter(AuthenticationTokenRepository authenticationTokenRepository) {
-        this.authenticationTokenRepository = authenticationTokenRepository;
+    TokenAuthenticationFilter(AuthenticationService authenticationService,
+                              SignedAccessTokenService signedAccessTokenService) {
+        this.authenticationService = authenticationService;
+        this.signedAccessTokenService = signedAccessTokenService;
     }
 
     @Override
@@ -49,9 +54,22 @@ public void doFilter(ServletRequest request, ServletResponse response, FilterCha
 
         String xAuth = ((HttpServletRequest) request).getHeader("X-Auth-Token");
 
-        if (!Strings.isNullOrEmpty(xAuth)) {
-            Optional<AuthenticationToken> authenticationTokenOptional =
-                    authenticationTokenRepository.findByToken(xAuth);
+        if (signedAccessTokenService.isEnabled() && signedAccessTokenService.isSignedToken(xAuth)) {
+            // Signed access tokens are verified in memory, without looking up the token in the database
+            Optional<SignedAccessToken> accessToken = signedAccessTokenService.verify(xAuth);
+            if (!accessToken.isPresent()) {
+                ((HttpServletResponse) response).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Token Expired");
+                return;
+            }
+
+            // The principal only has the claims of the token. Role changes revoke the access tokens of the User, the
+            // same way logout does, so the roles are up to date after the next refresh.
+            User user = accessToken.get().toPrincipal();
+            MDC.put("user_id", user.getId().toString());
+            SecurityContextHolder.getContext()
+                    .setAuthentication(new PreAuthenticatedAuthenticationToken(user, "N/A", user.getReachableRoles()));
+        } else if (!Strings.isNullOrEmpty(xAuth)) {
+            Optional<AuthenticationToken> authenticationTokenOptional = authenticationService.findAuthToken(xAuth);
             if (!authenticationTokenOptional.isPresent()) {
                 ((HttpServletResponse) response).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Token not found");
                 return;
@@ -61,11 +79,13 @@ public void doFilter(ServletRequest request, ServletResponse response, FilterCha
                     ((HttpServletResponse) response).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Token Expired");
                     return;
                 } else {
+                    // The User is loaded with the token. Cached tokens are evicted when the roles, email or password of
+                    // the User change, so a cache hit doesn't need a query either.
                     User user = authenticationToken.getUser();
                     // Add email to all logging for this request
                     MDC.put("user_id", user.getId().toString());
                     SecurityContextHolder.getContext().setAuthentication(
-                            new PreAuthenticatedAuthenticationToken(user, "N/A", user.getAuthorities()));
+                            new PreAuthenticatedAuthenticationToken(user, "N/A", user.getReachableRoles()));
                 }
             }
         }
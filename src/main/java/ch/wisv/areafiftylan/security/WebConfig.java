@@ -15,7 +15,7 @@ public WebMvcConfigurer corsConfigurer() {
         return new WebMvcConfigurer() {
             @Override
             public void addCorsMappings(@Nonnull CorsRegistry registry) {
-                registry.addMapping("/**").exposedHeaders("X-Auth-Token").allowedMethods("*");
+                registry.addMapping("/**").exposedHeaders("X-Auth-Token", "X-Access-Token").allowedMethods("*");
             }
         };
     }
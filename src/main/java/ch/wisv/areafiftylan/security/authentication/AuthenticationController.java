@@ -19,11 +19,15 @@
 
 import ch.wisv.areafiftylan.exception.TokenNotFoundException;
 import ch.wisv.areafiftylan.products.service.OrderService;
+import ch.wisv.areafiftylan.security.ratelimit.RateLimitKeyType;
+import ch.wisv.areafiftylan.security.ratelimit.RateLimitRoute;
+import ch.wisv.areafiftylan.security.ratelimit.RateLimitService;
 import ch.wisv.areafiftylan.users.model.User;
 import ch.wisv.areafiftylan.users.service.UserService;
 import lombok.extern.slf4j.Slf4j;
 import net.logstash.logback.argument.StructuredArguments;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -48,14 +52,16 @@ public class AuthenticationController {
     private final UserService userService;
     private final AuthenticationService authenticationService;
     private final OrderService orderService;
+    private final RateLimitService rateLimitService;
 
 
     @Autowired
     public AuthenticationController(UserService userService, AuthenticationService authenticationService,
-                                    OrderService orderService) {
+                                    OrderService orderService, RateLimitService rateLimitService) {
         this.userService = userService;
         this.authenticationService = authenticationService;
         this.orderService = orderService;
+        this.rateLimitService = rateLimitService;
     }
 
     @PreAuthorize("isAuthenticated()")
@@ -64,6 +70,23 @@ public ResponseEntity<?> verifyToken() {
         return createResponseEntity(HttpStatus.OK, "Token is valid!");
     }
 
+    /**
+     * Get a new signed access token, using the AuthenticationToken in the X-Auth-Token header as refresh credential.
+     * Only available when a5l.auth.signedTokens.enabled is set.
+     *
+     * @param xAuth The AuthenticationToken received at login
+     *
+     * @return The access token in the X-Access-Token header
+     */
+    @PreAuthorize("isAuthenticated()")
+    @PostMapping("/token/refresh")
+    public ResponseEntity<?> refreshAccessToken(@RequestHeader("X-Auth-Token") String xAuth) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Access-Token", authenticationService.createAccessToken(xAuth));
+
+        return createResponseEntity(HttpStatus.OK, headers, "Access token created");
+    }
+
     /**
      * This method requests a passwordResetToken and sends it to the user. With this token, the user can reset his
      * password.
@@ -76,6 +99,7 @@ public ResponseEntity<?> verifyToken() {
     @ResponseBody
     public ResponseEntity<?> requestResetPassword(@RequestBody Map<String, String> body) {
         String email = body.get("email");
+        rateLimitService.checkLimit(RateLimitRoute.PASSWORD_RESET, RateLimitKeyType.EMAIL, email);
 
         try {
             User user = userService.getUserByEmail(email);
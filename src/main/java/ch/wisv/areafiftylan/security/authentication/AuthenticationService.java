@@ -17,8 +17,11 @@
 
 package ch.wisv.areafiftylan.security.authentication;
 
+import ch.wisv.areafiftylan.security.token.AuthenticationToken;
 import ch.wisv.areafiftylan.users.model.User;
 
+import java.util.Optional;
+
 public interface AuthenticationService {
 
     String createNewAuthToken(String email);
@@ -29,6 +32,25 @@ public interface AuthenticationService {
 
     void removeAllAuthTokens();
 
+    /**
+     * Find the AuthenticationToken belonging to an X-Auth-Token header. Tokens are served from an in-memory cache when
+     * possible, so authenticated requests don't have to look up their token in the database every time.
+     *
+     * @param xAuth The value of the X-Auth-Token header
+     *
+     * @return The AuthenticationToken, if it exists
+     */
+    Optional<AuthenticationToken> findAuthToken(String xAuth);
+
+    /**
+     * Issue a signed access token, using a valid AuthenticationToken as refresh credential.
+     *
+     * @param xAuth The AuthenticationToken
+     *
+     * @return The signed access token
+     */
+    String createAccessToken(String xAuth);
+
     User verifyUserByToken(String token);
 
     void resetPasswordByToken(String token, String password);
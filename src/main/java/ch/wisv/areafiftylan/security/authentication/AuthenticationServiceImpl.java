@@ -17,24 +17,33 @@
 
 package ch.wisv.areafiftylan.security.authentication;
 
+import ch.wisv.areafiftylan.exception.AccessTokenUnavailableException;
 import ch.wisv.areafiftylan.exception.InvalidTokenException;
 import ch.wisv.areafiftylan.exception.TokenNotFoundException;
 import ch.wisv.areafiftylan.exception.XAuthTokenNotFoundException;
 import ch.wisv.areafiftylan.security.token.AuthenticationToken;
 import ch.wisv.areafiftylan.security.token.PasswordResetToken;
+import ch.wisv.areafiftylan.security.token.SignedAccessToken;
+import ch.wisv.areafiftylan.security.token.SignedAccessTokenService;
 import ch.wisv.areafiftylan.security.token.VerificationToken;
 import ch.wisv.areafiftylan.security.token.repository.AuthenticationTokenRepository;
 import ch.wisv.areafiftylan.security.token.repository.PasswordResetTokenRepository;
 import ch.wisv.areafiftylan.security.token.repository.VerificationTokenRepository;
 import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.users.service.UserAuthenticationChangedEvent;
 import ch.wisv.areafiftylan.users.service.UserService;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
@@ -45,16 +54,30 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     private final PasswordResetTokenRepository passwordResetTokenRepository;
 
     private final UserService userService;
+    private final SignedAccessTokenService signedAccessTokenService;
+
+    /**
+     * Valid AuthenticationTokens by their token value, with the User they belong to. Requests are authenticated with
+     * that User, so entries are evicted when the User changes. Entries expire after a short while, so a token revoked
+     * or a User changed on another instance of the application is only outdated here until the entry expires.
+     */
+    private final Cache<String, AuthenticationToken> tokenCache;
 
     @Autowired
     public AuthenticationServiceImpl(AuthenticationTokenRepository authenticationTokenRepository,
                                      VerificationTokenRepository verificationTokenRepository,
                                      PasswordResetTokenRepository passwordResetTokenRepository,
-                                     UserService userService) {
+                                     UserService userService,
+                                     SignedAccessTokenService signedAccessTokenService,
+                                     @Value("${a5l.auth.tokenCacheSize:10000}") int tokenCacheSize,
+                                     @Value("${a5l.auth.tokenCacheSeconds:60}") int tokenCacheSeconds) {
         this.authenticationTokenRepository = authenticationTokenRepository;
         this.verificationTokenRepository = verificationTokenRepository;
         this.passwordResetTokenRepository = passwordResetTokenRepository;
         this.userService = userService;
+        this.signedAccessTokenService = signedAccessTokenService;
+        this.tokenCache = CacheBuilder.newBuilder().maximumSize(tokenCacheSize)
+                .expireAfterWrite(tokenCacheSeconds, TimeUnit.SECONDS).build();
     }
 
     @Override
@@ -62,12 +85,19 @@ public String createNewAuthToken(String email) {
         User user = userService.getUserByEmail(email);
 
         // Delete the old Tokens if there are more than 4.
-        List<AuthenticationToken> existingTokens = authenticationTokenRepository.findByUserEmailOrderByExpiryDate(email);
+        List<AuthenticationToken> existingTokens =
+                authenticationTokenRepository.findByUserIdOrderByExpiryDate(user.getId());
         if (existingTokens.size() >= 4) {
             authenticationTokenRepository.delete(existingTokens.get(0));
+            tokenCache.invalidate(existingTokens.get(0).getToken());
+            signedAccessTokenService.revokeSession(existingTokens.get(0).getId());
         }
 
-        return authenticationTokenRepository.saveAndFlush(new AuthenticationToken(user)).getToken();
+        AuthenticationToken authenticationToken =
+                authenticationTokenRepository.saveAndFlush(new AuthenticationToken(user));
+        tokenCache.put(authenticationToken.getToken(), authenticationToken);
+
+        return authenticationToken.getToken();
     }
 
 
@@ -77,24 +107,74 @@ public void removeAuthToken(String xAuth) {
             throw new IllegalArgumentException("No X-Auth-Token present");
         }
 
-        AuthenticationToken token =
-                authenticationTokenRepository.findByToken(xAuth).orElseThrow(XAuthTokenNotFoundException::new);
+        AuthenticationToken token;
+        if (signedAccessTokenService.isSignedToken(xAuth)) {
+            // Logging out with an access token ends the session of the AuthenticationToken it was issued for
+            long sessionId = signedAccessTokenService.read(xAuth).map(SignedAccessToken::getSessionId)
+                    .orElseThrow(XAuthTokenNotFoundException::new);
+            token = authenticationTokenRepository.findById(sessionId).orElseThrow(XAuthTokenNotFoundException::new);
+        } else {
+            token = authenticationTokenRepository.findByToken(xAuth).orElseThrow(XAuthTokenNotFoundException::new);
+        }
 
         token.revoke();
         authenticationTokenRepository.saveAndFlush(token);
+        tokenCache.invalidate(token.getToken());
+        signedAccessTokenService.revokeSession(token.getId());
     }
 
     @Override
     public void removeAuthTokenForUser(User user) {
         authenticationTokenRepository.deleteByUser(user);
+        tokenCache.asMap().values().removeIf(token -> token.getUser().getId().equals(user.getId()));
+        signedAccessTokenService.revokeUser(user.getId());
+    }
+
+    /**
+     * The email, password, roles or lock of a User changed, so the cached tokens and the access tokens of the User are
+     * outdated.
+     *
+     * @param event The event with the id of the User
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void userAuthenticationChanged(UserAuthenticationChangedEvent event) {
+        tokenCache.asMap().values().removeIf(token -> token.getUser().getId().equals(event.getUserId()));
+        signedAccessTokenService.revokeUser(event.getUserId());
     }
 
     @Override
     public void removeAllAuthTokens() {
         authenticationTokenRepository.deleteAll();
+        tokenCache.invalidateAll();
+        signedAccessTokenService.revokeAll();
         log.info("Deleted all authentication tokens");
     }
 
+    @Override
+    public Optional<AuthenticationToken> findAuthToken(String xAuth) {
+        AuthenticationToken cachedToken = tokenCache.getIfPresent(xAuth);
+        if (cachedToken != null) {
+            return Optional.of(cachedToken);
+        }
+
+        Optional<AuthenticationToken> authenticationToken = authenticationTokenRepository.findByToken(xAuth);
+        authenticationToken.filter(AuthenticationToken::isValid).ifPresent(token -> tokenCache.put(xAuth, token));
+
+        return authenticationToken;
+    }
+
+    @Override
+    public String createAccessToken(String xAuth) {
+        if (!signedAccessTokenService.isEnabled()) {
+            throw new AccessTokenUnavailableException("Signed access tokens are not enabled");
+        }
+
+        AuthenticationToken authenticationToken =
+                findAuthToken(xAuth).filter(AuthenticationToken::isValid).orElseThrow(InvalidTokenException::new);
+
+        return signedAccessTokenService.issue(authenticationToken);
+    }
+
     @Override
     public User verifyUserByToken(String token) {
         VerificationToken verificationToken =
@@ -17,22 +17,17 @@
 
 package ch.wisv.areafiftylan.security.authentication;
 
-import ch.wisv.areafiftylan.exception.TokenNotFoundException;
 import ch.wisv.areafiftylan.products.model.order.Order;
 import ch.wisv.areafiftylan.products.service.OrderService;
 import ch.wisv.areafiftylan.products.service.TicketService;
 import ch.wisv.areafiftylan.products.service.repository.TicketRepository;
-import ch.wisv.areafiftylan.security.SecurityConfiguration;
 import ch.wisv.areafiftylan.security.token.TeamInviteToken;
 import ch.wisv.areafiftylan.security.token.TicketTransferToken;
-import ch.wisv.areafiftylan.security.token.repository.TeamInviteTokenRepository;
-import ch.wisv.areafiftylan.security.token.repository.TicketTransferTokenRepository;
 import ch.wisv.areafiftylan.teams.model.Team;
 import ch.wisv.areafiftylan.teams.service.TeamService;
 import ch.wisv.areafiftylan.users.model.Role;
 import ch.wisv.areafiftylan.users.model.User;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.access.hierarchicalroles.RoleHierarchyImpl;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
@@ -45,26 +40,18 @@ public class CurrentUserServiceImpl implements CurrentUserService {
     private final OrderService orderService;
     private final TicketRepository ticketRepository;
     private final TicketService ticketService;
-    private final TeamInviteTokenRepository teamInviteTokenRepository;
-    private final TicketTransferTokenRepository tttRepository;
-    private final RoleHierarchyImpl roleHierarchy;
 
     @Autowired
     public CurrentUserServiceImpl(TeamService teamService, OrderService orderService, TicketRepository ticketRepository,
-                                  TicketService ticketService, TeamInviteTokenRepository teamInviteTokenRepository,
-                                  TicketTransferTokenRepository tttRepository) {
+                                  TicketService ticketService) {
         this.teamService = teamService;
         this.orderService = orderService;
         this.ticketRepository = ticketRepository;
         this.ticketService = ticketService;
-        this.teamInviteTokenRepository = teamInviteTokenRepository;
-        this.tttRepository = tttRepository;
-        this.roleHierarchy = new RoleHierarchyImpl();
-        roleHierarchy.setHierarchy(SecurityConfiguration.HIERARCHY);
     }
 
     private boolean hasRole(User user, Role role) {
-        return roleHierarchy.getReachableGrantedAuthorities(user.getAuthorities()).contains(role);
+        return user.hasRole(role);
     }
 
     private boolean isAdmin(User user) {
@@ -79,6 +66,11 @@ private boolean isCommittee(User user) {
         return hasRole(user, Role.ROLE_COMMITTEE);
     }
 
+    // The principal may be built from the claims of an access token, so compare by id instead of with equals
+    private boolean isSameUser(User user, User other) {
+        return other != null && other.getId().equals(user.getId());
+    }
+
     private boolean isTeamCaptain(Team team, User user) {
         return team.getCaptain().getEmail().equals(user.getEmail());
     }
@@ -146,7 +138,7 @@ public boolean canAccessOrder(Object principal, Long orderId) {
     public boolean isTicketOwner(Object principal, Long ticketId) {
         if (principal instanceof UserDetails) {
             User user = (User) principal;
-            return ticketService.getTicketById(ticketId).getOwner().equals(user);
+            return isSameUser(user, ticketService.getTicketById(ticketId).getOwner());
         }
         return false;
     }
@@ -157,7 +149,7 @@ public boolean canReserveSeat(Object principal, Long ticketId) {
             User user = (User) principal;
 
             User owner = ticketService.getTicketById(ticketId).getOwner();
-            if (owner.equals(user) || isAdmin(user)) {
+            if (isSameUser(user, owner) || isAdmin(user)) {
                 return true;
             }
 
@@ -174,12 +166,11 @@ public boolean canRevokeInvite(Object principal, String token) {
         if (principal instanceof UserDetails) {
             User user = (User) principal;
 
-            TeamInviteToken teamInviteToken =
-                    teamInviteTokenRepository.findByToken(token).orElseThrow(() -> new TokenNotFoundException(token));
+            TeamInviteToken teamInviteToken = teamService.getTeamInviteToken(token);
 
             // Tokens can be revoked by the target user, an Admin or the Captain
-            return teamInviteToken.getUser().equals(user) || isAdmin(user) ||
-                    teamInviteToken.getTeam().getCaptain().equals(user);
+            return isSameUser(user, teamInviteToken.getUser()) || isAdmin(user) ||
+                    isSameUser(user, teamInviteToken.getTeam().getCaptain());
         }
         return false;
     }
@@ -189,11 +180,10 @@ public boolean canAcceptInvite(Object principal, String token) {
         if (principal instanceof UserDetails) {
             User user = (User) principal;
 
-            TeamInviteToken teamInviteToken =
-                    teamInviteTokenRepository.findByToken(token).orElseThrow(() -> new TokenNotFoundException(token));
+            TeamInviteToken teamInviteToken = teamService.getTeamInviteToken(token);
 
             // Tokens can only be accepted by the target user
-            return teamInviteToken.getUser().equals(user);
+            return isSameUser(user, teamInviteToken.getUser());
         }
         return false;
 
@@ -201,22 +191,22 @@ public boolean canAcceptInvite(Object principal, String token) {
 
     @Override
     public boolean isTicketSender(Object principal, String token) {
-        TicketTransferToken ttt = tttRepository.findByToken(token).orElseThrow(() -> new TokenNotFoundException(token));
+        TicketTransferToken ttt = ticketService.getTicketTransferToken(token);
 
         if (principal instanceof UserDetails) {
             User user = (User) principal;
-            return ttt.getTicket().getOwner().equals(user);
+            return isSameUser(user, ttt.getTicket().getOwner());
         }
         return false;
     }
 
     @Override
     public boolean isTicketReceiver(Object principal, String token) {
-        TicketTransferToken ttt = tttRepository.findByToken(token).orElseThrow(() -> new TokenNotFoundException(token));
+        TicketTransferToken ttt = ticketService.getTicketTransferToken(token);
 
         if (principal instanceof UserDetails) {
             User user = (User) principal;
-            return ttt.getUser().equals(user);
+            return isSameUser(user, ttt.getUser());
         }
         return false;
     }
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.security.ratelimit;
+
+import ch.wisv.areafiftylan.users.model.User;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Applies the IP and User rate limits of every RateLimitRoute except the login, which is handled by the
+ * JsonLoginFilter. Rate limits on email addresses are checked by the controllers, as the filter can't read the body.
+ * Rejected requests get a 429 response with a Retry-After header.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimitService rateLimitService;
+    private final Map<RateLimitRoute, RequestMatcher> matchers = new EnumMap<>(RateLimitRoute.class);
+
+    public RateLimitFilter(RateLimitService rateLimitService) {
+        this.rateLimitService = rateLimitService;
+        for (RateLimitRoute route : RateLimitRoute.values()) {
+            if (route != RateLimitRoute.LOGIN) {
+                matchers.put(route, new OrRequestMatcher(new AntPathRequestMatcher(route.getPath(), route.getMethod()),
+                        new AntPathRequestMatcher(route.getPath() + "/", route.getMethod())));
+            }
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !rateLimitService.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        for (Map.Entry<RateLimitRoute, RequestMatcher> entry : matchers.entrySet()) {
+            if (entry.getValue().matches(request)) {
+                RateLimitRoute route = entry.getKey();
+                if (!rateLimitService.tryAcquire(route, RateLimitKeyType.IP, rateLimitService.getClientIP(request))) {
+                    reject(response, rateLimitService.getWindowSeconds(route, RateLimitKeyType.IP));
+                    return;
+                }
+                if (!rateLimitService.tryAcquire(route, RateLimitKeyType.USER, getUserId())) {
+                    reject(response, rateLimitService.getWindowSeconds(route, RateLimitKeyType.USER));
+                    return;
+                }
+            }
+        }
+
+        chain.doFilter(request, response);
+    }
+
+    private void reject(HttpServletResponse response, long retryAfterSeconds) throws IOException {
+        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many requests, please try again later");
+    }
+
+    private static String getUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof User) {
+            return String.valueOf(((User) authentication.getPrincipal()).getId());
+        }
+        return null;
+    }
+}
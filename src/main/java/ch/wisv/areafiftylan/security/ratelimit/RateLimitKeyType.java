@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.security.ratelimit;
+
+/**
+ * What a rate limit counts requests by.
+ */
+public enum RateLimitKeyType {
+    /**
+     * The IP address of the client, taking X-Forwarded-For into account
+     */
+    IP,
+    /**
+     * The id of the authenticated User. Anonymous requests are not counted.
+     */
+    USER,
+    /**
+     * An email address from the request body. Only counted where the controller passes it along.
+     */
+    EMAIL;
+
+    public String getPropertyName() {
+        return name().toLowerCase();
+    }
+}
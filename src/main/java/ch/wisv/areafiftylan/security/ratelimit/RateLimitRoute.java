@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.security.ratelimit;
+
+import lombok.Getter;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Endpoints that are protected by a rate limit, with their default limits per key type. The defaults can be
+ * overridden with a5l.ratelimit.[route].[keytype] and a5l.ratelimit.[route].window-seconds, for example
+ * a5l.ratelimit.password-reset.email. A limit of 0 disables that key type for the route.
+ */
+@Getter
+public enum RateLimitRoute {
+    LOGIN("POST", "/login", 60, 10, 0, 0),
+    REGISTER("POST", "/users", 3600, 20, 0, 0),
+    PASSWORD_RESET("POST", "/requestResetPassword", 3600, 20, 0, 5),
+    CONTACT_MAIL("POST", "/mail/contact", 3600, 10, 0, 5),
+    ORDER_CREATION("POST", "/orders", 60, 30, 10, 0),
+    WAITING_ROOM("POST", "/waitingroom", 60, 10, 0, 0);
+
+    private final String method;
+    private final String path;
+    private final int windowSeconds;
+    private final Map<RateLimitKeyType, Integer> defaultLimits = new EnumMap<>(RateLimitKeyType.class);
+
+    RateLimitRoute(String method, String path, int windowSeconds, int ipLimit, int userLimit, int emailLimit) {
+        this.method = method;
+        this.path = path;
+        this.windowSeconds = windowSeconds;
+        defaultLimits.put(RateLimitKeyType.IP, ipLimit);
+        defaultLimits.put(RateLimitKeyType.USER, userLimit);
+        defaultLimits.put(RateLimitKeyType.EMAIL, emailLimit);
+    }
+
+    public String getPropertyName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
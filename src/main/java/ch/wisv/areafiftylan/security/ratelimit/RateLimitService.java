@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.security.ratelimit;
+
+import ch.wisv.areafiftylan.exception.RateLimitExceededException;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps a SlidingWindowRateLimiter for every configured combination of RateLimitRoute and RateLimitKeyType. Requests
+ * are counted in a5l.ratelimit.requests, tagged with the route, key type and whether they were allowed.
+ */
+@Service
+@Slf4j
+public class RateLimitService {
+
+    private final boolean enabled;
+    private final Set<String> trustedProxies;
+    private final Map<RateLimitRoute, Map<RateLimitKeyType, Limit>> limits = new EnumMap<>(RateLimitRoute.class);
+
+    public RateLimitService(Environment environment, MeterRegistry meterRegistry,
+                            @Value("${a5l.ratelimit.enabled:true}") boolean enabled,
+                            @Value("${a5l.ratelimit.minutes:10}") int maxLoginAttemptsMinute,
+                            @Value("${a5l.ratelimit.counters:8192}") int counters,
+                            @Value("${a5l.ratelimit.trustedProxies:127.0.0.1,0:0:0:0:0:0:0:1,::1}")
+                                    String[] trustedProxies) {
+        this.enabled = enabled;
+        this.trustedProxies = ImmutableSet.copyOf(trustedProxies);
+
+        for (RateLimitRoute route : RateLimitRoute.values()) {
+            String prefix = "a5l.ratelimit." + route.getPropertyName() + ".";
+            int windowSeconds =
+                    environment.getProperty(prefix + "window-seconds", Integer.class, route.getWindowSeconds());
+
+            Map<RateLimitKeyType, Limit> routeLimits = new EnumMap<>(RateLimitKeyType.class);
+            for (RateLimitKeyType keyType : RateLimitKeyType.values()) {
+                int defaultLimit = route.getDefaultLimits().get(keyType);
+                // a5l.ratelimit.minutes predates the other routes and still configures logins per IP
+                if (route == RateLimitRoute.LOGIN && keyType == RateLimitKeyType.IP) {
+                    defaultLimit = maxLoginAttemptsMinute;
+                }
+
+                int limit = environment.getProperty(prefix + keyType.getPropertyName(), Integer.class, defaultLimit);
+                if (limit > 0) {
+                    routeLimits.put(keyType, new Limit(route, keyType, limit, windowSeconds, counters, meterRegistry));
+                }
+            }
+            limits.put(route, routeLimits);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Count a request and check if it is within the limit.
+     *
+     * @param route   The route that is requested
+     * @param keyType What the key represents
+     * @param key     The key to count the request for
+     *
+     * @return true if the request may continue, false if it should be rejected
+     */
+    public boolean tryAcquire(RateLimitRoute route, RateLimitKeyType keyType, String key) {
+        Limit limit = limits.get(route).get(keyType);
+        if (!enabled || limit == null || key == null) {
+            return true;
+        }
+
+        if (limit.rateLimiter.tryAcquire(normalize(keyType, key))) {
+            limit.allowed.increment();
+            return true;
+        } else {
+            limit.rejected.increment();
+            log.warn("Rate limit of {} exceeded for {} {}", route, keyType, key);
+            return false;
+        }
+    }
+
+    /**
+     * Count a request and throw a RateLimitExceededException when it is over the limit.
+     */
+    public void checkLimit(RateLimitRoute route, RateLimitKeyType keyType, String key) {
+        if (!tryAcquire(route, keyType, key)) {
+            throw new RateLimitExceededException(getWindowSeconds(route, keyType));
+        }
+    }
+
+    /**
+     * Forget the requests counted for a key, for example after a successful login.
+     */
+    public void reset(RateLimitRoute route, RateLimitKeyType keyType, String key) {
+        Limit limit = limits.get(route).get(keyType);
+        if (limit != null && key != null) {
+            limit.rateLimiter.reset(normalize(keyType, key));
+        }
+    }
+
+    /**
+     * @return The configured limit, or 0 if requests aren't limited for this key type
+     */
+    public int getLimit(RateLimitRoute route, RateLimitKeyType keyType) {
+        Limit limit = limits.get(route).get(keyType);
+        return limit == null ? 0 : limit.rateLimiter.getLimit();
+    }
+
+    public long getWindowSeconds(RateLimitRoute route, RateLimitKeyType keyType) {
+        Limit limit = limits.get(route).get(keyType);
+        return limit == null ? route.getWindowSeconds() : limit.rateLimiter.getWindowMillis() / 1000;
+    }
+
+    /**
+     * Get the IP address of the client that made the request. The X-Forwarded-For header is only read when the request
+     * comes from one of the proxies in a5l.ratelimit.trustedProxies, as anyone else can put any address in it.
+     *
+     * @param request The request
+     *
+     * @return The last address in the X-Forwarded-For header that isn't a trusted proxy, or the remote address
+     */
+    public String getClientIP(HttpServletRequest request) {
+        String address = request.getRemoteAddr();
+        String xfHeader = request.getHeader("X-Forwarded-For");
+        if (xfHeader == null || !trustedProxies.contains(address)) {
+            return address;
+        }
+
+        // Every proxy appends the address it got the request from, so only the addresses at the end can be trusted
+        List<String> forwardedFor = Splitter.on(',').trimResults().omitEmptyStrings().splitToList(xfHeader);
+        for (int i = forwardedFor.size() - 1; i >= 0; i--) {
+            address = forwardedFor.get(i);
+            if (!trustedProxies.contains(address)) {
+                return address;
+            }
+        }
+        return address;
+    }
+
+    private static String normalize(RateLimitKeyType keyType, String key) {
+        return keyType == RateLimitKeyType.EMAIL ? key.trim().toLowerCase() : key;
+    }
+
+    private static class Limit {
+        private final SlidingWindowRateLimiter rateLimiter;
+        private final Counter allowed;
+        private final Counter rejected;
+
+        private Limit(RateLimitRoute route, RateLimitKeyType keyType, int limit, int windowSeconds, int counters,
+                      MeterRegistry meterRegistry) {
+            this.rateLimiter = new SlidingWindowRateLimiter(limit, windowSeconds * 1000L, counters);
+            this.allowed = counter(meterRegistry, route, keyType, "allowed");
+            this.rejected = counter(meterRegistry, route, keyType, "rejected");
+        }
+
+        private static Counter counter(MeterRegistry meterRegistry, RateLimitRoute route, RateLimitKeyType keyType,
+                                       String outcome) {
+            return Counter.builder("a5l.ratelimit.requests").tag("route", route.getPropertyName())
+                    .tag("key", keyType.getPropertyName()).tag("outcome", outcome).register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.security.ratelimit;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free sliding window rate limiter with a fixed memory footprint.
+ * <p>
+ * Every key is hashed to a slot in a fixed array of counters. A slot packs a fingerprint of its key, the window it
+ * belongs to, the count of the previous window and the count of the current window into a single long, so it can be
+ * claimed and updated with one compare-and-set. The number of requests in the sliding window is estimated as the
+ * weighted count of the previous window plus the count of the current window.
+ * <p>
+ * When a slot is in use by another key, the next few slots are tried. Slots of keys without requests in the last two
+ * windows can be taken over. If all candidate slots are in use, the key takes over the slot of the key with the fewest
+ * requests in the sliding window. Rotating through many keys therefore only evicts keys with fewer requests than the
+ * rotating keys themselves, so the counter of a key at its limit isn't flushed, and a full table never locks out new
+ * keys.
+ */
+public class SlidingWindowRateLimiter {
+
+    private static final int FIELD_BITS = 16;
+    private static final long FIELD_MASK = (1L << FIELD_BITS) - 1;
+    private static final int MAX_PROBES = 4;
+
+    private final int limit;
+    private final long windowMillis;
+    private final int width;
+    private final AtomicLongArray slots;
+    private final HashFunction hashFunction;
+    private final LongSupplier clock;
+
+    public SlidingWindowRateLimiter(int limit, long windowMillis, int width) {
+        this(limit, windowMillis, width, System::currentTimeMillis);
+    }
+
+    /**
+     * @param limit        Maximum number of requests per key in a sliding window
+     * @param windowMillis Length of the window in milliseconds
+     * @param width        Number of slots, rounded up to a power of two
+     * @param clock        Source of the current time in milliseconds
+     */
+    public SlidingWindowRateLimiter(int limit, long windowMillis, int width, LongSupplier clock) {
+        if (limit < 1 || limit >= FIELD_MASK || windowMillis < 1 || width < 1) {
+            throw new IllegalArgumentException("Limit, window and width should be positive and the limit below 65535");
+        }
+        this.limit = limit;
+        this.windowMillis = windowMillis;
+        this.width = Integer.bitCount(width) == 1 ? width : Integer.highestOneBit(width) << 1;
+        this.slots = new AtomicLongArray(this.width);
+        // A random seed keeps clients from picking keys that share slots on purpose
+        this.hashFunction = Hashing.murmur3_128(ThreadLocalRandom.current().nextInt());
+        this.clock = clock;
+    }
+
+    /**
+     * Register a request for the given key.
+     *
+     * @param key The key to count the request for, like an IP address or email address
+     *
+     * @return true if the request is within the limit, false if it should be rejected
+     */
+    public boolean tryAcquire(String key) {
+        long now = clock.getAsLong();
+        long window = (now / windowMillis) & FIELD_MASK;
+        double previousWeight = 1.0 - (double) (now % windowMillis) / windowMillis;
+
+        long slot = increment(hash(key), window, previousWeight);
+
+        return previousCount(slot) * previousWeight + currentCount(slot) <= limit;
+    }
+
+    /**
+     * Forget all requests registered for the given key.
+     *
+     * @param key The key to reset
+     */
+    public void reset(String key) {
+        long hash = hash(key);
+        long fingerprint = fingerprint(hash);
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int index = index(hash, probe);
+            long slot = slots.get(index);
+            if (slot != 0 && fingerprint(slot) == fingerprint) {
+                slots.compareAndSet(index, slot, 0L);
+                return;
+            }
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    private long increment(long hash, long window, double previousWeight) {
+        long fingerprint = fingerprint(hash);
+        while (true) {
+            int leastUsedIndex = -1;
+            long leastUsedSlot = 0;
+            double leastUsedCount = Double.MAX_VALUE;
+
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int index = index(hash, probe);
+                while (true) {
+                    long slot = slots.get(index);
+                    boolean live = isLive(slot, window);
+                    if (live && fingerprint(slot) != fingerprint) {
+                        // Taken by another key, remember how much it is used and try the next slot
+                        double count = estimate(slot, window, previousWeight);
+                        if (count < leastUsedCount) {
+                            leastUsedIndex = index;
+                            leastUsedSlot = slot;
+                            leastUsedCount = count;
+                        }
+                        break;
+                    }
+
+                    long next = live ? advance(slot, window) : pack(fingerprint, window, 0, 1);
+                    if (next == slot || slots.compareAndSet(index, slot, next)) {
+                        return next;
+                    }
+                }
+            }
+
+            // All candidate slots are in use, so evict the key with the fewest requests
+            long next = pack(fingerprint, window, 0, 1);
+            if (slots.compareAndSet(leastUsedIndex, leastUsedSlot, next)) {
+                return next;
+            }
+            // The slot changed in the meantime, look at the candidates again
+        }
+    }
+
+    private static double estimate(long slot, long window, double previousWeight) {
+        if (window(slot) == window) {
+            return previousCount(slot) * previousWeight + currentCount(slot);
+        }
+        // The current window of the slot is the previous window of the request
+        return currentCount(slot) * previousWeight;
+    }
+
+    private static boolean isLive(long slot, long window) {
+        long slotWindow = window(slot);
+        return slot != 0 && (slotWindow == window || slotWindow == ((window - 1) & FIELD_MASK));
+    }
+
+    private static long advance(long slot, long window) {
+        long slotWindow = window(slot);
+        if (slotWindow == window) {
+            // Saturate instead of overflowing into the previous count
+            return currentCount(slot) < FIELD_MASK ? slot + 1 : slot;
+        } else if (slotWindow == ((window - 1) & FIELD_MASK)) {
+            return pack(fingerprint(slot), window, currentCount(slot), 1);
+        } else {
+            return pack(fingerprint(slot), window, 0, 1);
+        }
+    }
+
+    private long hash(String key) {
+        return hashFunction.hashString(key, StandardCharsets.UTF_8).asLong();
+    }
+
+    private int index(long hash, int probe) {
+        return ((int) hash + probe) & (width - 1);
+    }
+
+    private static long fingerprint(long hash) {
+        // Zero is reserved for empty slots
+        long fingerprint = (hash >>> (3 * FIELD_BITS)) & FIELD_MASK;
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    private static long pack(long fingerprint, long window, long previousCount, long currentCount) {
+        return (fingerprint << (3 * FIELD_BITS)) | (window << (2 * FIELD_BITS)) | (previousCount << FIELD_BITS) |
+                currentCount;
+    }
+
+    private static long window(long slot) {
+        return (slot >>> (2 * FIELD_BITS)) & FIELD_MASK;
+    }
+
+    private static long previousCount(long slot) {
+        return (slot >>> FIELD_BITS) & FIELD_MASK;
+    }
+
+    private static long currentCount(long slot) {
+        return slot & FIELD_MASK;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.security.token;
+
+import ch.wisv.areafiftylan.users.model.Role;
+import ch.wisv.areafiftylan.users.model.User;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * The verified contents of a signed access token.
+ */
+@Getter
+@AllArgsConstructor
+public class SignedAccessToken {
+
+    private final long userId;
+
+    private final String email;
+
+    /**
+     * Id of the AuthenticationToken this access token was issued for. Revoking that AuthenticationToken revokes all
+     * access tokens issued for it.
+     */
+    private final long sessionId;
+
+    // Both in milliseconds since the epoch
+    private final long issuedAt;
+
+    private final long expiresAt;
+
+    private final Set<Role> roles;
+
+    /**
+     * Create the principal of a request from the claims of this token. The User is not loaded from the database, so
+     * only the id, email and roles are set. Load the User by id where the rest of it is needed.
+     *
+     * @return A User with the id, email and roles of the token
+     */
+    public User toPrincipal() {
+        User user = new User(email, "");
+        user.setId(userId);
+        roles.forEach(user::addRole);
+        return user;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.security.token;
+
+import ch.wisv.areafiftylan.exception.AccessTokenUnavailableException;
+import ch.wisv.areafiftylan.users.model.Role;
+import ch.wisv.areafiftylan.users.model.User;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issues and verifies short-lived access tokens that are signed with HMAC-SHA256. They contain the user id, email,
+ * roles and the expiry, so requests are authenticated from the token alone, without a database lookup. The
+ * database-backed AuthenticationTokens act as refresh credentials: an access token is only issued for a valid
+ * AuthenticationToken, and refers to it by id.
+ * <p>
+ * Logout, password resets and changes to the email or roles add entries to an in-memory revocation list. Entries are
+ * kept only as long as an access token lives, which keeps the list small. The list is local to this instance, so on
+ * other instances a revoked access token stays valid until it expires. Keep a5l.auth.signedTokens.minutes short for
+ * this reason.
+ * <p>
+ * Enable with a5l.auth.signedTokens.enabled. All instances need the same a5l.auth.signedTokens.secret.
+ */
+@Service
+@Slf4j
+public class SignedAccessTokenService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String PREFIX = "v2.";
+
+    private final boolean enabled;
+    private final long lifetimeMillis;
+    private final SecretKeySpec key;
+    private final Clock clock;
+
+    private final Cache<Long, Boolean> revokedSessions;
+    private final Cache<Long, Long> usersRevokedAt;
+    private volatile long allRevokedAt;
+
+    @Autowired
+    public SignedAccessTokenService(@Value("${a5l.auth.signedTokens.enabled:false}") boolean enabled,
+                                    @Value("${a5l.auth.signedTokens.minutes:15}") int lifetimeMinutes,
+                                    @Value("${a5l.auth.signedTokens.secret:}") String secret) {
+        this(enabled, lifetimeMinutes, secret, Clock.systemUTC());
+    }
+
+    public SignedAccessTokenService(boolean enabled, int lifetimeMinutes, String secret, Clock clock) {
+        this.enabled = enabled;
+        this.lifetimeMillis = TimeUnit.MINUTES.toMillis(lifetimeMinutes);
+        this.clock = clock;
+
+        byte[] secretBytes;
+        if (Strings.isNullOrEmpty(secret)) {
+            secretBytes = new byte[32];
+            new SecureRandom().nextBytes(secretBytes);
+            if (enabled) {
+                log.warn("No a5l.auth.signedTokens.secret set, access tokens are only valid on this instance");
+            }
+        } else {
+            secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(secretBytes, ALGORITHM);
+
+        this.revokedSessions =
+                CacheBuilder.newBuilder().expireAfterWrite(lifetimeMillis, TimeUnit.MILLISECONDS).build();
+        this.usersRevokedAt =
+                CacheBuilder.newBuilder().expireAfterWrite(lifetimeMillis, TimeUnit.MILLISECONDS).build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Check if a token looks like a signed access token, as opposed to an AuthenticationToken.
+     *
+     * @param token The value of the X-Auth-Token header
+     *
+     * @return true if the token has the format of a signed access token
+     */
+    public boolean isSignedToken(String token) {
+        return token != null && token.startsWith(PREFIX);
+    }
+
+    /**
+     * Issue an access token for the session of the given AuthenticationToken.
+     *
+     * @param authenticationToken The valid AuthenticationToken that acts as refresh credential
+     *
+     * @return The signed access token
+     *
+     * @throws AccessTokenUnavailableException if signed access tokens are not enabled
+     */
+    public String issue(AuthenticationToken authenticationToken) {
+        if (!enabled) {
+            throw new AccessTokenUnavailableException("Signed access tokens are not enabled");
+        }
+
+        User user = authenticationToken.getUser();
+        long now = clock.millis();
+
+        // The email goes last and encoded, so it can't be confused with the separators
+        String payload = Joiner.on(':').join(user.getId(), authenticationToken.getId(), now, now + lifetimeMillis,
+                Joiner.on(',').join(user.getRoles()), encode(user.getEmail().getBytes(StandardCharsets.UTF_8)));
+        String encodedPayload = encode(payload.getBytes(StandardCharsets.UTF_8));
+
+        return PREFIX + encodedPayload + "." + encode(sign(encodedPayload));
+    }
+
+    /**
+     * Verify a signed access token in memory.
+     *
+     * @param token The signed access token
+     *
+     * @return The contents of the token, or empty if the token is malformed, forged, expired or revoked
+     */
+    public Optional<SignedAccessToken> verify(String token) {
+        return read(token).filter(accessToken -> {
+            long now = clock.millis();
+            Long userRevokedAt = usersRevokedAt.getIfPresent(accessToken.getUserId());
+
+            return accessToken.getExpiresAt() > now && accessToken.getIssuedAt() > allRevokedAt &&
+                    revokedSessions.getIfPresent(accessToken.getSessionId()) == null &&
+                    (userRevokedAt == null || accessToken.getIssuedAt() > userRevokedAt);
+        });
+    }
+
+    /**
+     * Read a signed access token, only checking its signature.
+     *
+     * @param token The signed access token
+     *
+     * @return The contents of the token, or empty if the token is malformed or forged
+     */
+    public Optional<SignedAccessToken> read(String token) {
+        if (!isSignedToken(token)) {
+            return Optional.empty();
+        }
+
+        List<String> parts = Splitter.on('.').splitToList(token.substring(PREFIX.length()));
+        if (parts.size() != 2) {
+            return Optional.empty();
+        }
+
+        try {
+            byte[] signature = Base64.getUrlDecoder().decode(parts.get(1));
+            if (!MessageDigest.isEqual(signature, sign(parts.get(0)))) {
+                return Optional.empty();
+            }
+
+            String payload = new String(Base64.getUrlDecoder().decode(parts.get(0)), StandardCharsets.UTF_8);
+            List<String> claims = Splitter.on(':').splitToList(payload);
+
+            Set<Role> roles = EnumSet.noneOf(Role.class);
+            Splitter.on(',').omitEmptyStrings().split(claims.get(4)).forEach(role -> roles.add(Role.valueOf(role)));
+
+            String email = new String(Base64.getUrlDecoder().decode(claims.get(5)), StandardCharsets.UTF_8);
+
+            return Optional.of(new SignedAccessToken(Long.parseLong(claims.get(0)), email, Long.parseLong(claims.get(1)),
+                    Long.parseLong(claims.get(2)), Long.parseLong(claims.get(3)), roles));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Revoke all access tokens issued for an AuthenticationToken, for example on logout.
+     *
+     * @param sessionId The id of the AuthenticationToken
+     */
+    public void revokeSession(long sessionId) {
+        revokedSessions.put(sessionId, Boolean.TRUE);
+    }
+
+    /**
+     * Revoke all access tokens issued to a User until now, for example after a password reset or a role change.
+     *
+     * @param userId The id of the User
+     */
+    public void revokeUser(long userId) {
+        usersRevokedAt.put(userId, clock.millis());
+    }
+
+    /**
+     * Revoke all access tokens issued until now.
+     */
+    public void revokeAll() {
+        allRevokedAt = clock.millis();
+    }
+
+    private byte[] sign(String encodedPayload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(encodedPayload.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new AccessTokenUnavailableException("Could not sign access token: " + e.getMessage());
+        }
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -18,6 +18,7 @@
 package ch.wisv.areafiftylan.security.token;
 
 import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.utils.RequestEntityCacheListener;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -29,6 +30,7 @@
 @Data
 @NoArgsConstructor
 @Inheritance(strategy = InheritanceType.JOINED)
+@EntityListeners(RequestEntityCacheListener.class)
 public abstract class Token {
     //Zero means not expirable
     private static final int EXPIRATION = 60 * 24;
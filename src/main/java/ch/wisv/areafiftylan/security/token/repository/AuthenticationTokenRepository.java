@@ -27,5 +27,7 @@
 public interface AuthenticationTokenRepository extends TokenRepository<AuthenticationToken> {
     List<AuthenticationToken> findByUserEmailOrderByExpiryDate(String email);
 
+    List<AuthenticationToken> findByUserIdOrderByExpiryDate(Long userId);
+
     void deleteByUser(User user);
 }
@@ -19,6 +19,7 @@
 
 import ch.wisv.areafiftylan.security.token.TeamInviteToken;
 import ch.wisv.areafiftylan.teams.model.Team;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.stereotype.Repository;
 
 import java.util.Collection;
@@ -26,7 +27,16 @@
 @Repository
 public interface TeamInviteTokenRepository extends TokenRepository<TeamInviteToken> {
 
-    Collection<TeamInviteToken> findByUserEmailIgnoreCase(String email);
+    /**
+     * Get the TeamInviteTokens of a User together with their Team, like My Area does, in a single query.
+     *
+     * @param email The email of the invited User
+     *
+     * @return The TeamInviteTokens of the User
+     */
+    @EntityGraph(attributePaths = { "user", "user.profile", "user.roles", "team", "team.captain",
+            "team.captain.profile", "team.captain.roles" })
+    Collection<TeamInviteToken> findDistinctByUserEmailIgnoreCase(String email);
 
     Collection<TeamInviteToken> findByTeamId(Long teamId);
 
@@ -18,14 +18,41 @@
 package ch.wisv.areafiftylan.security.token.repository;
 
 import ch.wisv.areafiftylan.security.token.TicketTransferToken;
+import ch.wisv.areafiftylan.utils.NdjsonStreamer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface TicketTransferTokenRepository extends TokenRepository<TicketTransferToken> {
 
     Collection<TicketTransferToken> findAllByTicketId(Long ticketId);
 
-    Collection<TicketTransferToken> findAllByTicketOwnerEmailIgnoreCase(String email);
+    /**
+     * Get the TicketTransferTokens of the Tickets of a User together with everything they show, like My Area does, in
+     * a single query.
+     *
+     * @param email The email of the owner of the Tickets
+     *
+     * @return The TicketTransferTokens of the Tickets of the owner
+     */
+    @EntityGraph(attributePaths = { "user", "user.profile", "user.roles", "ticket", "ticket.owner",
+            "ticket.owner.profile", "ticket.owner.roles", "ticket.type", "ticket.type.possibleOptions",
+            "ticket.enabledOptions" })
+    Collection<TicketTransferToken> findDistinctByTicketOwnerEmailIgnoreCase(String email);
+
+    List<TicketTransferToken> findAllByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    @QueryHints({ @QueryHint(name = HINT_FETCH_SIZE, value = NdjsonStreamer.FETCH_SIZE),
+                  @QueryHint(name = HINT_READONLY, value = "true") })
+    Stream<TicketTransferToken> streamAllByOrderByIdAsc();
 }
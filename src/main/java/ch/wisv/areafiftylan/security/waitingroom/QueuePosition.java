@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.security.waitingroom;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The place of a visitor in the waiting room.
+ */
+@Getter
+@AllArgsConstructor
+public class QueuePosition {
+
+    private final long position;
+
+    /**
+     * Number of visitors that are still waiting in front of this one
+     */
+    private final long ahead;
+
+    private final long estimatedWaitSeconds;
+
+    private final boolean admitted;
+}
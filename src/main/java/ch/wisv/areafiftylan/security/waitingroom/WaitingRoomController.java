@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.security.waitingroom;
+
+import ch.wisv.areafiftylan.exception.InvalidTokenException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static ch.wisv.areafiftylan.security.waitingroom.WaitingRoomService.QUEUE_TOKEN_HEADER;
+import static ch.wisv.areafiftylan.utils.ResponseEntityBuilder.createResponseEntity;
+
+@RestController
+@RequestMapping("/waitingroom")
+public class WaitingRoomController {
+
+    private final WaitingRoomService waitingRoomService;
+
+    @Autowired
+    public WaitingRoomController(WaitingRoomService waitingRoomService) {
+        this.waitingRoomService = waitingRoomService;
+    }
+
+    /**
+     * Join the waiting room. The queue token in the X-Queue-Token header has to be sent along when creating an Order.
+     *
+     * @return The queue token in the X-Queue-Token header, and the position in the queue
+     */
+    @PostMapping
+    public ResponseEntity<?> joinWaitingRoom() {
+        String token = waitingRoomService.join();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(QUEUE_TOKEN_HEADER, token);
+
+        return createResponseEntity(HttpStatus.CREATED, headers, "Joined the waiting room",
+                waitingRoomService.getPosition(token).orElseThrow(IllegalStateException::new));
+    }
+
+    /**
+     * Get the position in the queue and the estimated wait. Poll this until the position is admitted.
+     *
+     * @param token The queue token from the X-Queue-Token header
+     *
+     * @return The position in the queue
+     */
+    @GetMapping
+    public QueuePosition getQueuePosition(@RequestHeader(QUEUE_TOKEN_HEADER) String token) {
+        return waitingRoomService.getPosition(token).orElseThrow(InvalidTokenException::new);
+    }
+}
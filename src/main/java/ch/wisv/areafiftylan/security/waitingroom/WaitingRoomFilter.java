@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.security.waitingroom;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Optional;
+
+import static ch.wisv.areafiftylan.security.waitingroom.WaitingRoomService.QUEUE_TOKEN_HEADER;
+
+/**
+ * Only lets requests that create an Order or add Tickets to it through when they carry an admitted queue token.
+ * Requests without a valid queue token get a 403 response, requests that still have to wait a 429 response with a
+ * Retry-After header. A queue token creates a single Order, and can afterwards only add Tickets to that Order.
+ */
+public class WaitingRoomFilter extends OncePerRequestFilter {
+
+    private final WaitingRoomService waitingRoomService;
+    private final RequestMatcher orderCreation = new OrRequestMatcher(new AntPathRequestMatcher("/orders", "POST"),
+            new AntPathRequestMatcher("/orders/", "POST"));
+    private final AntPathRequestMatcher orderModification =
+            new AntPathRequestMatcher("/orders/{orderId:\\d+}", "POST");
+
+    public WaitingRoomFilter(WaitingRoomService waitingRoomService) {
+        this.waitingRoomService = waitingRoomService;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !waitingRoomService.isEnabled() ||
+                !(orderCreation.matches(request) || orderModification.matches(request));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Optional<QueuePosition> position = waitingRoomService.getPosition(request.getHeader(QUEUE_TOKEN_HEADER));
+
+        if (!position.isPresent()) {
+            response.sendError(HttpStatus.FORBIDDEN.value(), "Join the waiting room before ordering tickets");
+        } else if (!position.get().isAdmitted()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(position.get().getEstimatedWaitSeconds()));
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Please wait for your turn in the waiting room");
+        } else if (orderCreation.matches(request)) {
+            createOrder(request, response, chain, position.get().getPosition());
+        } else if (isBoundTo(request, position.get().getPosition())) {
+            chain.doFilter(request, response);
+        } else {
+            response.sendError(HttpStatus.FORBIDDEN.value(), "This queue token was used for another Order");
+        }
+    }
+
+    private void createOrder(HttpServletRequest request, HttpServletResponse response, FilterChain chain,
+                             long position) throws ServletException, IOException {
+        if (!waitingRoomService.claim(position)) {
+            response.sendError(HttpStatus.FORBIDDEN.value(), "This queue token was already used to create an Order");
+            return;
+        }
+
+        boolean bound = false;
+        try {
+            chain.doFilter(request, response);
+
+            // The Location of the created Order ends with its id
+            String location = response.getHeader(HttpHeaders.LOCATION);
+            if (response.getStatus() == HttpStatus.CREATED.value() && location != null) {
+                waitingRoomService.bind(position, Long.parseLong(location.substring(location.lastIndexOf('/') + 1)));
+                bound = true;
+            }
+        } finally {
+            if (!bound) {
+                waitingRoomService.release(position);
+            }
+        }
+    }
+
+    private boolean isBoundTo(HttpServletRequest request, long position) {
+        try {
+            long orderId = Long.parseLong(orderModification.matcher(request).getVariables().get("orderId"));
+            return waitingRoomService.isBoundTo(position, orderId);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
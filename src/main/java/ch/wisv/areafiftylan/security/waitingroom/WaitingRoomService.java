@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.security.waitingroom;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for ticket sale launches. Visitors join the waiting room and get a queue token, signed with
+ * HMAC-SHA256, that holds their position. Every second the next a5l.waitingroom.admissionsPerSecond positions are
+ * admitted, and only requests with an admitted queue token can create Orders. This keeps the number of purchases at a
+ * rate the database can handle, however many visitors arrive at once.
+ * <p>
+ * The queue lives in memory, so checking a position doesn't touch the database. Queue tokens are only valid on the
+ * instance that issued them, and are invalidated by a restart. Run a single instance or use sticky sessions during a
+ * launch. Queue tokens expire after a5l.waitingroom.tokenMinutes.
+ * <p>
+ * An admitted queue token creates a single Order. It is claimed while the Order is created, and afterwards bound to
+ * that Order, so it can only be used to add Tickets to it.
+ * <p>
+ * Enable with a5l.waitingroom.enabled. When disabled, Orders can be created without a queue token.
+ */
+@Service
+@Slf4j
+public class WaitingRoomService {
+
+    public static final String QUEUE_TOKEN_HEADER = "X-Queue-Token";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String PREFIX = "q1.";
+
+    /**
+     * Marks a claimed position of which the Order is still being created
+     */
+    private static final long NO_ORDER = -1L;
+
+    private final boolean enabled;
+    private final int admissionsPerSecond;
+    private final long tokenLifetimeMillis;
+    private final SecretKeySpec key;
+
+    /**
+     * Identifies this queue, so tokens issued before a restart are not mistaken for positions in the new queue
+     */
+    private final long queueId = System.currentTimeMillis();
+
+    private final AtomicLong nextPosition = new AtomicLong();
+
+    /**
+     * All positions below this one are admitted
+     */
+    private final AtomicLong admittedUntil = new AtomicLong();
+
+    /**
+     * The id of the Order created with each used position. Kept as long as the queue tokens are valid.
+     */
+    private final Cache<Long, Long> orders;
+
+    public WaitingRoomService(@Value("${a5l.waitingroom.enabled:false}") boolean enabled,
+                              @Value("${a5l.waitingroom.admissionsPerSecond:10}") int admissionsPerSecond,
+                              @Value("${a5l.waitingroom.tokenMinutes:60}") int tokenMinutes,
+                              @Value("${a5l.waitingroom.secret:}") String secret, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.admissionsPerSecond = Math.max(1, admissionsPerSecond);
+        this.tokenLifetimeMillis = TimeUnit.MINUTES.toMillis(tokenMinutes);
+
+        byte[] secretBytes;
+        if (Strings.isNullOrEmpty(secret)) {
+            secretBytes = new byte[32];
+            new SecureRandom().nextBytes(secretBytes);
+        } else {
+            secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(secretBytes, ALGORITHM);
+        this.orders = CacheBuilder.newBuilder().expireAfterWrite(Math.max(0, tokenLifetimeMillis),
+                TimeUnit.MILLISECONDS).build();
+
+        Gauge.builder("a5l.waitingroom.waiting", this, service -> service.nextPosition.get() -
+                service.admittedUntil.get()).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Join the back of the queue.
+     *
+     * @return The queue token that holds the new position
+     */
+    public String join() {
+        long position = nextPosition.getAndIncrement();
+        String encodedPayload = encode(Joiner.on(':').join(queueId, position, System.currentTimeMillis()).
+                getBytes(StandardCharsets.UTF_8));
+
+        return PREFIX + encodedPayload + "." + encode(sign(encodedPayload));
+    }
+
+    /**
+     * Look up the place in the queue of a queue token.
+     *
+     * @param token The queue token
+     *
+     * @return The place in the queue, or empty if the token is malformed, forged, expired or from another queue
+     */
+    public Optional<QueuePosition> getPosition(String token) {
+        return readPosition(token).map(position -> {
+            long admitted = admittedUntil.get();
+            if (position < admitted) {
+                return new QueuePosition(position, 0, 0, true);
+            }
+
+            long ahead = position - admitted;
+            return new QueuePosition(position, ahead, (ahead + admissionsPerSecond) / admissionsPerSecond, false);
+        });
+    }
+
+    /**
+     * Claim an admitted position to create an Order with. A position can only be claimed once.
+     *
+     * @param position The position in the queue
+     *
+     * @return True if the position was not used before
+     */
+    public boolean claim(long position) {
+        return orders.asMap().putIfAbsent(position, NO_ORDER) == null;
+    }
+
+    /**
+     * Bind a claimed position to the Order that was created with it.
+     *
+     * @param position The claimed position
+     * @param orderId  The id of the created Order
+     */
+    public void bind(long position, long orderId) {
+        orders.put(position, orderId);
+    }
+
+    /**
+     * Give up the claim on a position when no Order was created with it, so the queue token can be used again.
+     *
+     * @param position The claimed position
+     */
+    public void release(long position) {
+        orders.asMap().remove(position, NO_ORDER);
+    }
+
+    /**
+     * Check whether an Order was created with a position.
+     *
+     * @param position The position in the queue
+     * @param orderId  The id of the Order
+     *
+     * @return True if the position is bound to the Order
+     */
+    public boolean isBoundTo(long position, long orderId) {
+        return Long.valueOf(orderId).equals(orders.getIfPresent(position));
+    }
+
+    /**
+     * Admit the next visitors in the queue. Positions are never admitted before they are handed out, so the capacity of
+     * quiet periods doesn't build up into a burst later on. This runs with a fixed delay, so after a stall it doesn't
+     * catch up by admitting several rounds at once.
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void admitNext() {
+        long queueLength = nextPosition.get();
+        admittedUntil.updateAndGet(admitted -> Math.min(admitted + admissionsPerSecond, queueLength));
+    }
+
+    private Optional<Long> readPosition(String token) {
+        if (token == null || !token.startsWith(PREFIX)) {
+            return Optional.empty();
+        }
+
+        List<String> parts = Splitter.on('.').splitToList(token.substring(PREFIX.length()));
+        if (parts.size() != 2) {
+            return Optional.empty();
+        }
+
+        try {
+            byte[] signature = Base64.getUrlDecoder().decode(parts.get(1));
+            if (!MessageDigest.isEqual(signature, sign(parts.get(0)))) {
+                return Optional.empty();
+            }
+
+            String payload = new String(Base64.getUrlDecoder().decode(parts.get(0)), StandardCharsets.UTF_8);
+            List<String> claims = Splitter.on(':').splitToList(payload);
+            long tokenQueueId = Long.parseLong(claims.get(0));
+            long position = Long.parseLong(claims.get(1));
+            long issuedAt = Long.parseLong(claims.get(2));
+
+            if (tokenQueueId != queueId || issuedAt + tokenLifetimeMillis < System.currentTimeMillis()) {
+                return Optional.empty();
+            }
+            return Optional.of(position);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return Optional.empty();
+        }
+    }
+
+    private byte[] sign(String encodedPayload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(encodedPayload.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not sign queue token", e);
+        }
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.statistics.model;
+
+import ch.wisv.areafiftylan.products.model.order.OrderStatus;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Snapshot of the totals organizers keep an eye on during the ticket sale and the event.
+ */
+@Getter
+@AllArgsConstructor
+public class Statistics {
+
+    /**
+     * Tickets sold and valid, by TicketType name
+     */
+    private Map<String, TicketTypeStatistics> tickets;
+
+    private Map<OrderStatus, Long> orders;
+
+    /**
+     * Seats, taken Seats and locked Seats, by seat group
+     */
+    private Map<String, SeatGroupStatistics> seats;
+
+    private long teams;
+
+    /**
+     * Number of Teams, by number of members
+     */
+    private Map<Integer, Long> teamSizes;
+
+    private long rfidLinks;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime lastUpdated;
+}
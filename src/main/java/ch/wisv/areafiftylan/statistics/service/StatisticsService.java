@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.statistics.service;
+
+import ch.wisv.areafiftylan.extras.rfid.service.RFIDLinkRepository;
+import ch.wisv.areafiftylan.extras.rfid.service.RFIDLinksChangedEvent;
+import ch.wisv.areafiftylan.products.model.order.OrderStatus;
+import ch.wisv.areafiftylan.products.service.OrdersChangedEvent;
+import ch.wisv.areafiftylan.products.service.TicketAvailabilityChangedEvent;
+import ch.wisv.areafiftylan.products.service.repository.OrderRepository;
+import ch.wisv.areafiftylan.products.service.repository.TicketRepository;
+import ch.wisv.areafiftylan.seats.service.SeatRepository;
+import ch.wisv.areafiftylan.seats.service.SeatsChangedEvent;
+import ch.wisv.areafiftylan.statistics.model.SeatGroupStatistics;
+import ch.wisv.areafiftylan.statistics.model.Statistics;
+import ch.wisv.areafiftylan.statistics.model.TicketTypeStatistics;
+import ch.wisv.areafiftylan.teams.service.TeamRepository;
+import ch.wisv.areafiftylan.teams.service.TeamsChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the statistics for the organizers in memory, so they don't have to download every table to count them.
+ * <p>
+ * The services publish an event when they change Tickets, Orders, Seats, Teams or RFIDLinks. Once the change is
+ * committed, this marks the statistics of that category as changed; at most once per a5l.statistics.refreshMillis the
+ * changed categories are counted again, each with a single aggregate query. All categories are counted again every
+ * a5l.statistics.reconcileMillis as well, to pick up changes that didn't go through the services. Nothing is counted
+ * until the statistics are requested for the first time.
+ */
+@Service
+public class StatisticsService {
+
+    enum Category {
+        TICKETS, ORDERS, SEATS, TEAMS, RFID_LINKS
+    }
+
+    private final TicketRepository ticketRepository;
+    private final OrderRepository orderRepository;
+    private final SeatRepository seatRepository;
+    private final TeamRepository teamRepository;
+    private final RFIDLinkRepository rfidLinkRepository;
+
+    private final Map<Category, Timer> refreshTimers = new EnumMap<>(Category.class);
+    private final Set<Category> changed = ConcurrentHashMap.newKeySet();
+
+    private Map<String, TicketTypeStatistics> tickets;
+    private Map<OrderStatus, Long> orders;
+    private Map<String, SeatGroupStatistics> seats;
+    private List<Long> teamSizes;
+    private long rfidLinks;
+
+    /**
+     * The statistics as last counted, or null if they haven't been requested yet. Only replaced while holding this.
+     */
+    private volatile Statistics statistics;
+
+    @Autowired
+    public StatisticsService(TicketRepository ticketRepository, OrderRepository orderRepository,
+                             SeatRepository seatRepository, TeamRepository teamRepository,
+                             RFIDLinkRepository rfidLinkRepository, MeterRegistry meterRegistry) {
+        this.ticketRepository = ticketRepository;
+        this.orderRepository = orderRepository;
+        this.seatRepository = seatRepository;
+        this.teamRepository = teamRepository;
+        this.rfidLinkRepository = rfidLinkRepository;
+
+        for (Category category : Category.values()) {
+            refreshTimers.put(category, Timer.builder("a5l.statistics.refresh")
+                    .tag("category", category.name().toLowerCase()).register(meterRegistry));
+        }
+    }
+
+    public Statistics getStatistics() {
+        Statistics current = statistics;
+        if (current != null) {
+            return current;
+        }
+
+        synchronized (this) {
+            if (statistics == null) {
+                refresh(EnumSet.allOf(Category.class));
+            }
+            return statistics;
+        }
+    }
+
+    @TransactionalEventListener(classes = TicketAvailabilityChangedEvent.class, fallbackExecution = true)
+    public void ticketsChanged() {
+        changed.add(Category.TICKETS);
+    }
+
+    /**
+     * Paying an Order makes its Tickets valid, so the Tickets are counted again as well.
+     */
+    @TransactionalEventListener(classes = OrdersChangedEvent.class, fallbackExecution = true)
+    public void ordersChanged() {
+        changed.add(Category.ORDERS);
+        changed.add(Category.TICKETS);
+    }
+
+    @TransactionalEventListener(classes = SeatsChangedEvent.class, fallbackExecution = true)
+    public void seatsChanged() {
+        changed.add(Category.SEATS);
+    }
+
+    @TransactionalEventListener(classes = TeamsChangedEvent.class, fallbackExecution = true)
+    public void teamsChanged() {
+        changed.add(Category.TEAMS);
+    }
+
+    @TransactionalEventListener(classes = RFIDLinksChangedEvent.class, fallbackExecution = true)
+    public void rfidLinksChanged() {
+        changed.add(Category.RFID_LINKS);
+    }
+
+    /**
+     * Count the categories that changed since the last refresh again.
+     */
+    @Scheduled(fixedDelayString = "${a5l.statistics.refreshMillis:1000}")
+    public synchronized void refreshChanged() {
+        if (statistics == null || changed.isEmpty()) {
+            return;
+        }
+
+        Set<Category> categories = EnumSet.noneOf(Category.class);
+        for (Category category : Category.values()) {
+            // Changes made while counting mark the category again, so they're picked up by the next refresh
+            if (changed.remove(category)) {
+                categories.add(category);
+            }
+        }
+        refresh(categories);
+    }
+
+    /**
+     * Count all categories again, whether the services reported a change or not.
+     *
+     * @return The number of categories counted
+     */
+    public synchronized int reconcile() {
+        if (statistics == null) {
+            return 0;
+        }
+
+        changed.clear();
+        refresh(EnumSet.allOf(Category.class));
+        return Category.values().length;
+    }
+
+    private void refresh(Set<Category> categories) {
+        for (Category category : categories) {
+            refreshTimers.get(category).record(() -> count(category));
+        }
+
+        Map<Integer, Long> teamSizeCounts = teamSizes.stream().
+                collect(Collectors.groupingBy(Long::intValue, TreeMap::new, Collectors.counting()));
+
+        statistics = new Statistics(tickets, orders, seats, teamSizes.size(),
+                Collections.unmodifiableMap(teamSizeCounts), rfidLinks, LocalDateTime.now());
+    }
+
+    private void count(Category category) {
+        switch (category) {
+            case TICKETS:
+                tickets = ticketRepository.countValidGroupByType().stream().collect(toSortedMap(
+                        TicketRepository.TypeValidCount::getTypeName,
+                        count -> new TicketTypeStatistics(count.getNumberSold(), count.getNumberValid())));
+                break;
+            case ORDERS:
+                Map<OrderStatus, Long> orderCounts = new EnumMap<>(OrderStatus.class);
+                orderRepository.countGroupByStatus().forEach(count -> orderCounts.put(count.getStatus(),
+                        count.getNumberOfOrders()));
+                orders = Collections.unmodifiableMap(orderCounts);
+                break;
+            case SEATS:
+                seats = seatRepository.countGroupBySeatGroup().stream().collect(toSortedMap(
+                        SeatRepository.SeatGroupCount::getSeatGroup,
+                        count -> new SeatGroupStatistics(count.getNumberOfSeats(), count.getNumberTaken(),
+                                count.getNumberLocked())));
+                break;
+            case TEAMS:
+                teamSizes = teamRepository.countMembersGroupByTeam();
+                break;
+            case RFID_LINKS:
+                rfidLinks = rfidLinkRepository.count();
+                break;
+        }
+    }
+
+    private static <T, V> Collector<T, ?, Map<String, V>> toSortedMap(Function<T, String> keyMapper,
+                                                                      Function<T, V> valueMapper) {
+        return Collectors.collectingAndThen(
+                Collectors.toMap(keyMapper, valueMapper, (first, second) -> second, TreeMap::new),
+                Collections::unmodifiableMap);
+    }
+}
@@ -25,6 +25,8 @@
 import ch.wisv.areafiftylan.teams.service.TeamService;
 import ch.wisv.areafiftylan.users.model.Role;
 import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.utils.KeysetPage;
+import ch.wisv.areafiftylan.utils.NdjsonStreamer;
 import ch.wisv.areafiftylan.utils.view.View;
 import com.fasterxml.jackson.annotation.JsonView;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -35,6 +37,7 @@
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.util.Collection;
@@ -51,10 +54,13 @@ public class TeamRestController {
 
     private final SeatService seatService;
 
+    private final NdjsonStreamer ndjsonStreamer;
+
     @Autowired
-    public TeamRestController(TeamService teamService, SeatService seatService) {
+    public TeamRestController(TeamService teamService, SeatService seatService, NdjsonStreamer ndjsonStreamer) {
         this.teamService = teamService;
         this.seatService = seatService;
+        this.ndjsonStreamer = ndjsonStreamer;
     }
 
     /**
@@ -135,6 +141,33 @@ public Collection<Team> readTeams() {
         return teamService.getAllTeams();
     }
 
+    /**
+     * Get a page of Teams, ordered by id. Only available as Admin
+     *
+     * @param after    The nextCursor of the previous page, omit for the first page
+     * @param limit    The maximum number of Teams on the page
+     * @param teamName Optional part of the team name to filter on
+     *
+     * @return The page of Teams
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(params = "limit")
+    public KeysetPage<Team> readTeams(@RequestParam(defaultValue = "0") long after, @RequestParam int limit,
+                                      @RequestParam(required = false) String teamName) {
+        return teamService.getTeams(after, teamName, limit);
+    }
+
+    /**
+     * Stream all Teams as newline delimited JSON. Only available as Admin
+     *
+     * @return The Teams, one per line
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(produces = NdjsonStreamer.APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamTeams() {
+        return ndjsonStreamer.stream(teamService::streamAllTeams, null);
+    }
+
     /**
      * Get the team based on its Id. Can only be accessed by Team members or Admins.
      *
@@ -18,10 +18,13 @@
 package ch.wisv.areafiftylan.teams.model;
 
 import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.utils.RequestEntityCacheListener;
 import ch.wisv.areafiftylan.utils.view.View;
 import com.fasterxml.jackson.annotation.JsonView;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import javax.persistence.*;
 import java.util.HashSet;
@@ -30,9 +33,16 @@
 @Entity
 @Data
 @NoArgsConstructor
+@EntityListeners(RequestEntityCacheListener.class)
 @Table(uniqueConstraints = { @UniqueConstraint(name = "teamName", columnNames = { "teamName" }) })
+@NamedEntityGraph(name = Team.WITH_MEMBERS, attributeNodes = @NamedAttributeNode("members"))
 public class Team {
 
+    /**
+     * Entity graph fetching the members together with the Team, as needed for the Public view
+     */
+    public static final String WITH_MEMBERS = "Team.members";
+
     @JsonView(View.Public.class)
     @Id
     @GeneratedValue
@@ -43,14 +53,19 @@ public class Team {
     private String teamName;
 
     @JsonView(View.Public.class)
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Set<User> members;
 
     @JsonView(View.Public.class)
     @ManyToOne(optional = false, cascade = CascadeType.MERGE)
     private User captain;
 
+    // The getter counts the members, which would make equals and toString load them
     @JsonView(View.Public.class)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private int size;
 
     public Team(String teamName, User captain) {
@@ -18,21 +18,66 @@
 package ch.wisv.areafiftylan.teams.service;
 
 import ch.wisv.areafiftylan.teams.model.Team;
+import ch.wisv.areafiftylan.utils.NdjsonStreamer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface TeamRepository extends JpaRepository<Team, Long> {
-    Collection<Team> findAllByMembersEmailIgnoreCase(String email);
-
-    Collection<Team> findByCaptainId(Long userId);
+    /**
+     * Find the Teams of a member, with all their members. The member is matched in a subquery, as filtering on the
+     * fetched members would leave only the matching member in the collection.
+     *
+     * @param email The email of the member
+     *
+     * @return The Teams the member is in
+     */
+    @EntityGraph(attributePaths = { "members", "members.profile", "members.roles" })
+    @Query("select distinct t from Team t where t.id in " +
+            "(select t2.id from Team t2 join t2.members m where lower(m.email) = lower(:email))")
+    Collection<Team> findDistinctByMembersEmailIgnoreCase(@Param("email") String email);
 
-    Collection<Team> findAllByCaptainEmailIgnoreCase(String email);
+    @EntityGraph(Team.WITH_MEMBERS)
+    Collection<Team> findDistinctByCaptainId(Long userId);
 
+    @EntityGraph(Team.WITH_MEMBERS)
     Optional<Team> findByTeamNameIgnoreCase(String teamName);
 
+    @EntityGraph(Team.WITH_MEMBERS)
     Optional<Team> findById(Long teamId);
+
+    @EntityGraph(Team.WITH_MEMBERS)
+    List<Team> findDistinctByOrderByIdAsc();
+
+    /**
+     * Count the members of every Team in a single query. The size field of a Team isn't kept up to date, so this
+     * counts the join table instead. Teams without members are counted as 0.
+     *
+     * @return The number of members of every Team
+     */
+    @Query("select count(m) from Team t left join t.members m group by t.id")
+    List<Long> countMembersGroupByTeam();
+
+    List<Team> findAllByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    List<Team> findAllByIdGreaterThanAndTeamNameContainingIgnoreCaseOrderByIdAsc(Long id, String teamName,
+                                                                                Pageable pageable);
+
+    @QueryHints({ @QueryHint(name = HINT_FETCH_SIZE, value = NdjsonStreamer.FETCH_SIZE),
+                  @QueryHint(name = HINT_READONLY, value = "true") })
+    Stream<Team> streamAllByOrderByIdAsc();
 }
@@ -21,9 +21,11 @@
 import ch.wisv.areafiftylan.teams.model.Team;
 import ch.wisv.areafiftylan.teams.model.TeamDTO;
 import ch.wisv.areafiftylan.teams.model.TeamInviteResponse;
+import ch.wisv.areafiftylan.utils.KeysetPage;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface TeamService {
     Team create(String email, String teamname);
@@ -38,6 +40,24 @@ public interface TeamService {
 
     Collection<Team> getAllTeams();
 
+    /**
+     * Get the Teams with an id greater than the cursor, ordered by id.
+     *
+     * @param after    The id of the last Team on the previous page, 0 for the first page
+     * @param teamName Optional part of the team name to filter on
+     * @param limit    The maximum number of Teams
+     *
+     * @return The page of Teams
+     */
+    KeysetPage<Team> getTeams(long after, String teamName, int limit);
+
+    /**
+     * Stream all Teams, ordered by id. Has to be consumed within a transaction.
+     *
+     * @return The Stream of Teams, which should be closed after use
+     */
+    Stream<Team> streamAllTeams();
+
     Collection<Team> getTeamsByMemberEmail(String email);
 
     Team update(Long teamId, String teamName, String captainEmail);
@@ -46,6 +66,8 @@ public interface TeamService {
 
     TeamInviteToken inviteMember(Long teamId, String email);
 
+    TeamInviteToken getTeamInviteToken(String token);
+
     void revokeInvite(String token);
 
     List<TeamInviteResponse> findTeamInvitesByEmail(String email);
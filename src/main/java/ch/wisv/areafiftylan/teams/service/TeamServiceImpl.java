@@ -27,43 +27,51 @@
 import ch.wisv.areafiftylan.teams.model.TeamInviteResponse;
 import ch.wisv.areafiftylan.users.model.User;
 import ch.wisv.areafiftylan.users.service.UserService;
-import ch.wisv.areafiftylan.utils.mail.MailService;
+import ch.wisv.areafiftylan.utils.KeysetPage;
+import ch.wisv.areafiftylan.utils.RequestEntityCache;
 import com.google.common.base.Strings;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class TeamServiceImpl implements TeamService {
     private final TeamRepository teamRepository;
     private final UserService userService;
-    private final MailService mailService;
     private final TeamInviteTokenRepository teamInviteTokenRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public TeamServiceImpl(TeamRepository teamRepository, UserService userService, MailService mailService,
-                           TeamInviteTokenRepository teamInviteTokenRepository) {
+    public TeamServiceImpl(TeamRepository teamRepository, UserService userService,
+                           TeamInviteTokenRepository teamInviteTokenRepository,
+                           ApplicationEventPublisher eventPublisher) {
         this.teamRepository = teamRepository;
         this.userService = userService;
-        this.mailService = mailService;
         this.teamInviteTokenRepository = teamInviteTokenRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
     public Team create(String email, String teamname) {
         User captain = userService.getUserByEmail(email);
-        Team team = new Team(teamname, captain);
+        Team team = teamRepository.saveAndFlush(new Team(teamname, captain));
+        eventPublisher.publishEvent(new TeamsChangedEvent());
 
-        return teamRepository.saveAndFlush(team);
+        return team;
     }
 
     @Override
     public Team getTeamById(Long teamId) {
-        return teamRepository.findById(teamId).orElseThrow(() -> new TeamNotFoundException(teamId));
+        return RequestEntityCache.get(Team.class, teamId,
+                () -> teamRepository.findById(teamId).orElseThrow(() -> new TeamNotFoundException(teamId)));
     }
 
     @Override
@@ -79,17 +87,37 @@ public boolean teamnameUsed(String teamname) {
 
     @Override
     public Collection<Team> getTeamByCaptainId(Long userId) {
-        return teamRepository.findByCaptainId(userId);
+        return teamRepository.findDistinctByCaptainId(userId);
     }
 
     @Override
     public Collection<Team> getAllTeams() {
-        return teamRepository.findAll();
+        return teamRepository.findDistinctByOrderByIdAsc();
+    }
+
+    @Override
+    @Transactional
+    public KeysetPage<Team> getTeams(long after, String teamName, int limit) {
+        Pageable pageable = KeysetPage.pageable(limit);
+        List<Team> teams = Strings.isNullOrEmpty(teamName) ?
+                teamRepository.findAllByIdGreaterThanOrderByIdAsc(after, pageable) :
+                teamRepository.findAllByIdGreaterThanAndTeamNameContainingIgnoreCaseOrderByIdAsc(after, teamName,
+                        pageable);
+
+        // Fetching the members in the page query would make Hibernate paginate in memory, so load them in batches
+        teams.forEach(team -> Hibernate.initialize(team.getMembers()));
+
+        return KeysetPage.of(teams, pageable, Team::getId);
+    }
+
+    @Override
+    public Stream<Team> streamAllTeams() {
+        return teamRepository.streamAllByOrderByIdAsc();
     }
 
     @Override
     public Collection<Team> getTeamsByMemberEmail(String email) {
-        return teamRepository.findAllByMembersEmailIgnoreCase(email);
+        return teamRepository.findDistinctByMembersEmailIgnoreCase(email);
     }
 
     @Override
@@ -116,6 +144,7 @@ public Team delete(Long teamId) {
         Team team = teamRepository.getOne(teamId);
         teamInviteTokenRepository.deleteByTeam(team);
         teamRepository.delete(team);
+        eventPublisher.publishEvent(new TeamsChangedEvent());
         return team;
     }
 
@@ -133,7 +162,7 @@ public TeamInviteToken inviteMember(Long teamId, String email) {
             TeamInviteToken inviteToken = new TeamInviteToken(user, team);
             teamInviteTokenRepository.save(inviteToken);
 
-            mailService.sendTeamInviteMail(user, team.getTeamName(), team.getCaptain());
+            eventPublisher.publishEvent(new MemberInvitedEvent(inviteToken));
             return inviteToken;
         } else {
             throw new IllegalArgumentException("User already invited");
@@ -142,15 +171,20 @@ public TeamInviteToken inviteMember(Long teamId, String email) {
 
     private boolean isUserAlreadyInvited(String email, Team team) {
         // Check if the member isn't already invited
-        return teamInviteTokenRepository.findByUserEmailIgnoreCase(email).stream().
+        return teamInviteTokenRepository.findDistinctByUserEmailIgnoreCase(email).stream().
                 filter(token -> token.getTeam().equals(team)).
                 noneMatch(TeamInviteToken::isValid);
     }
 
+    @Override
+    public TeamInviteToken getTeamInviteToken(String token) {
+        return RequestEntityCache.get(TeamInviteToken.class, token, () -> teamInviteTokenRepository.findByToken(token)
+                .orElseThrow(() -> new TokenNotFoundException(token)));
+    }
+
     @Override
     public void revokeInvite(String token) {
-        TeamInviteToken teamInviteToken =
-                teamInviteTokenRepository.findByToken(token).orElseThrow(() -> new TokenNotFoundException(token));
+        TeamInviteToken teamInviteToken = getTeamInviteToken(token);
         teamInviteToken.revoke();
         teamInviteTokenRepository.save(teamInviteToken);
 
@@ -158,7 +192,7 @@ public void revokeInvite(String token) {
 
     @Override
     public List<TeamInviteResponse> findTeamInvitesByEmail(String email) {
-        Collection<TeamInviteToken> inviteTokens = teamInviteTokenRepository.findByUserEmailIgnoreCase(email);
+        Collection<TeamInviteToken> inviteTokens = teamInviteTokenRepository.findDistinctByUserEmailIgnoreCase(email);
 
         return teamInviteTokensToReponses(inviteTokens);
     }
@@ -182,8 +216,7 @@ private List<TeamInviteResponse> teamInviteTokensToReponses(Collection<TeamInvit
 
     @Override
     public void addMemberByInvite(String token) {
-        TeamInviteToken teamInviteToken =
-                teamInviteTokenRepository.findByToken(token).orElseThrow(() -> new TokenNotFoundException(token));
+        TeamInviteToken teamInviteToken = getTeamInviteToken(token);
         addMember(teamInviteToken.getTeam().getId(), teamInviteToken.getUser().getEmail());
         teamInviteToken.use();
         teamInviteTokenRepository.save(teamInviteToken);
@@ -191,10 +224,11 @@ public void addMemberByInvite(String token) {
 
     @Override
     public void addMember(Long teamId, String email) {
-        Team team = teamRepository.getOne(teamId);
+        Team team = getTeamById(teamId);
         User user = userService.getUserByEmail(email);
         if (team.addMember(user)) {
             teamRepository.saveAndFlush(team);
+            eventPublisher.publishEvent(new TeamsChangedEvent());
         } else {
             throw new IllegalArgumentException("Could not add User to Team");
         }
@@ -214,6 +248,7 @@ public boolean removeMember(Long teamId, String email) {
         } else {
             team.removeMember(user);
             teamRepository.saveAndFlush(team);
+            eventPublisher.publishEvent(new TeamsChangedEvent());
         }
         return true;
     }
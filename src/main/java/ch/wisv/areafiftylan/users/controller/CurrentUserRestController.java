@@ -29,20 +29,26 @@
 import ch.wisv.areafiftylan.teams.model.TeamInviteResponse;
 import ch.wisv.areafiftylan.teams.service.TeamService;
 import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.users.service.MyAreaService;
 import ch.wisv.areafiftylan.users.service.UserService;
 import ch.wisv.areafiftylan.utils.view.View;
 import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.util.DigestUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.Collection;
 import java.util.List;
@@ -59,15 +65,20 @@ public class CurrentUserRestController {
     private final TeamService teamService;
     private final OrderService orderService;
     private final TicketService ticketService;
+    private final MyAreaService myAreaService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
     CurrentUserRestController(UserService userService, OrderService orderService, TicketService ticketService,
-                              TeamService teamService, SeatService seatService) {
+                              TeamService teamService, SeatService seatService, MyAreaService myAreaService,
+                              ObjectMapper objectMapper) {
         this.userService = userService;
         this.seatService = seatService;
         this.orderService = orderService;
         this.ticketService = ticketService;
         this.teamService = teamService;
+        this.myAreaService = myAreaService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -157,4 +168,27 @@ public List<Order> getOpenOrder(@AuthenticationPrincipal User user) {
     public List<Seat> getCurrentUserSeat(@AuthenticationPrincipal User user) {
         return seatService.getSeatsByEmail(user.getEmail());
     }
+
+    /**
+     * Get everything My Area shows in one response: the current user, tickets, orders, open orders, teams, team
+     * invites, seats and ticket transfer tokens. Each part contains the same fields as its separate endpoint. The
+     * response has an ETag, so a client that sends it back in If-None-Match gets a 304 when nothing changed.
+     *
+     * @param user    Current logged in user.
+     * @param request The request, to check the If-None-Match header
+     *
+     * @return The data of My Area
+     */
+    @GetMapping("/overview")
+    public ResponseEntity<byte[]> getMyArea(@AuthenticationPrincipal User user, WebRequest request)
+            throws JsonProcessingException {
+        byte[] myArea = objectMapper.writeValueAsBytes(myAreaService.getMyArea(user));
+
+        String eTag = "\"" + DigestUtils.md5DigestAsHex(myArea) + "\"";
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+
+        return ResponseEntity.ok().eTag(eTag).contentType(MediaType.APPLICATION_JSON).body(myArea);
+    }
 }
@@ -77,7 +77,10 @@ private boolean allowedToEditProfile(User user, ProfileDTO input) {
      */
     @PreAuthorize("isAuthenticated()")
     @PostMapping("/current/profile")
-    public ResponseEntity<?> addProfile(@AuthenticationPrincipal User user, @Validated @RequestBody ProfileDTO input) {
+    public ResponseEntity<?> addProfile(@AuthenticationPrincipal User principal,
+                                        @Validated @RequestBody ProfileDTO input) {
+        // The current birthday is needed, which the principal doesn't have
+        User user = userService.getUserById(principal.getId());
         if (allowedToEditProfile(user, input)) {
             User changedUser = userService.addProfile(user.getId(), input);
             return createResponseEntity(HttpStatus.OK, "Profile successfully changed", changedUser.getProfile());
@@ -24,6 +24,8 @@
 import ch.wisv.areafiftylan.users.model.User;
 import ch.wisv.areafiftylan.users.model.UserDTO;
 import ch.wisv.areafiftylan.users.service.UserService;
+import ch.wisv.areafiftylan.utils.KeysetPage;
+import ch.wisv.areafiftylan.utils.NdjsonStreamer;
 import ch.wisv.areafiftylan.utils.ResponseEntityBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
@@ -34,6 +36,7 @@
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.validation.ConstraintViolationException;
@@ -50,10 +53,13 @@ public class UserRestController {
 
     private final SeatService seatService;
 
+    private final NdjsonStreamer ndjsonStreamer;
+
     @Autowired
-    UserRestController(UserService userService, SeatService seatService) {
+    UserRestController(UserService userService, SeatService seatService, NdjsonStreamer ndjsonStreamer) {
         this.userService = userService;
         this.seatService = seatService;
+        this.ndjsonStreamer = ndjsonStreamer;
     }
 
     /**
@@ -119,9 +125,36 @@ public Collection<User> readUsers() {
     }
 
     /**
-     * Get the User currently logged in. Because our User model implements the Spring Security UserDetails, this can be
-     * directly derived from the Authentication object which is automatically added. Returns a not-found entity if
-     * there's no user logged in. Returns the user
+     * Get a page of users, ordered by id. Requires ADMIN privileges.
+     *
+     * @param after The nextCursor of the previous page, omit for the first page
+     * @param limit The maximum number of users on the page
+     * @param email Optional part of the email to filter on
+     *
+     * @return The page of users
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(params = "limit")
+    public KeysetPage<User> readUsers(@RequestParam(defaultValue = "0") long after, @RequestParam int limit,
+                                      @RequestParam(required = false) String email) {
+        return userService.getUsers(after, email, limit);
+    }
+
+    /**
+     * Stream all users as newline delimited JSON. Requires ADMIN privileges.
+     *
+     * @return The users, one per line
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(produces = NdjsonStreamer.APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamUsers() {
+        return ndjsonStreamer.stream(userService::streamAllUsers, null);
+    }
+
+    /**
+     * Get the User currently logged in. The principal of the Authentication object only has the claims of the token,
+     * so the User itself is loaded by its id. Returns a not-found entity if there's no user logged in. Returns the
+     * user
      *
      * @param user the current user
      * @return The currently logged in User.
@@ -130,7 +163,7 @@ public Collection<User> readUsers() {
     public ResponseEntity<?> getCurrentUser(@AuthenticationPrincipal User user) {
         // To prevent 403 errors on this endpoint, we manually handle unauthenticated users, instead of @PreAuthorize.
         if (user != null) {
-            return new ResponseEntity<>(user, HttpStatus.OK);
+            return new ResponseEntity<>(userService.getUserById(user.getId()), HttpStatus.OK);
         } else {
             return createResponseEntity(HttpStatus.OK, "Not logged in");
         }
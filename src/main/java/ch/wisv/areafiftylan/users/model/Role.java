@@ -17,14 +17,43 @@
 
 package ch.wisv.areafiftylan.users.model;
 
+import ch.wisv.areafiftylan.security.SecurityConfiguration;
+import org.springframework.security.access.hierarchicalroles.RoleHierarchyImpl;
 import org.springframework.security.core.GrantedAuthority;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
 public enum Role implements GrantedAuthority {
     ROLE_USER, ROLE_OPERATOR,ROLE_COMMITTEE, ROLE_ADMIN;
 
+    // The role hierarchy never changes, so the Roles reachable from each Role are only computed once
+    private static final Map<Role, Set<Role>> REACHABLE_ROLES = new EnumMap<>(Role.class);
+
+    static {
+        RoleHierarchyImpl roleHierarchy = new RoleHierarchyImpl();
+        roleHierarchy.setHierarchy(SecurityConfiguration.HIERARCHY);
+        for (Role role : values()) {
+            Set<Role> reachableRoles = EnumSet.noneOf(Role.class);
+            roleHierarchy.getReachableGrantedAuthorities(Collections.singleton(role))
+                    .forEach(authority -> reachableRoles.add(Role.valueOf(authority.getAuthority())));
+            REACHABLE_ROLES.put(role, Collections.unmodifiableSet(reachableRoles));
+        }
+    }
+
     @Override
     public String getAuthority() {
         return this.toString();
     }
 
+    /**
+     * @return This Role and all Roles below it in the role hierarchy
+     */
+    public Set<Role> getReachableRoles() {
+        return REACHABLE_ROLES.get(this);
+    }
+
 }
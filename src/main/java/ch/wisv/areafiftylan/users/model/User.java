@@ -22,10 +22,13 @@
 import com.fasterxml.jackson.annotation.JsonView;
 import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
@@ -33,7 +36,9 @@
 import javax.validation.constraints.Email;
 import java.io.Serializable;
 import java.time.LocalDate;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Set;
 
 
@@ -41,7 +46,8 @@
 @Data
 @RequiredArgsConstructor
 @NoArgsConstructor
-@Table(name = "users", uniqueConstraints = { @UniqueConstraint(name = "email", columnNames = { "email" }) })
+@Table(name = "users", uniqueConstraints = { @UniqueConstraint(name = "email", columnNames = { "email" }),
+        @UniqueConstraint(name = "users_normalized_email", columnNames = { "normalized_email" }) })
 public class User implements Serializable, UserDetails {
 
     @NonNull
@@ -50,6 +56,14 @@ public class User implements Serializable, UserDetails {
     @Email(message = "Email should be valid!")
     private String email;
 
+    // Lower case copy of the email, so lookups ignoring case can use the unique index
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    @Column(nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private String normalizedEmail;
+
     @NonNull
     @Getter(AccessLevel.NONE)
     @Column(nullable = false)
@@ -69,6 +83,15 @@ public class User implements Serializable, UserDetails {
     @CollectionTable(name = "user_role")
     final private Set<Role> roles = new HashSet<>();
 
+    // Roles including the ones reachable through the role hierarchy, computed on first use
+    @Transient
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private transient Set<Role> reachableRoles;
+
     @JsonIgnore
     private final boolean accountNonExpired = true;
 
@@ -81,6 +104,31 @@ public class User implements Serializable, UserDetails {
     @JsonIgnore
     private boolean enabled = true;
     
+    public void setEmail(String email) {
+        this.email = email;
+        this.normalizedEmail = normalizeEmail(email);
+    }
+
+    // Changes of the email go through setEmail, so this is only for new Users. Users whose email only differed in case
+    // from an older one got a suffixed normalized email in V1_1, which has to stay until their email is changed.
+    @PrePersist
+    private void initNormalizedEmail() {
+        if (normalizedEmail == null) {
+            this.normalizedEmail = normalizeEmail(email);
+        }
+    }
+
+    /**
+     * Normalize an email address the way it is stored in the normalizedEmail column.
+     *
+     * @param email The email address
+     *
+     * @return The normalized email address
+     */
+    public static String normalizeEmail(String email) {
+        return email == null ? null : email.toLowerCase(Locale.ROOT);
+    }
+
     // This method is created to allow logging in using the email field
     @Override
     @JsonIgnore
@@ -106,6 +154,26 @@ public void resetProfile() {
 
     public void addRole(Role role) {
         this.roles.add(role);
+        this.reachableRoles = null;
+    }
+
+    /**
+     * Get the Roles of this User, including the Roles they have through the role hierarchy.
+     *
+     * @return The reachable Roles
+     */
+    @JsonIgnore
+    public Set<Role> getReachableRoles() {
+        if (reachableRoles == null) {
+            Set<Role> reachable = EnumSet.noneOf(Role.class);
+            roles.forEach(role -> reachable.addAll(role.getReachableRoles()));
+            reachableRoles = reachable;
+        }
+        return reachableRoles;
+    }
+
+    public boolean hasRole(Role role) {
+        return getReachableRoles().contains(role);
     }
 
     @JsonView(View.Public.class)
@@ -115,5 +183,6 @@ public int getReference() {
 
     public void deleteRole(Role role) {
         this.roles.remove(role);
+        this.reachableRoles = null;
     }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.users.service;
+
+import ch.wisv.areafiftylan.products.model.order.Order;
+import ch.wisv.areafiftylan.products.model.order.OrderStatus;
+import ch.wisv.areafiftylan.products.service.OrderService;
+import ch.wisv.areafiftylan.products.service.TicketService;
+import ch.wisv.areafiftylan.seats.service.SeatService;
+import ch.wisv.areafiftylan.teams.service.TeamService;
+import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.utils.view.View;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.google.common.base.Throwables;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Gathers everything My Area shows about the current User, so the frontend needs one request instead of eight. The
+ * lookups don't depend on each other, so they run at the same time on a small pool of threads. When the queue of the
+ * pool is full, lookups run on the request thread instead.
+ */
+@Service
+public class MyAreaService {
+
+    private final OrderService orderService;
+    private final TicketService ticketService;
+    private final TeamService teamService;
+    private final SeatService seatService;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+
+    private final ThreadPoolExecutor executor;
+    private final Timer loadTimer;
+
+    @Autowired
+    public MyAreaService(OrderService orderService, TicketService ticketService, TeamService teamService,
+                         SeatService seatService, UserService userService, ObjectMapper objectMapper,
+                         MeterRegistry meterRegistry,
+                         @Value("${a5l.myarea.threads:8}") int threads,
+                         @Value("${a5l.myarea.queueSize:200}") int queueSize) {
+        this.orderService = orderService;
+        this.ticketService = ticketService;
+        this.teamService = teamService;
+        this.seatService = seatService;
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), new CustomizableThreadFactory("my-area-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.loadTimer = Timer.builder("a5l.myarea.load").register(meterRegistry);
+        Gauge.builder("a5l.myarea.queue", executor, e -> e.getQueue().size()).register(meterRegistry);
+    }
+
+    /**
+     * Get the data of My Area as a single JSON object. Every part is written with the JsonView of the endpoint it
+     * replaces, so it contains the same fields.
+     *
+     * @param user The current User
+     *
+     * @return An object with the user, tickets, orders, openOrders, teams, teamInvites, seats and transferTokens
+     */
+    public ObjectNode getMyArea(User user) {
+        return loadTimer.record(() -> {
+            String email = user.getEmail();
+            // The principal only has the claims of the token, the profile comes from the User itself
+            CompletableFuture<User> currentUser = supply(() -> userService.getUserById(user.getId()));
+            CompletableFuture<Collection<Order>> orders = supply(() -> orderService.findOrdersByEmail(email));
+            CompletableFuture<?> tickets = supply(() -> ticketService.findValidTicketsByOwnerEmail(email));
+            CompletableFuture<?> teams = supply(() -> teamService.getTeamsByMemberEmail(email));
+            CompletableFuture<?> teamInvites = supply(() -> teamService.findTeamInvitesByEmail(email));
+            CompletableFuture<?> seats = supply(() -> seatService.getSeatsByEmail(email));
+            CompletableFuture<?> transferTokens =
+                    supply(() -> ticketService.getValidTicketTransferTokensByUserEmail(email));
+
+            // The open Orders are the same as in OrderService.getOpenOrders, without loading the Orders again
+            Collection<Order> allOrders = join(orders);
+            Collection<Order> openOrders = allOrders.stream().
+                    filter(o -> o.getStatus().equals(OrderStatus.ASSIGNED)).
+                    collect(Collectors.toList());
+
+            ObjectNode myArea = objectMapper.createObjectNode();
+            myArea.set("user", toJson(join(currentUser), null));
+            myArea.set("tickets", toJson(join(tickets), null));
+            myArea.set("orders", toJson(allOrders, View.OrderOverview.class));
+            myArea.set("openOrders", toJson(openOrders, null));
+            myArea.set("teams", toJson(join(teams), View.Team.class));
+            myArea.set("teamInvites", toJson(join(teamInvites), null));
+            myArea.set("seats", toJson(join(seats), null));
+            myArea.set("transferTokens", toJson(join(transferTokens), null));
+            return myArea;
+        });
+    }
+
+    private <T> CompletableFuture<T> supply(Supplier<T> lookup) {
+        return CompletableFuture.supplyAsync(lookup, executor);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // Pass on the exceptions of the services, so they're handled like on the separate endpoints
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
+
+    private JsonNode toJson(Object value, Class<?> view) {
+        try (TokenBuffer buffer = new TokenBuffer(objectMapper, false)) {
+            objectMapper.writerWithView(view).writeValue(buffer, value);
+            return objectMapper.readTree(buffer.asParser());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -23,9 +23,11 @@
 import ch.wisv.areafiftylan.users.model.RoleDTO;
 import ch.wisv.areafiftylan.users.model.User;
 import ch.wisv.areafiftylan.users.model.UserDTO;
+import ch.wisv.areafiftylan.utils.KeysetPage;
 import org.springframework.dao.DataIntegrityViolationException;
 
 import java.util.Collection;
+import java.util.stream.Stream;
 
 public interface UserService {
     User getUserById(long id);
@@ -34,6 +36,24 @@ public interface UserService {
 
     Collection<User> getAllUsers();
 
+    /**
+     * Get the Users with an id greater than the cursor, ordered by id.
+     *
+     * @param after The id of the last User on the previous page, 0 for the first page
+     * @param email Optional part of the email to filter on
+     * @param limit The maximum number of Users
+     *
+     * @return The page of Users
+     */
+    KeysetPage<User> getUsers(long after, String email, int limit);
+
+    /**
+     * Stream all Users, ordered by id. Has to be consumed within a transaction.
+     *
+     * @return The Stream of Users, which should be closed after use
+     */
+    Stream<User> streamAllUsers();
+
     User create(UserDTO userDTO) throws DataIntegrityViolationException;
 
     User replace(Long userId, UserDTO userDTO);
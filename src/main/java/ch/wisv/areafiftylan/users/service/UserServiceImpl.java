@@ -24,25 +24,34 @@
 import ch.wisv.areafiftylan.security.token.repository.PasswordResetTokenRepository;
 import ch.wisv.areafiftylan.security.token.repository.VerificationTokenRepository;
 import ch.wisv.areafiftylan.users.model.*;
+import ch.wisv.areafiftylan.utils.KeysetPage;
 import ch.wisv.areafiftylan.utils.mail.MailService;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Sets;
 import lombok.extern.slf4j.Slf4j;
 import net.logstash.logback.argument.StructuredArguments;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
@@ -52,6 +61,14 @@ public class UserServiceImpl implements UserService, UserDetailsService {
     private final VerificationTokenRepository verificationTokenRepository;
     private final PasswordResetTokenRepository passwordResetTokenRepository;
     private final MailService mailService;
+    private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * User ids by normalized email. Users found through this cache are checked against the email, so an entry that
+     * went stale on another instance is only a wasted lookup by primary key.
+     */
+    private final Cache<String, Long> userIdCache;
 
     private static final Set<Role> defaultRoles = new HashSet<>(Sets.newHashSet(Role.ROLE_USER));
 
@@ -65,11 +82,18 @@ public class UserServiceImpl implements UserService, UserDetailsService {
     public static final int MIN_PASSWORD_LENGTH = 6;
 
     public UserServiceImpl(UserRepository userRepository, VerificationTokenRepository verificationTokenRepository,
-                           PasswordResetTokenRepository passwordResetTokenRepository, MailService mailService) {
+                           PasswordResetTokenRepository passwordResetTokenRepository, MailService mailService,
+                           PasswordEncoder passwordEncoder, ApplicationEventPublisher eventPublisher,
+                           @Value("${a5l.user.emailCacheSize:10000}") int emailCacheSize,
+                           @Value("${a5l.user.emailCacheSeconds:300}") int emailCacheSeconds) {
         this.userRepository = userRepository;
         this.verificationTokenRepository = verificationTokenRepository;
         this.mailService = mailService;
         this.passwordResetTokenRepository = passwordResetTokenRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.eventPublisher = eventPublisher;
+        this.userIdCache = CacheBuilder.newBuilder().maximumSize(emailCacheSize)
+                .expireAfterWrite(emailCacheSeconds, TimeUnit.SECONDS).build();
     }
 
     @Override
@@ -79,15 +103,71 @@ public User getUserById(long id) {
 
     @Override
     public User getUserByEmail(String email) {
-        return userRepository.findOneByEmailIgnoreCase(email)
+        return findUserByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("User '" + email + "' not found"));
     }
 
+    /**
+     * Find a User by email, ignoring case. Known emails are resolved to the User id in memory, so the User is loaded
+     * by primary key.
+     *
+     * @param email The email of the User
+     *
+     * @return The User, or empty if no User has this email
+     */
+    private Optional<User> findUserByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        String normalizedEmail = User.normalizeEmail(email);
+
+        Long userId = userIdCache.getIfPresent(normalizedEmail);
+        if (userId != null) {
+            Optional<User> user =
+                    userRepository.findById(userId).filter(u -> normalizedEmail.equals(u.getNormalizedEmail()));
+            if (user.isPresent()) {
+                return user;
+            }
+            userIdCache.invalidate(normalizedEmail);
+        }
+
+        Optional<User> user = userRepository.findOneByNormalizedEmail(normalizedEmail);
+        user.ifPresent(u -> userIdCache.put(normalizedEmail, u.getId()));
+
+        return user;
+    }
+
+    private void evictUser(User user) {
+        if (user.getEmail() != null) {
+            userIdCache.invalidate(User.normalizeEmail(user.getEmail()));
+        }
+    }
+
+    // Tokens and authentications kept in memory carry the email and roles of the User, so they are outdated now
+    private void authenticationChanged(User user) {
+        eventPublisher.publishEvent(new UserAuthenticationChangedEvent(user.getId()));
+    }
+
     @Override
     public Collection<User> getAllUsers() {
         return userRepository.findAll(Sort.by("email"));
     }
 
+    @Override
+    public KeysetPage<User> getUsers(long after, String email, int limit) {
+        Pageable pageable = KeysetPage.pageable(limit);
+        List<User> users = Strings.isNullOrEmpty(email) ?
+                userRepository.findAllByIdGreaterThanOrderByIdAsc(after, pageable) :
+                userRepository.findAllByIdGreaterThanAndEmailContainingIgnoreCaseOrderByIdAsc(after, email, pageable);
+
+        return KeysetPage.of(users, pageable, User::getId);
+    }
+
+    @Override
+    public Stream<User> streamAllUsers() {
+        return userRepository.streamAllByOrderByIdAsc();
+    }
+
     @Override
     public User create(UserDTO userDTO) throws DataIntegrityViolationException {
         handleDuplicateUserFields(userDTO);
@@ -112,7 +192,7 @@ public User create(UserDTO userDTO) throws DataIntegrityViolationException {
 
     private void handleDuplicateUserFields(UserDTO userDTO) throws DataIntegrityViolationException {
         // Check if the email is already in use
-        userRepository.findOneByEmailIgnoreCase(userDTO.getEmail()).ifPresent(u -> {
+        findUserByEmail(userDTO.getEmail()).ifPresent(u -> {
             throw new DataIntegrityViolationException("Email already in use");
         });
     }
@@ -132,13 +212,16 @@ private void generateAndSendToken(User user, Long orderId) {
 
     @Override
     public User replace(Long userId, UserDTO userDTO) {
-        User user = userRepository.getOne(userId);
+        User user = getUserById(userId);
+        evictUser(user);
 
         user.setEmail(userDTO.getEmail());
         user.setPasswordHash(getPasswordHash(userDTO.getPassword()));
         user.resetProfile();
 
-        return userRepository.saveAndFlush(user);
+        user = userRepository.saveAndFlush(user);
+        authenticationChanged(user);
+        return user;
     }
 
     @Override
@@ -150,13 +233,16 @@ public void delete(Long userId) {
     @Override
     public User edit(Long userId, UserDTO userDTO) {
         User user = getUserById(userId);
+        evictUser(user);
         if (!Strings.isNullOrEmpty(userDTO.getEmail())) {
             user.setEmail(userDTO.getEmail());
         }
         if (!Strings.isNullOrEmpty(userDTO.getPassword())) {
             user.setPasswordHash(getPasswordHash(userDTO.getPassword()));
         }
-        return userRepository.saveAndFlush(user);
+        user = userRepository.saveAndFlush(user);
+        authenticationChanged(user);
+        return user;
 
     }
 
@@ -199,6 +285,7 @@ public void unlock(Long userId) {
         User user = getUserById(userId);
         user.setAccountNonLocked(true);
         userRepository.saveAndFlush(user);
+        evictUser(user);
     }
 
     @Override
@@ -206,6 +293,8 @@ public void lock(Long userId) {
         User user = getUserById(userId);
         user.setAccountNonLocked(false);
         userRepository.saveAndFlush(user);
+        evictUser(user);
+        authenticationChanged(user);
     }
 
     @Override
@@ -233,8 +322,9 @@ public void resetPassword(Long userId, String password) {
                     String.format("New password should be at least %d characters long", MIN_PASSWORD_LENGTH));
         }
         // The token is being checked in the authentication, so just set the password here
-        user.setPasswordHash(new BCryptPasswordEncoder().encode(password));
+        user.setPasswordHash(getPasswordHash(password));
         userRepository.saveAndFlush(user);
+        authenticationChanged(user);
 
         log.info("New password set for {}.", user.getEmail(), StructuredArguments.v("user_email", user.getEmail()));
     }
@@ -247,9 +337,10 @@ public void changePassword(Long userId, String oldPassword, String newPassword)
         }
         User user = getUserById(userId);
 
-        if (new BCryptPasswordEncoder().matches(oldPassword, user.getPassword())) {
+        if (passwordEncoder.matches(oldPassword, user.getPassword())) {
             user.setPasswordHash(getPasswordHash(newPassword));
             userRepository.save(user);
+            authenticationChanged(user);
         } else {
             throw new AccessDeniedException("Wrong password");
         }
@@ -257,7 +348,7 @@ public void changePassword(Long userId, String oldPassword, String newPassword)
 
     @Override
     public Boolean checkEmailAvailable(String email) {
-        return !userRepository.findOneByEmailIgnoreCase(email).isPresent();
+        return !findUserByEmail(email).isPresent();
 
     }
 
@@ -272,6 +363,8 @@ public void addRole(Long userId, RoleDTO input) {
         User user = getUserById(userId);
         user.addRole(input.getRole());
         userRepository.saveAndFlush(user);
+        evictUser(user);
+        authenticationChanged(user);
     }
 
     @Override
@@ -283,21 +376,23 @@ public void deleteRole(Long userId, RoleDTO input) {
         User user = getUserById(userId);
         user.deleteRole(input.getRole());
         userRepository.saveAndFlush(user);
+        evictUser(user);
+        authenticationChanged(user);
     }
 
     /**
-     * Encrypt the password using the BCryptPasswordEncoder with default settings
+     * Encrypt the password using the shared PasswordEncoder
      *
      * @param plainTextPassword The password to be encoded
      *
      * @return The hashed password
      */
     private String getPasswordHash(String plainTextPassword) {
-        return new BCryptPasswordEncoder().encode(plainTextPassword);
+        return passwordEncoder.encode(plainTextPassword);
     }
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        return userRepository.findOneByEmailIgnoreCase(email).orElseThrow(() -> new UsernameNotFoundException(email));
+        return findUserByEmail(email).orElseThrow(() -> new UsernameNotFoundException(email));
     }
 }
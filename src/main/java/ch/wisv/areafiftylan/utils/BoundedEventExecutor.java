@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the work a subscriber does for domain events on a small pool of its own, so side effects like sending mail
+ * don't add to the latency of the request that published the event, and a slow subscriber doesn't hold up the others.
+ * <p>
+ * When the queue of the pool is full, the work runs on the publishing thread instead. That slows down the requests
+ * that publish the events until the subscriber catches up, instead of dropping events. The time spent per event is
+ * recorded in a5l.events.handle, the queue length in a5l.events.queue, and work that ran on the publishing thread or
+ * failed in a5l.events.callerRuns and a5l.events.failed, all tagged with the name of the subscriber.
+ */
+@Slf4j
+public class BoundedEventExecutor {
+
+    private final String subscriber;
+    private final ThreadPoolExecutor executor;
+    private final MeterRegistry meterRegistry;
+
+    private final Counter failedCounter;
+
+    public BoundedEventExecutor(String subscriber, int threads, int queueSize, MeterRegistry meterRegistry) {
+        this.subscriber = subscriber;
+        this.meterRegistry = meterRegistry;
+
+        Counter callerRunsCounter =
+                Counter.builder("a5l.events.callerRuns").tag("subscriber", subscriber).register(meterRegistry);
+        this.failedCounter = Counter.builder("a5l.events.failed").tag("subscriber", subscriber).register(meterRegistry);
+
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), new CustomizableThreadFactory(subscriber + "-events-"),
+                (task, pool) -> {
+                    callerRunsCounter.increment();
+                    if (!pool.isShutdown()) {
+                        task.run();
+                    }
+                });
+        Gauge.builder("a5l.events.queue", executor, e -> e.getQueue().size()).tag("subscriber", subscriber)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Handle an event on the pool of this subscriber. Exceptions are logged, the publisher never sees them.
+     *
+     * @param event   The event to handle, used to tag the metrics
+     * @param handler The work to do for the event
+     */
+    public void execute(Object event, Runnable handler) {
+        String eventName = event.getClass().getSimpleName();
+        Timer timer = Timer.builder("a5l.events.handle").tag("subscriber", subscriber).tag("event", eventName)
+                .register(meterRegistry);
+
+        executor.execute(() -> {
+            try {
+                timer.record(handler);
+            } catch (RuntimeException e) {
+                failedCounter.increment();
+                log.error("Subscriber {} failed to handle {}", subscriber, eventName, e);
+            }
+        });
+    }
+
+    /**
+     * Stop accepting events and give the queued ones some time to be handled.
+     *
+     * @param timeoutSeconds The time to wait for the queue to drain
+     */
+    public void shutdown(int timeoutSeconds) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                log.warn("Subscriber {} dropped {} events on shutdown", subscriber, executor.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils;
+
+import ch.wisv.areafiftylan.utils.view.View;
+import com.fasterxml.jackson.annotation.JsonView;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A page of a listing that is paginated on the id of its items. Clients pass the nextCursor as the "after" parameter
+ * to get the next page. Unlike offset pagination, the database can seek directly to the start of every page.
+ *
+ * @param <T> The type of the items
+ */
+@Getter
+@AllArgsConstructor
+public class KeysetPage<T> {
+
+    public static final int MAX_LIMIT = 500;
+
+    // Visible in every view, so the items decide which fields are shown
+    @JsonView({ View.Public.class, View.NoProfile.class })
+    private final List<T> items;
+
+    /**
+     * Id of the last item on this page, or null if this is the last page
+     */
+    @JsonView({ View.Public.class, View.NoProfile.class })
+    private final Long nextCursor;
+
+    /**
+     * Get the Pageable for the first {@code limit} items after a cursor. The limit is capped at MAX_LIMIT.
+     *
+     * @param limit The requested number of items
+     *
+     * @return The Pageable to pass to the repository
+     */
+    public static Pageable pageable(int limit) {
+        return PageRequest.of(0, Math.max(1, Math.min(limit, MAX_LIMIT)));
+    }
+
+    /**
+     * Create a page from the items returned for a Pageable created with {@link #pageable(int)}.
+     *
+     * @param items    The items, ordered by id
+     * @param pageable The Pageable used to get the items
+     * @param id       Function returning the id of an item
+     * @param <T>      The type of the items
+     *
+     * @return The page
+     */
+    public static <T> KeysetPage<T> of(List<T> items, Pageable pageable, Function<T, Long> id) {
+        Long nextCursor = items.size() < pageable.getPageSize() ? null : id.apply(items.get(items.size() - 1));
+        return new KeysetPage<>(items, nextCursor);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Identity cache for entities that lives as long as the current request. The @PreAuthorize checks in the
+ * CurrentUserService and the services behind the controllers look up the same Order, Team, Ticket or Token, so
+ * sharing the result saves a query per lookup. Outside of a request, entities are always loaded.
+ * <p>
+ * The RequestEntityCacheListener clears the cache whenever a cached type is written, so a lookup after a change
+ * never returns a stale entity.
+ * <p>
+ * Open-in-view is disabled, so outside of a transaction every loaded entity is detached right away, cached or not. A
+ * cached entity is only returned there. Inside a transaction the entity is loaded again, so it is managed by the
+ * persistence context of that transaction and its lazy associations can be loaded. The entity loaded there replaces
+ * the cached one.
+ */
+public final class RequestEntityCache {
+
+    private static final String ATTRIBUTE = RequestEntityCache.class.getName();
+
+    private RequestEntityCache() {
+    }
+
+    /**
+     * Get an entity from the cache of the current request, or load it.
+     *
+     * @param type   The class of the entity
+     * @param key    Unique key of the entity within its type, like its id or token
+     * @param loader Loads the entity if it's not cached. Exceptions are passed on and nothing is cached.
+     * @param <T>    The type of the entity
+     *
+     * @return The entity
+     */
+    public static <T> T get(Class<T> type, Object key, Supplier<T> loader) {
+        Map<String, Object> entities = getEntities(true);
+        if (entities == null) {
+            return loader.get();
+        }
+
+        String cacheKey = type.getName() + ":" + key;
+        Object entity = TransactionSynchronizationManager.isActualTransactionActive() ? null : entities.get(cacheKey);
+        if (entity == null) {
+            entity = loader.get();
+            entities.put(cacheKey, entity);
+        }
+        return type.cast(entity);
+    }
+
+    /**
+     * Remove all entities from the cache of the current request.
+     */
+    public static void clear() {
+        Map<String, Object> entities = getEntities(false);
+        if (entities != null) {
+            entities.clear();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getEntities(boolean create) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+
+        Map<String, Object> entities =
+                (Map<String, Object>) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (entities == null && create) {
+            entities = new HashMap<>();
+            attributes.setAttribute(ATTRIBUTE, entities, RequestAttributes.SCOPE_REQUEST);
+        }
+        return entities;
+    }
+}
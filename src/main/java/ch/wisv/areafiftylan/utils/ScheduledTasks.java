@@ -20,11 +20,17 @@
 import ch.wisv.areafiftylan.products.model.order.Order;
 import ch.wisv.areafiftylan.products.model.order.OrderStatus;
 import ch.wisv.areafiftylan.products.service.OrderService;
+import ch.wisv.areafiftylan.products.service.PaymentReconciler;
 import ch.wisv.areafiftylan.products.service.repository.OrderRepository;
 import ch.wisv.areafiftylan.security.authentication.AuthenticationService;
 import ch.wisv.areafiftylan.security.token.VerificationToken;
 import ch.wisv.areafiftylan.security.token.repository.VerificationTokenRepository;
+import ch.wisv.areafiftylan.statistics.service.StatisticsService;
 import ch.wisv.areafiftylan.users.service.UserRepository;
+import ch.wisv.areafiftylan.utils.idempotency.IdempotencyService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationStartedEvent;
@@ -35,6 +41,7 @@
 import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.IntSupplier;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -48,6 +55,11 @@ public class ScheduledTasks {
 
     private final int USER_CLEANUP_CHECK_INTERVAL_MINUTES = 60;
 
+    private final int IDEMPOTENT_RESPONSE_CLEANUP_INTERVAL_MINUTES = 60;
+
+    @Value("${a5l.auth.revokeOnStartup:false}")
+    private boolean REVOKE_TOKENS_ON_STARTUP;
+
     private final OrderRepository orderRepository;
     private final OrderService orderService;
     private final AuthenticationService authenticationService;
@@ -55,38 +67,93 @@ public class ScheduledTasks {
     private final UserRepository userRepository;
     private final VerificationTokenRepository verificationTokenRepository;
 
+    private final IdempotencyService idempotencyService;
+
+    private final PaymentReconciler paymentReconciler;
+
+    private final StatisticsService statisticsService;
+
+    private final MeterRegistry meterRegistry;
+
     public ScheduledTasks(OrderRepository orderRepository, OrderService orderService,
                           AuthenticationService authenticationService,
-                          VerificationTokenRepository verificationTokenRepository, UserRepository userRepository) {
+                          VerificationTokenRepository verificationTokenRepository, UserRepository userRepository,
+                          IdempotencyService idempotencyService, PaymentReconciler paymentReconciler,
+                          StatisticsService statisticsService, MeterRegistry meterRegistry) {
         this.orderRepository = orderRepository;
         this.orderService = orderService;
         this.authenticationService = authenticationService;
         this.userRepository = userRepository;
         this.verificationTokenRepository = verificationTokenRepository;
+        this.idempotencyService = idempotencyService;
+        this.paymentReconciler = paymentReconciler;
+        this.statisticsService = statisticsService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Run a task, recording its duration in a5l.scheduled.run and the number of items it processed in
+     * a5l.scheduled.items, both tagged with the name of the task.
+     */
+    private void runTask(String task, IntSupplier processItems) {
+        int items = Timer.builder("a5l.scheduled.run").tag("task", task).register(meterRegistry)
+                .record(processItems::getAsInt);
+        Counter.builder("a5l.scheduled.items").tag("task", task).register(meterRegistry).increment(items);
     }
 
 
     @Scheduled(fixedRate = ORDER_EXPIRY_CHECK_INTERVAL_SECONDS * 1000)
     public void ExpireOrders() {
-        log.debug("Expiring orders");
-        LocalDateTime expireBeforeDate = LocalDateTime.now().minusMinutes(ORDER_STAY_ALIVE_MINUTES);
-
-        Collection<Order> allOrdersBeforeDate = orderRepository.findAllByCreationDateTimeBefore(expireBeforeDate);
-
-        List<Order> expiredOrders = allOrdersBeforeDate.stream().filter(isExpired()).collect(Collectors.toList());
-        if (!expiredOrders.isEmpty()) {
-            log.info("Found {} orders to expire", expiredOrders.size());
-            expiredOrders.forEach(orderService::expireOrder);
-        }
+        runTask("expireOrders", () -> {
+            log.debug("Expiring orders");
+            LocalDateTime expireBeforeDate = LocalDateTime.now().minusMinutes(ORDER_STAY_ALIVE_MINUTES);
+
+            Collection<Order> allOrdersBeforeDate =
+                    orderRepository.findDistinctByCreationDateTimeBefore(expireBeforeDate);
+
+            List<Order> expiredOrders = allOrdersBeforeDate.stream().filter(isExpired()).collect(Collectors.toList());
+            if (!expiredOrders.isEmpty()) {
+                log.info("Found {} orders to expire", expiredOrders.size());
+                expiredOrders.forEach(orderService::expireOrder);
+            }
+            return expiredOrders.size();
+        });
     }
 
     @Scheduled(fixedRate = USER_CLEANUP_CHECK_INTERVAL_MINUTES * 60 * 1000)
     public void CleanUpUsers() {
-        LocalDateTime now = LocalDateTime.now();
-        List<VerificationToken> allExpiredVerificationTokens =
-                verificationTokenRepository.findAllByExpiryDateBefore(now);
-        allExpiredVerificationTokens.stream().filter((verificationToken) -> !verificationToken.isUsed())
-                .forEach(this::handleExpiredVerificationToken);
+        runTask("cleanUpUsers", () -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<VerificationToken> unusedExpiredVerificationTokens =
+                    verificationTokenRepository.findAllByExpiryDateBefore(now).stream()
+                            .filter((verificationToken) -> !verificationToken.isUsed())
+                            .collect(Collectors.toList());
+            unusedExpiredVerificationTokens.forEach(this::handleExpiredVerificationToken);
+            return unusedExpiredVerificationTokens.size();
+        });
+    }
+
+    @Scheduled(fixedRate = IDEMPOTENT_RESPONSE_CLEANUP_INTERVAL_MINUTES * 60 * 1000)
+    public void CleanUpIdempotentResponses() {
+        runTask("cleanUpIdempotentResponses", idempotencyService::removeExpiredResponses);
+    }
+
+    /**
+     * Orders stay PENDING when the webhook of the payment provider doesn't arrive, so check them every once in a while.
+     */
+    @Scheduled(fixedDelayString = "${a5l.payments.reconcileMillis:600000}",
+               initialDelayString = "${a5l.payments.reconcileMillis:600000}")
+    public void ReconcilePayments() {
+        runTask("reconcilePayments", paymentReconciler::reconcilePendingOrders);
+    }
+
+    /**
+     * The statistics are kept up to date by events from the services, so count everything again once in a while.
+     */
+    @Scheduled(fixedDelayString = "${a5l.statistics.reconcileMillis:300000}",
+               initialDelayString = "${a5l.statistics.reconcileMillis:300000}")
+    public void ReconcileStatistics() {
+        runTask("reconcileStatistics", statisticsService::reconcile);
     }
 
     private static Predicate<Order> isExpired() {
@@ -99,8 +166,14 @@ private void handleExpiredVerificationToken(VerificationToken verificationToken)
         userRepository.delete(verificationToken.getUser());
     }
 
+    /**
+     * By default, AuthenticationTokens survive a restart so users stay logged in and don't all hit /login at once
+     * after a deploy. Set a5l.auth.revokeOnStartup to log out everyone when the application starts.
+     */
     @EventListener(ApplicationStartedEvent.class)
     public void removeTokens() {
-        authenticationService.removeAllAuthTokens();
+        if (REVOKE_TOKENS_ON_STARTUP) {
+            authenticationService.removeAllAuthTokens();
+        }
     }
 }
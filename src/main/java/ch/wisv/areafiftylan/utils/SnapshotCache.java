@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Holds the last computed value of something that is expensive to compute and read far more often than it changes.
+ * The value is recomputed on the first read after invalidate() is called, or once it is older than the maximum age.
+ * <p>
+ * Only one thread computes at a time. Readers that arrive during a computation wait for it and get its result, so a
+ * burst of identical requests results in a single computation.
+ *
+ * @param <T> The type of the value
+ */
+public class SnapshotCache<T> {
+
+    private final Supplier<T> loader;
+    private final long maxAgeNanos;
+
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot<T> snapshot;
+
+    public SnapshotCache(Supplier<T> loader, Duration maxAge) {
+        this.loader = loader;
+        this.maxAgeNanos = maxAge.toNanos();
+    }
+
+    /**
+     * Get the current value, computing it if the last snapshot is invalidated or too old.
+     *
+     * @return The value. Exceptions of the loader are passed on and nothing is cached.
+     */
+    public T get() {
+        Snapshot<T> current = snapshot;
+        if (isFresh(current)) {
+            return current.value;
+        }
+
+        synchronized (this) {
+            current = snapshot;
+            if (isFresh(current)) {
+                return current.value;
+            }
+
+            // Read the version before computing, so a change during the computation invalidates the result
+            long computedVersion = version.get();
+            long computedAt = System.nanoTime();
+            T value = loader.get();
+            snapshot = new Snapshot<>(value, computedVersion, computedAt);
+            return value;
+        }
+    }
+
+    /**
+     * Mark the current value as outdated. Call this after the change is committed, else the next read may compute
+     * the value from the old data again.
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    private boolean isFresh(Snapshot<T> current) {
+        return current != null && current.version == version.get() &&
+                System.nanoTime() - current.computedAt < maxAgeNanos;
+    }
+
+    private static class Snapshot<T> {
+        private final T value;
+        private final long version;
+        private final long computedAt;
+
+        private Snapshot(T value, long version, long computedAt) {
+            this.value = value;
+            this.version = version;
+            this.computedAt = computedAt;
+        }
+    }
+}
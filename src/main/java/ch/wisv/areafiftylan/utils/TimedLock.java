@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Lock for the sections that have to run one at a time, like reserving Tickets and Seats. The time callers wait for the
+ * lock is recorded in the a5l.lock.wait timer, tagged with the name of the lock, so contention shows up in the metrics.
+ */
+public class TimedLock {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Timer waitTimer;
+
+    public TimedLock(String name, MeterRegistry meterRegistry) {
+        this.waitTimer = Timer.builder("a5l.lock.wait").tag("lock", name).register(meterRegistry);
+    }
+
+    public <T> T call(Supplier<T> section) {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return section.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.idempotency;
+
+import ch.wisv.areafiftylan.security.waitingroom.WaitingRoomService;
+import ch.wisv.areafiftylan.users.model.User;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+
+import static ch.wisv.areafiftylan.security.waitingroom.WaitingRoomService.QUEUE_TOKEN_HEADER;
+import static ch.wisv.areafiftylan.utils.idempotency.IdempotencyService.IDEMPOTENCY_KEY_HEADER;
+
+/**
+ * Makes creating an Order, adding Tickets to it and checking it out idempotent for requests with an Idempotency-Key
+ * header. The first successful response is stored, and retries with the same key get that response back without
+ * reserving Tickets or registering payments again. Failed requests are not stored, so they can be retried.
+ * <p>
+ * A key can't be reused for another request: the method, path and a SHA-256 of the body of a retry have to match the
+ * first request, otherwise the retry is rejected with 422.
+ * <p>
+ * Keys are scoped to the user, or for anonymous requests to the queue token of the waiting room, which the server
+ * hands out to a single visitor. Anonymous requests without a valid queue token are executed without idempotency, as
+ * their keys could collide with those of other visitors.
+ */
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 64;
+    private static final int MAX_REQUEST_LENGTH = 16384;
+
+    private final IdempotencyService idempotencyService;
+    private final WaitingRoomService waitingRoomService;
+    private final RequestMatcher idempotentRequests = new OrRequestMatcher(
+            new AntPathRequestMatcher("/orders", "POST"),
+            new AntPathRequestMatcher("/orders/", "POST"),
+            new AntPathRequestMatcher("/orders/{orderId:\\d+}", "POST"),
+            new AntPathRequestMatcher("/orders/{orderId:\\d+}/checkout", "POST"));
+
+    public IdempotencyFilter(IdempotencyService idempotencyService, WaitingRoomService waitingRoomService) {
+        this.idempotencyService = idempotencyService;
+        this.waitingRoomService = waitingRoomService;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getHeader(IDEMPOTENCY_KEY_HEADER) == null || !idempotentRequests.matches(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Optional<String> scope = getScope(request);
+        if (!scope.isPresent()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String key = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(),
+                    IDEMPOTENCY_KEY_HEADER + " should be between 1 and " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+
+        // The body is read here to fingerprint it, and the controller reads it from memory afterwards
+        byte[] requestBody =
+                ByteStreams.toByteArray(ByteStreams.limit(request.getInputStream(), MAX_REQUEST_LENGTH + 1));
+        if (requestBody.length > MAX_REQUEST_LENGTH) {
+            response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value(), "Request body is too large");
+            return;
+        }
+
+        // Scope keys to the visitor, so nobody else can get the response by guessing the key
+        String id = scope.get() + ":" + key;
+        String requestDescription = request.getMethod() + " " + request.getRequestURI();
+        String requestHash = Hashing.sha256().hashBytes(requestBody).toString();
+
+        Optional<IdempotentResponse> stored;
+        try {
+            stored = idempotencyService.reserve(id);
+        } catch (TimeoutException e) {
+            response.sendError(HttpStatus.CONFLICT.value(), "A request with this " + IDEMPOTENCY_KEY_HEADER +
+                    " is still being processed");
+            return;
+        }
+
+        if (stored.isPresent()) {
+            replay(stored.get(), requestDescription, requestHash, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+        IdempotentResponse result = null;
+        try {
+            chain.doFilter(new CachedBodyRequest(request, requestBody), responseWrapper);
+
+            // Responses that don't fit the column aren't stored, so retries of those requests are executed again
+            if (HttpStatus.valueOf(responseWrapper.getStatus()).is2xxSuccessful() &&
+                    responseWrapper.getContentSize() <= IdempotentResponse.MAX_BODY_LENGTH) {
+                result = new IdempotentResponse(id, requestDescription, requestHash, responseWrapper.getStatus(),
+                        responseWrapper.getContentType(), responseWrapper.getHeader(HttpHeaders.LOCATION),
+                        new String(responseWrapper.getContentAsByteArray(), StandardCharsets.UTF_8),
+                        LocalDateTime.now());
+            }
+        } finally {
+            idempotencyService.complete(id, result);
+            responseWrapper.copyBodyToResponse();
+        }
+    }
+
+    private void replay(IdempotentResponse stored, String requestDescription, String requestHash,
+                        HttpServletResponse response) throws IOException {
+        // Responses stored before the hash was added only have the description to compare
+        boolean sameBody = stored.getRequestHash() == null || stored.getRequestHash().equals(requestHash);
+        if (!stored.getRequest().equals(requestDescription) || !sameBody) {
+            response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(),
+                    IDEMPOTENCY_KEY_HEADER + " was already used for another request");
+            return;
+        }
+
+        response.setStatus(stored.getStatus());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.getLocation() != null) {
+            response.setHeader(HttpHeaders.LOCATION, stored.getLocation());
+        }
+        if (stored.getContentType() != null) {
+            response.setContentType(stored.getContentType());
+        }
+
+        byte[] body = stored.getBody().getBytes(StandardCharsets.UTF_8);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private Optional<String> getScope(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof User) {
+            return Optional.of("user-" + ((User) authentication.getPrincipal()).getId());
+        }
+        return waitingRoomService.getPosition(request.getHeader(QUEUE_TOKEN_HEADER)).
+                map(position -> "queue-" + position.getPosition());
+    }
+
+    /**
+     * Request of which the body was already read, serving the body from memory.
+     */
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream inputStream = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return inputStream.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException("The body was already read");
+                }
+
+                @Override
+                public int read() {
+                    return inputStream.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return inputStream.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws UnsupportedEncodingException {
+            String encoding = getCharacterEncoding() == null ? StandardCharsets.UTF_8.name() : getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(), encoding));
+        }
+    }
+}
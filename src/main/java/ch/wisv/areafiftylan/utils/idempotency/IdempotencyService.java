@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.idempotency;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Stores the responses to requests with an Idempotency-Key, so a retried request gets the original response instead
+ * of being executed again. Responses are kept in memory and in the database for a5l.idempotency.hours.
+ * <p>
+ * A request that arrives while another request with the same key is being executed waits for that execution to
+ * finish. This only works for requests that arrive on the same instance; the database only catches retries that
+ * arrive after the first request finished.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private final IdempotentResponseRepository idempotentResponseRepository;
+
+    private final int lifetimeHours;
+    private final long waitSeconds;
+
+    private final Cache<String, IdempotentResponse> responses;
+    private final ConcurrentMap<String, CountDownLatch> executing = new ConcurrentHashMap<>();
+
+    private final Counter replays;
+
+    public IdempotencyService(IdempotentResponseRepository idempotentResponseRepository, MeterRegistry meterRegistry,
+                              @Value("${a5l.idempotency.hours:24}") int lifetimeHours,
+                              @Value("${a5l.idempotency.waitSeconds:30}") int waitSeconds,
+                              @Value("${a5l.idempotency.cacheSize:10000}") int cacheSize) {
+        this.idempotentResponseRepository = idempotentResponseRepository;
+        this.lifetimeHours = lifetimeHours;
+        this.waitSeconds = waitSeconds;
+        this.responses = CacheBuilder.newBuilder().maximumSize(cacheSize)
+                .expireAfterWrite(lifetimeHours, TimeUnit.HOURS).build();
+        this.replays = Counter.builder("a5l.idempotency.replays").register(meterRegistry);
+    }
+
+    /**
+     * Find the stored response for a key, or reserve the key to execute the request. If another request with the same
+     * key is being executed, this waits until it is finished. After an empty result, the caller has to call complete.
+     *
+     * @param id The Idempotency-Key, prefixed with the user that sent it
+     *
+     * @return The stored response, or empty if the caller should execute the request
+     *
+     * @throws TimeoutException if another request with the same key takes longer than a5l.idempotency.waitSeconds
+     */
+    public Optional<IdempotentResponse> reserve(String id) throws TimeoutException {
+        while (true) {
+            Optional<IdempotentResponse> stored = findResponse(id);
+            if (stored.isPresent()) {
+                replays.increment();
+                return stored;
+            }
+
+            CountDownLatch execution = executing.putIfAbsent(id, new CountDownLatch(1));
+            if (execution == null) {
+                return Optional.empty();
+            }
+
+            // The first request may fail without storing a response, so look again once it is done
+            try {
+                if (!execution.await(waitSeconds, TimeUnit.SECONDS)) {
+                    throw new TimeoutException("Request with Idempotency-Key is still being processed");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TimeoutException("Interrupted while waiting for request with Idempotency-Key");
+            }
+        }
+    }
+
+    /**
+     * Release a key reserved with reserve, storing the response if there is one.
+     *
+     * @param id       The reserved key
+     * @param response The response to give to retries of the request, or null if the request may be executed again
+     */
+    public void complete(String id, IdempotentResponse response) {
+        try {
+            if (response != null) {
+                responses.put(id, response);
+                idempotentResponseRepository.save(response);
+            }
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Response for Idempotency-Key was already stored by another instance");
+        } finally {
+            executing.remove(id).countDown();
+        }
+    }
+
+    /**
+     * Remove the stored responses that are older than a5l.idempotency.hours.
+     *
+     * @return The number of removed responses
+     */
+    public int removeExpiredResponses() {
+        return idempotentResponseRepository.deleteByCreatedAtBefore(expiredBefore());
+    }
+
+    private Optional<IdempotentResponse> findResponse(String id) {
+        IdempotentResponse cached = responses.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Optional<IdempotentResponse> stored = idempotentResponseRepository.findById(id)
+                .filter(response -> response.getCreatedAt().isAfter(expiredBefore()));
+        stored.ifPresent(response -> responses.put(id, response));
+
+        return stored;
+    }
+
+    private LocalDateTime expiredBefore() {
+        return LocalDateTime.now().minusHours(lifetimeHours);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.idempotency;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.LocalDateTime;
+
+/**
+ * The response to a request with an Idempotency-Key, stored so retries of the request get the same response.
+ */
+@Entity
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotentResponse {
+
+    static final int MAX_BODY_LENGTH = 65536;
+
+    /**
+     * The Idempotency-Key, prefixed with the user that sent it
+     */
+    @Id
+    private String id;
+
+    /**
+     * Method and path of the request, so a key can't be reused for another request
+     */
+    private String request;
+
+    /**
+     * Hex SHA-256 of the request body, so a key can't be reused for the same path with another body
+     */
+    @Column(length = 64)
+    private String requestHash;
+
+    private int status;
+
+    private String contentType;
+
+    private String location;
+
+    @Column(length = MAX_BODY_LENGTH)
+    private String body;
+
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.utils.mail;
+
+import ch.wisv.areafiftylan.products.service.OrderPaidEvent;
+import ch.wisv.areafiftylan.products.service.TicketTransferredEvent;
+import ch.wisv.areafiftylan.seats.service.SeatReservedEvent;
+import ch.wisv.areafiftylan.security.token.TeamInviteToken;
+import ch.wisv.areafiftylan.security.token.TicketTransferToken;
+import ch.wisv.areafiftylan.teams.service.MemberInvitedEvent;
+import ch.wisv.areafiftylan.utils.BoundedEventExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * Sends the mails that go with changes made by the services. The mails are only sent once the change is committed,
+ * and on the threads of the mail subscriber, so a slow mail server doesn't slow down the requests.
+ */
+@Component
+public class MailEventListener {
+
+    private final MailService mailService;
+    private final BoundedEventExecutor executor;
+
+    @Autowired
+    public MailEventListener(MailService mailService, MeterRegistry meterRegistry,
+                             @Value("${a5l.mail.threads:2}") int threads,
+                             @Value("${a5l.mail.queueSize:1000}") int queueSize) {
+        this.mailService = mailService;
+        this.executor = new BoundedEventExecutor("mail", threads, queueSize, meterRegistry);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void seatReserved(SeatReservedEvent event) {
+        if (event.getPreviousOwner() != null) {
+            executor.execute(event, () -> mailService.sendSeatOverrideMail(event.getPreviousOwner()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void orderPaid(OrderPaidEvent event) {
+        executor.execute(event, () -> mailService.sendOrderConfirmation(event.getOrder()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void ticketTransferred(TicketTransferredEvent event) {
+        TicketTransferToken transferToken = event.getTransferToken();
+        executor.execute(event, () -> mailService.sendTicketTransferMail(transferToken.getTicket().getOwner(),
+                transferToken.getUser(), event.getAcceptUrl()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void memberInvited(MemberInvitedEvent event) {
+        TeamInviteToken inviteToken = event.getInviteToken();
+        executor.execute(event, () -> mailService.sendTeamInviteMail(inviteToken.getUser(),
+                inviteToken.getTeam().getTeamName(), inviteToken.getTeam().getCaptain()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown(10);
+    }
+}
@@ -17,6 +17,9 @@
 
 package ch.wisv.areafiftylan.utils.mail;
 
+import ch.wisv.areafiftylan.security.ratelimit.RateLimitKeyType;
+import ch.wisv.areafiftylan.security.ratelimit.RateLimitRoute;
+import ch.wisv.areafiftylan.security.ratelimit.RateLimitService;
 import ch.wisv.areafiftylan.teams.model.Team;
 import ch.wisv.areafiftylan.teams.service.TeamService;
 import ch.wisv.areafiftylan.users.model.User;
@@ -35,18 +38,22 @@
 public class MailRestController {
 
     @Autowired
-    public MailRestController(MailService mailService, UserService userService, TeamService teamService) {
+    public MailRestController(MailService mailService, UserService userService, TeamService teamService,
+                              RateLimitService rateLimitService) {
         this.mailService = mailService;
         this.userService = userService;
         this.teamService = teamService;
+        this.rateLimitService = rateLimitService;
     }
 
     private final MailService mailService;
     private final UserService userService;
     private final TeamService teamService;
+    private final RateLimitService rateLimitService;
 
     @PostMapping("/contact")
     ResponseEntity<?> sendContactForm(@Validated @RequestBody ContactMailDTO mailDTO) {
+        rateLimitService.checkLimit(RateLimitRoute.CONTACT_MAIL, RateLimitKeyType.EMAIL, mailDTO.getSender());
         mailService.sendContactMail(mailDTO.getSender(), mailDTO.getSubject(), mailDTO.getMessage());
 
         return createResponseEntity(HttpStatus.OK, "Mail successfully sent");
@@ -21,6 +21,9 @@
 import ch.wisv.areafiftylan.teams.model.Team;
 import ch.wisv.areafiftylan.users.model.Profile;
 import ch.wisv.areafiftylan.users.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.MailException;
@@ -45,6 +48,9 @@ public class MailServiceImpl implements MailService {
 
     private final SpringTemplateEngine templateEngine;
 
+    private final Timer sendTimer;
+    private final Counter failedCounter;
+
     @Value("${a5l.mail.sender}")
     String sender;
 
@@ -55,9 +61,21 @@ public class MailServiceImpl implements MailService {
     String year;
 
     @Autowired
-    public MailServiceImpl(JavaMailSender mailSender, SpringTemplateEngine templateEngine) {
+    public MailServiceImpl(JavaMailSender mailSender, SpringTemplateEngine templateEngine,
+                           MeterRegistry meterRegistry) {
         this.mailSender = mailSender;
         this.templateEngine = templateEngine;
+        this.sendTimer = Timer.builder("a5l.mail.send").register(meterRegistry);
+        this.failedCounter = Counter.builder("a5l.mail.failed").register(meterRegistry);
+    }
+
+    private void send(MimeMessage mimeMessage) {
+        try {
+            sendTimer.record(() -> this.mailSender.send(mimeMessage));
+        } catch (MailException e) {
+            failedCounter.increment();
+            throw e;
+        }
     }
 
     private void sendMailWithContent(String recipientEmail, String subject, String content) {
@@ -75,7 +93,7 @@ private void sendMailWithContent(String recipientEmail, String subject, String c
             message.setText(content, true); // true = isHtml
 
             // Send mail
-            this.mailSender.send(mimeMessage);
+            send(mimeMessage);
         } catch (MessagingException e) {
             throw new MailPreparationException("Unable to prepare email", e.getCause());
         } catch (MailException m) {
@@ -102,7 +120,7 @@ public void sendContactMail(String senderEmail, String subject, String messageSt
 
             message.setText(messageString);
 
-            this.mailSender.send(mimeMessage);
+            send(mimeMessage);
         } catch (MessagingException m) {
             throw new MailSendException("Unable to send email", m.getCause());
         }
@@ -2,15 +2,25 @@
 
 import ch.wisv.areafiftylan.web.banner.model.Banner;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.sql.Date;
+import java.util.List;
 import java.util.Optional;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
 @Repository
 public interface BannerRepository extends JpaRepository<Banner, Long> {
 
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Override
+    List<Banner> findAll();
+
     // Note that the latest inserted is returned in case of multiple results.
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
     Optional<Banner> findFirstByStartDateLessThanEqualAndEndDateGreaterThanEqualOrderByIdDesc(Date dateGreater, Date dateLess);
 
 }
@@ -0,0 +1,8 @@
+alter table if exists users add column normalized_email varchar(255);
+update users set normalized_email = lower(email);
+-- Emails used to be unique including case. Of the users whose emails only differ in case, the oldest keeps the
+-- normalized email. The others get a normalized email nobody can log in with, until their email is changed.
+update users u set normalized_email = u.normalized_email || '#duplicate-' || u.id
+    where exists (select 1 from users o where o.normalized_email = u.normalized_email and o.id < u.id);
+alter table if exists users alter column normalized_email set not null;
+alter table if exists users add constraint users_normalized_email unique (normalized_email);
@@ -0,0 +1,2 @@
+create table idempotent_response (id varchar(255) not null, body text, content_type varchar(255), created_at timestamp, location varchar(255), request varchar(255), status int4 not null, primary key (id));
+create index idempotent_response_created_at on idempotent_response (created_at);
@@ -0,0 +1 @@
+create index ticket_enabled_options_option on ticket_enabled_options (enabled_options_id, ticket_id);
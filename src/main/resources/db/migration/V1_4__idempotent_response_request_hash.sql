@@ -0,0 +1 @@
+alter table if exists idempotent_response add column request_hash varchar(64);
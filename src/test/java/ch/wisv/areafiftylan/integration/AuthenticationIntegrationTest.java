@@ -19,8 +19,12 @@
 
 import ch.wisv.areafiftylan.security.JsonLoginFilter;
 import ch.wisv.areafiftylan.security.token.AuthenticationToken;
+import ch.wisv.areafiftylan.security.token.SignedAccessTokenService;
 import ch.wisv.areafiftylan.security.token.repository.AuthenticationTokenRepository;
+import ch.wisv.areafiftylan.users.model.Role;
+import ch.wisv.areafiftylan.users.model.RoleDTO;
 import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.users.service.UserService;
 import io.restassured.http.ContentType;
 import io.restassured.http.Header;
 import io.restassured.response.Response;
@@ -29,6 +33,7 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 import java.util.HashMap;
 import java.util.List;
@@ -36,6 +41,7 @@
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.startsWith;
 import static org.hamcrest.core.IsEqual.equalTo;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -44,9 +50,16 @@ public class AuthenticationIntegrationTest extends XAuthIntegrationTest {
     @Autowired
     AuthenticationTokenRepository authenticationTokenRepository;
 
+    @Autowired
+    UserService userService;
+
     private User user;
     Map<String, String> userDTO;
     private final String AUTH_HEADER = "X-Auth-Token";
+    private final String ACCESS_HEADER = "X-Access-Token";
+
+    @Value("${a5l.auth.signedTokens.secret}")
+    private String signedTokenSecret;
 
     @BeforeEach
     public void setup() {
@@ -220,6 +233,145 @@ public void testForbiddenRequestWithToken() {
         //@formatter:on
     }
 
+    @Test
+    public void testSignedAccessToken() {
+        String accessToken = loginForAccessToken(user);
+
+        //@formatter:off
+        given().
+            header(AUTH_HEADER, accessToken).
+        when().
+            get("/users/current").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("email", equalTo(user.getEmail()));
+        //@formatter:on
+    }
+
+    @Test
+    public void testRoleChangeRevokesAccessToken() {
+        User admin = createAdmin();
+        String accessToken = loginForAccessToken(admin);
+
+        RoleDTO roleDTO = new RoleDTO();
+        roleDTO.setRole(Role.ROLE_ADMIN);
+        userService.deleteRole(admin.getId(), roleDTO);
+
+        //@formatter:off
+        given().
+            header(AUTH_HEADER, accessToken).
+        when().
+            get("/users/").
+        then().
+            statusCode(HttpStatus.SC_UNAUTHORIZED);
+
+        String refreshedToken = given().
+            header(getXAuthTokenHeaderForUser(admin)).
+        when().
+            post("/token/refresh").
+        then().
+            statusCode(HttpStatus.SC_OK).
+        extract().header(ACCESS_HEADER);
+
+        given().
+            header(AUTH_HEADER, refreshedToken).
+        when().
+            get("/users/").
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+
+    @Test
+    public void testRoleChangeEvictsCachedToken() {
+        User admin = createAdmin();
+        Header xAuthTokenHeader = getXAuthTokenHeaderForUser(admin);
+
+        //@formatter:off
+        given().
+            header(xAuthTokenHeader).
+        when().
+            get("/users/").
+        then().
+            statusCode(HttpStatus.SC_OK);
+        //@formatter:on
+
+        RoleDTO roleDTO = new RoleDTO();
+        roleDTO.setRole(Role.ROLE_ADMIN);
+        userService.deleteRole(admin.getId(), roleDTO);
+
+        //@formatter:off
+        given().
+            header(xAuthTokenHeader).
+        when().
+            get("/users/").
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+
+    @Test
+    public void testRefreshAccessToken() {
+        Header xAuthTokenHeaderForUser = getXAuthTokenHeaderForUser(user);
+
+        //@formatter:off
+        String accessToken = given().
+            header(xAuthTokenHeaderForUser).
+        when().
+            post("/token/refresh").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            header(ACCESS_HEADER, startsWith("v2.")).
+        extract().header(ACCESS_HEADER);
+
+        given().
+            header(AUTH_HEADER, accessToken).
+        when().
+            get("/token/verify").
+        then().
+            statusCode(HttpStatus.SC_OK);
+        //@formatter:on
+    }
+
+    @Test
+    public void testExpiredAccessToken() {
+        Header xAuthTokenHeaderForUser = getXAuthTokenHeaderForUser(user);
+        AuthenticationToken authenticationToken =
+                authenticationTokenRepository.findByToken(xAuthTokenHeaderForUser.getValue()).orElseThrow();
+        // Same secret as the application, but the tokens expire right away
+        String expiredToken = new SignedAccessTokenService(true, 0, signedTokenSecret).issue(authenticationToken);
+
+        //@formatter:off
+        given().
+            header(AUTH_HEADER, expiredToken).
+        when().
+            get("/token/verify").
+        then().
+            statusCode(HttpStatus.SC_UNAUTHORIZED);
+        //@formatter:on
+    }
+
+    @Test
+    public void testLogoutRevokesAccessToken() {
+        String accessToken = loginForAccessToken(user);
+
+        //@formatter:off
+        given().
+            header(AUTH_HEADER, accessToken).
+        when().
+            post("/logout").
+        then().
+            statusCode(HttpStatus.SC_OK);
+
+        given().
+            header(AUTH_HEADER, accessToken).
+        when().
+            get("/token/verify").
+        then().
+            statusCode(HttpStatus.SC_UNAUTHORIZED);
+        //@formatter:on
+    }
+
     @Test
     public void testOptionsRequest() {
         //@formatter:off
@@ -306,6 +458,23 @@ public void testRateLimitInvalidateCache() {
         }
     }
 
+    private String loginForAccessToken(User user) {
+        Map<String, String> loginDTO = new HashMap<>();
+        loginDTO.put("email", user.getEmail());
+        loginDTO.put("password", cleartextPassword);
+
+        //@formatter:off
+        return given().
+            when().
+                body(loginDTO).contentType(ContentType.JSON).
+                post("/login").
+            then().
+                statusCode(HttpStatus.SC_OK).
+                header(ACCESS_HEADER, startsWith("v2.")).
+            extract().header(ACCESS_HEADER);
+        //@formatter:on
+    }
+
     private void callLoginOK(Map<String, String> userDTO) {
         //@formatter:off
         given().
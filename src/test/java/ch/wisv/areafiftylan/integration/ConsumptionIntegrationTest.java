@@ -19,6 +19,7 @@
 package ch.wisv.areafiftylan.integration;
 
 import ch.wisv.areafiftylan.extras.consumption.model.Consumption;
+import ch.wisv.areafiftylan.extras.consumption.model.ConsumptionMap;
 import ch.wisv.areafiftylan.extras.consumption.model.ConsumptionMapsRepository;
 import ch.wisv.areafiftylan.extras.consumption.model.PossibleConsumptionsRepository;
 import ch.wisv.areafiftylan.extras.consumption.service.ConsumptionService;
@@ -464,4 +465,71 @@ public void resetTestAsAdminInvalidTicket() {
             body("message", equalTo("Ticket is invalid; It can not be used for consumptions."));
         //@formatter:on
     }
+
+    @Test
+    public void getConsumptionMapsPageAsAdmin() {
+        User user = createUser();
+        ConsumptionMap map = consumptionMapsRepository.save(new ConsumptionMap(createTicketForUser(user)));
+        ConsumptionMap map2 = consumptionMapsRepository.save(new ConsumptionMap(createTicketForUser(user)));
+        User admin = createAdmin();
+
+        //@formatter:off
+        Integer cursor =
+            given().
+                header(getXAuthTokenHeaderForUser(admin)).
+                param("limit", 1).
+                param("after", map.getId() - 1).
+            when().
+                get(CONSUMPTION_ENDPOINT + "/consumptionMaps").
+            then().
+                statusCode(HttpStatus.SC_OK).
+                body("items.id", contains(map.getId().intValue())).
+                body("nextCursor", equalTo(map.getId().intValue())).
+            extract().path("nextCursor");
+
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            param("limit", 1).
+            param("after", cursor).
+        when().
+            get(CONSUMPTION_ENDPOINT + "/consumptionMaps").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("items.id", contains(map2.getId().intValue()));
+        //@formatter:on
+    }
+
+    @Test
+    public void getConsumptionMapsPageAsUser() {
+        User user = createUser();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            param("limit", 10).
+        when().
+            get(CONSUMPTION_ENDPOINT + "/consumptionMaps").
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+
+    @Test
+    public void streamConsumptionMapsAsAdmin() {
+        User user = createUser();
+        consumptionMapsRepository.save(new ConsumptionMap(createTicketForUser(user)));
+        User admin = createAdmin();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            accept("application/x-ndjson").
+        when().
+            get(CONSUMPTION_ENDPOINT + "/consumptionMaps").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            contentType(startsWith("application/x-ndjson")).
+            body(containsString("\"email\":\"" + user.getEmail() + "\""));
+        //@formatter:on
+    }
 }
@@ -25,24 +25,34 @@
 import ch.wisv.areafiftylan.products.model.TicketType;
 import ch.wisv.areafiftylan.products.service.OrderService;
 import ch.wisv.areafiftylan.products.service.TicketService;
+import ch.wisv.areafiftylan.security.waitingroom.WaitingRoomService;
 import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.utils.idempotency.IdempotencyService;
 import io.restassured.http.ContentType;
 import org.apache.http.HttpStatus;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static ch.wisv.areafiftylan.security.waitingroom.WaitingRoomService.QUEUE_TOKEN_HEADER;
 import static io.restassured.RestAssured.given;
 import static io.restassured.RestAssured.when;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
+@QueryBudget(method = "POST", path = "/orders/{orderId}/approve", max = 16)
+@QueryBudget(method = "GET", path = "/orders/{orderId}", max = 9)
 public class OrderRestIntegrationTest extends XAuthIntegrationTest {
 
     @Autowired
@@ -57,16 +67,27 @@ public class OrderRestIntegrationTest extends XAuthIntegrationTest {
     @Autowired
     private TicketService ticketService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
     @Value("${a5l.ticketLimit}")
     private int TICKET_LIMIT;
 
     private final String ORDER_ENDPOINT = "/orders/";
 
     private Order addOrderForUser(User user) {
-        Ticket ticket = ticketRepository.save(new Ticket(
-                ticketTypeRepository.findByName(TEST_TICKET).orElseThrow(IllegalArgumentException::new)));
+        return addOrderForUser(user, 1);
+    }
+
+    private Order addOrderForUser(User user, int numberOfTickets) {
         Order order = new Order(user);
-        order.addTicket(ticket);
+        for (int i = 0; i < numberOfTickets; i++) {
+            order.addTicket(ticketRepository.save(new Ticket(
+                    ticketTypeRepository.findByName(TEST_TICKET).orElseThrow(IllegalArgumentException::new))));
+        }
         return orderRepository.save(order);
     }
 
@@ -290,6 +311,219 @@ public void testAddTicketToAssignedOrderAsUser() {
         //@formatter:on
     }
 
+    @Test
+    public void testAddTicketToAssignedOrderRetriedWithIdempotencyKey() {
+        User user = createUser();
+        Order order = addOrderForUser(user);
+
+        Map<String, Object> orderDTO = new HashMap<>();
+        orderDTO.put("type", TEST_TICKET);
+        orderDTO.put("options", Arrays.asList(CH_MEMBER, PICKUP_SERVICE));
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            //@formatter:off
+            given().
+                header(getXAuthTokenHeaderForUser(user)).
+                header("Idempotency-Key", "add-ticket").
+            when().
+                body(orderDTO).contentType(ContentType.JSON).
+                post(ORDER_ENDPOINT + order.getId()).
+            then().
+                statusCode(HttpStatus.SC_OK).
+                header("Idempotent-Replayed", attempt == 0 ? nullValue() : equalTo("true")).
+                body("object.tickets", hasSize(2));
+            //@formatter:on
+        }
+
+        assertEquals(2, orderRepository.findById(order.getId()).orElseThrow().getTickets().size());
+    }
+
+    @Test
+    public void testIdempotencyKeyReusedForOtherOrder() {
+        User user = createUser();
+        Order order = addOrderForUser(user);
+        Order otherOrder = addOrderForUser(user);
+
+        Map<String, Object> orderDTO = new HashMap<>();
+        orderDTO.put("type", TEST_TICKET);
+        orderDTO.put("options", Arrays.asList(CH_MEMBER, PICKUP_SERVICE));
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            header("Idempotency-Key", "reused").
+        when().
+            body(orderDTO).contentType(ContentType.JSON).
+            post(ORDER_ENDPOINT + order.getId()).
+        then().
+            statusCode(HttpStatus.SC_OK);
+
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            header("Idempotency-Key", "reused").
+        when().
+            body(orderDTO).contentType(ContentType.JSON).
+            post(ORDER_ENDPOINT + otherOrder.getId()).
+        then().
+            statusCode(HttpStatus.SC_UNPROCESSABLE_ENTITY);
+        //@formatter:on
+
+        assertEquals(1, orderRepository.findById(otherOrder.getId()).orElseThrow().getTickets().size());
+    }
+
+    @Test
+    public void testIdempotencyKeyReusedWithOtherBody() {
+        User user = createUser();
+        Order order = addOrderForUser(user);
+
+        Map<String, Object> orderDTO = new HashMap<>();
+        orderDTO.put("type", TEST_TICKET);
+        orderDTO.put("options", Arrays.asList(CH_MEMBER, PICKUP_SERVICE));
+
+        Map<String, Object> otherOrderDTO = new HashMap<>();
+        otherOrderDTO.put("type", TEST_TICKET);
+        otherOrderDTO.put("options", Collections.singletonList(CH_MEMBER));
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            header("Idempotency-Key", "reused-body").
+        when().
+            body(orderDTO).contentType(ContentType.JSON).
+            post(ORDER_ENDPOINT + order.getId()).
+        then().
+            statusCode(HttpStatus.SC_OK);
+
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            header("Idempotency-Key", "reused-body").
+        when().
+            body(otherOrderDTO).contentType(ContentType.JSON).
+            post(ORDER_ENDPOINT + order.getId()).
+        then().
+            statusCode(HttpStatus.SC_UNPROCESSABLE_ENTITY);
+        //@formatter:on
+
+        assertEquals(2, orderRepository.findById(order.getId()).orElseThrow().getTickets().size());
+    }
+
+    @Test
+    public void testCreateAnonOrderRetriedWithIdempotencyKey() {
+        Map<String, Object> orderDTO = new HashMap<>();
+        orderDTO.put("type", TEST_TICKET);
+        orderDTO.put("options", Arrays.asList(CH_MEMBER, PICKUP_SERVICE));
+        String queueToken = waitingRoomService.join();
+
+        //@formatter:off
+        String location =
+            given().
+                header(QUEUE_TOKEN_HEADER, queueToken).
+                header("Idempotency-Key", "anon-order").
+            when().
+                body(orderDTO).contentType(ContentType.JSON).
+                post(ORDER_ENDPOINT).
+            then().
+                statusCode(HttpStatus.SC_CREATED).
+                header("Idempotent-Replayed", nullValue()).
+            extract().header(HttpHeaders.LOCATION);
+
+        given().
+            header(QUEUE_TOKEN_HEADER, queueToken).
+            header("Idempotency-Key", "anon-order").
+        when().
+            body(orderDTO).contentType(ContentType.JSON).
+            post(ORDER_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_CREATED).
+            header("Idempotent-Replayed", equalTo("true")).
+            header(HttpHeaders.LOCATION, equalTo(location));
+        //@formatter:on
+    }
+
+    @Test
+    public void testAnonClientsWithSameIdempotencyKey() {
+        Map<String, Object> orderDTO = new HashMap<>();
+        orderDTO.put("type", TEST_TICKET);
+        orderDTO.put("options", Arrays.asList(CH_MEMBER, PICKUP_SERVICE));
+
+        //@formatter:off
+        String firstLocation =
+            given().
+                header(QUEUE_TOKEN_HEADER, waitingRoomService.join()).
+                header("Idempotency-Key", "shared-key").
+            when().
+                body(orderDTO).contentType(ContentType.JSON).
+                post(ORDER_ENDPOINT).
+            then().
+                statusCode(HttpStatus.SC_CREATED).
+            extract().header(HttpHeaders.LOCATION);
+
+        String secondLocation =
+            given().
+                header(QUEUE_TOKEN_HEADER, waitingRoomService.join()).
+                header("Idempotency-Key", "shared-key").
+            when().
+                body(orderDTO).contentType(ContentType.JSON).
+                post(ORDER_ENDPOINT).
+            then().
+                statusCode(HttpStatus.SC_CREATED).
+                header("Idempotent-Replayed", nullValue()).
+            extract().header(HttpHeaders.LOCATION);
+        //@formatter:on
+
+        assertNotEquals(firstLocation, secondLocation);
+    }
+
+    @Test
+    public void testAnonIdempotencyKeyWithoutQueueTokenIgnored() {
+        Map<String, Object> orderDTO = new HashMap<>();
+        orderDTO.put("type", TEST_TICKET);
+        orderDTO.put("options", Arrays.asList(CH_MEMBER, PICKUP_SERVICE));
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            //@formatter:off
+            given().
+                header("Idempotency-Key", "anon-without-queue-token").
+            when().
+                body(orderDTO).contentType(ContentType.JSON).
+                post(ORDER_ENDPOINT).
+            then().
+                statusCode(HttpStatus.SC_CREATED).
+                header("Idempotent-Replayed", nullValue());
+            //@formatter:on
+        }
+    }
+
+    @Test
+    public void testIdempotencyKeyStillBeingProcessed() throws Exception {
+        User user = createUser();
+        Order order = addOrderForUser(user);
+
+        Map<String, Object> orderDTO = new HashMap<>();
+        orderDTO.put("type", TEST_TICKET);
+        orderDTO.put("options", Arrays.asList(CH_MEMBER, PICKUP_SERVICE));
+
+        // Hold the key as if the first request is still being executed
+        String id = "user-" + user.getId() + ":in-progress";
+        idempotencyService.reserve(id);
+        try {
+            //@formatter:off
+            given().
+                header(getXAuthTokenHeaderForUser(user)).
+                header("Idempotency-Key", "in-progress").
+            when().
+                body(orderDTO).contentType(ContentType.JSON).
+                post(ORDER_ENDPOINT + order.getId()).
+            then().
+                statusCode(HttpStatus.SC_CONFLICT);
+            //@formatter:on
+        } finally {
+            idempotencyService.complete(id, null);
+        }
+
+        assertEquals(1, orderRepository.findById(order.getId()).orElseThrow().getTickets().size());
+    }
+
     @Test
     public void testAddTicketToAssignedOrderAsWrongUser() {
         User user = createUser();
@@ -476,6 +710,25 @@ public void testGetAssignedOrderAsUser() {
         //@formatter:on
     }
 
+    @Test
+    public void testGetAssignedOrderWithThreeTicketsAsUser() {
+        // With a query per Ticket, this goes over the QueryBudget of the endpoint
+        User user = createUser();
+        Order order = addOrderForUser(user, 3);
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+        when().
+            get(ORDER_ENDPOINT + order.getId()).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("tickets", hasSize(3)).
+            body("tickets.type.name", everyItem(is(TEST_TICKET))).
+            body("amount", equalTo(90F));
+        //@formatter:on
+    }
+
     @Test
     public void testGetAssignedOrderAsWrongUser() {
         User user = createUser();
@@ -718,6 +971,30 @@ public void testApproveOrderAsAdmin() {
         //@formatter:on
     }
 
+    @Test
+    public void testApproveOrderWithThreeTicketsAsAdmin() {
+        // The Tickets are marked paid in one update. Loading and saving them one by one goes over the QueryBudget.
+        User user = createUser();
+        User admin = createAdmin();
+        Order order = addOrderForUser(user, 3);
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+        when().
+            post(ORDER_ENDPOINT + order.getId() + "/approve").
+        then().
+            statusCode(HttpStatus.SC_OK);
+        //@formatter:on
+
+        assertEquals(OrderStatus.PAID, orderRepository.findById(order.getId()).orElseThrow().getStatus());
+        for (Ticket ticket : order.getTickets()) {
+            Ticket approved = ticketRepository.findById(ticket.getId()).orElseThrow();
+            assertTrue(approved.isValid());
+            assertEquals(user.getId(), approved.getOwner().getId());
+        }
+    }
+
     @Test
     public void testGetPaymentUrl() {
         User user = createUser();
@@ -793,4 +1070,98 @@ public void testAdminAssignTicketOrder() {
                 body("object.tickets.type.text", anything()).
                 body("object.amount",equalTo(30F));
     }
+
+    @Test
+    public void testGetOrdersPageAsAdmin() {
+        User user = createUser();
+        Order order = addOrderForUser(user);
+        Order order2 = addOrderForUser(user);
+        User admin = createAdmin();
+
+        //@formatter:off
+        Integer cursor =
+            given().
+                header(getXAuthTokenHeaderForUser(admin)).
+                param("limit", 1).
+                param("after", order.getId() - 1).
+            when().
+                get(ORDER_ENDPOINT).
+            then().
+                statusCode(HttpStatus.SC_OK).
+                body("items", hasSize(1)).
+                body("items[0].id", equalTo(order.getId().intValue())).
+                body("items[0].user.email", equalTo(user.getEmail())).
+                body("nextCursor", equalTo(order.getId().intValue())).
+            extract().path("nextCursor");
+
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            param("limit", 1).
+            param("after", cursor).
+        when().
+            get(ORDER_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("items.id", contains(order2.getId().intValue()));
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetOrdersPageFilteredByStatusAsAdmin() {
+        User user = createUser();
+        Order paidOrder = addOrderForUser(user);
+        paidOrder.setStatus(OrderStatus.PAID);
+        orderRepository.save(paidOrder);
+        Order assignedOrder = addOrderForUser(user);
+        User admin = createAdmin();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            param("limit", 500).
+            param("after", paidOrder.getId() - 1).
+            param("status", OrderStatus.PAID).
+        when().
+            get(ORDER_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("items.id", hasItem(paidOrder.getId().intValue())).
+            body("items.id", not(hasItem(assignedOrder.getId().intValue()))).
+            body("items.status", everyItem(equalTo("PAID")));
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetOrdersPageAsUser() {
+        User user = createUser();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            param("limit", 10).
+        when().
+            get(ORDER_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+
+    @Test
+    public void testStreamOrdersAsAdmin() {
+        User user = createUser();
+        addOrderForUser(user);
+        User admin = createAdmin();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            accept("application/x-ndjson").
+        when().
+            get(ORDER_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            contentType(startsWith("application/x-ndjson")).
+            body(containsString("\"email\":\"" + user.getEmail() + "\""));
+        //@formatter:on
+    }
 }
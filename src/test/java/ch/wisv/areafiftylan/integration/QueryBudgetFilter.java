@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.integration;
+
+import ch.wisv.areafiftylan.integration.QueryCounter.RecordedStatement;
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.AntPathMatcher;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * RestAssured filter that counts the SQL statements of each request and checks them against the QueryBudgets of the
+ * test class. A request over its budget fails the test with a report of the repository methods that issued the
+ * statements. Set the log level of this class to DEBUG to get the count of every request.
+ */
+@Slf4j
+public class QueryBudgetFilter implements Filter {
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final List<QueryBudget> budgets;
+
+    public QueryBudgetFilter(Class<?> testClass) {
+        this.budgets = Arrays.asList(testClass.getAnnotationsByType(QueryBudget.class));
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        List<RecordedStatement> statements;
+        Response response;
+
+        QueryCounter.start();
+        try {
+            response = ctx.next(requestSpec, responseSpec);
+        } finally {
+            statements = QueryCounter.stop();
+        }
+
+        String method = requestSpec.getMethod();
+        String path = URI.create(requestSpec.getURI()).getPath();
+        log.debug("{} {} issued {} statements", method, path, statements.size());
+
+        budgets.stream()
+                .filter(budget -> budget.method().equalsIgnoreCase(method) && pathMatcher.match(budget.path(), path))
+                .filter(budget -> statements.size() > budget.max())
+                .findFirst()
+                .ifPresent(budget -> {
+                    throw new AssertionError(createReport(method + " " + path, budget, statements));
+                });
+
+        return response;
+    }
+
+    private static String createReport(String request, QueryBudget budget, List<RecordedStatement> statements) {
+        StringBuilder report = new StringBuilder();
+        report.append(request).append(" issued ").append(statements.size()).append(" statements, but the budget of ")
+                .append(budget.method()).append(" ").append(budget.path()).append(" is ").append(budget.max())
+                .append(".\nStatements per origin:\n");
+
+        Map<String, Long> countPerOrigin = statements.stream()
+                .collect(Collectors.groupingBy(RecordedStatement::getOrigin, Collectors.counting()));
+        countPerOrigin.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .forEach(entry -> report.append(String.format("%5d x %s%n", entry.getValue(), entry.getKey())));
+
+        report.append("All statements:\n");
+        statements.forEach(statement -> report.append("  ").append(statement.getOrigin()).append(": ")
+                .append(statement.getSql()).append("\n"));
+
+        return report.toString();
+    }
+}
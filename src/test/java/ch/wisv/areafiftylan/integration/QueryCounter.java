@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.integration;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.data.repository.Repository;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * Hibernate StatementInspector that records every SQL statement, together with the repository method that issued it.
+ * The integration tests register it through the hibernate.session_factory.statement_inspector property.
+ * <p>
+ * Requests are handled on the threads of the embedded server, so statements of all threads are recorded. This only
+ * works because the integration tests run one at a time.
+ */
+public class QueryCounter implements StatementInspector {
+
+    private static final String APPLICATION_PACKAGE = "ch.wisv.areafiftylan.";
+
+    private static final StackWalker STACK_WALKER =
+            StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    private static final List<RecordedStatement> statements = new CopyOnWriteArrayList<>();
+
+    private static volatile boolean recording = false;
+
+    @Override
+    public String inspect(String sql) {
+        if (recording) {
+            statements.add(new RecordedStatement(findOrigin(), sql));
+        }
+        return sql;
+    }
+
+    /**
+     * Clear the recorded statements and start recording.
+     */
+    public static void start() {
+        statements.clear();
+        recording = true;
+    }
+
+    /**
+     * Stop recording.
+     *
+     * @return The statements recorded since the last call to start
+     */
+    public static List<RecordedStatement> stop() {
+        recording = false;
+        return new ArrayList<>(statements);
+    }
+
+    /**
+     * Describe where a statement comes from, like "TeamRepository.findById from TeamServiceImpl.getTeamById". Statements
+     * without a repository call on the stack come from lazy loading or from flushing at the end of a transaction.
+     */
+    private static String findOrigin() {
+        List<StackWalker.StackFrame> frames = STACK_WALKER.walk(stream -> stream.collect(Collectors.toList()));
+
+        String repositoryMethod = null;
+        for (StackWalker.StackFrame frame : frames) {
+            Class<?> declaringClass = frame.getDeclaringClass();
+
+            if (repositoryMethod == null && Proxy.isProxyClass(declaringClass)) {
+                repositoryMethod = Arrays.stream(declaringClass.getInterfaces())
+                        .filter(Repository.class::isAssignableFrom)
+                        .findFirst()
+                        .map(repository -> repository.getSimpleName() + "." + frame.getMethodName())
+                        .orElse(null);
+            } else if (declaringClass.getName().startsWith(APPLICATION_PACKAGE) &&
+                    declaringClass != QueryCounter.class) {
+                String caller = declaringClass.getSimpleName() + "." + frame.getMethodName();
+                return repositoryMethod == null ? "lazy load or flush in " + caller :
+                        repositoryMethod + " from " + caller;
+            }
+        }
+
+        return repositoryMethod == null ? "unknown" : repositoryMethod;
+    }
+
+    public static class RecordedStatement {
+
+        private final String origin;
+        private final String sql;
+
+        RecordedStatement(String origin, String sql) {
+            this.origin = origin;
+            this.sql = sql;
+        }
+
+        public String getOrigin() {
+            return origin;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+    }
+}
@@ -33,6 +33,7 @@
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -40,6 +41,7 @@
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.*;
 
+@QueryBudget(method = "GET", path = "/teams/{teamName}/seats", max = 13)
 public class SeatRestIntegrationTest extends XAuthIntegrationTest {
 
     private final String SEAT_ENDPOINT = "/seats";
@@ -320,6 +322,37 @@ public void getSeatsForTeam() {
             body("ticket.owner.profile", not(hasKey("firstName")));
         //@formatter:on
     }
+
+    @Test
+    public void getSeatsForTeamWithFourMembers() {
+        // With a query per member, this goes over the QueryBudget of the endpoint
+        User captain = createUser();
+        Team team = createTeamWithCaptain(captain);
+        List<User> members = new ArrayList<>(List.of(captain));
+        for (int i = 0; i < 3; i++) {
+            User member = createUser();
+            addMemberToTeam(team, member);
+            members.add(member);
+        }
+        List<Seat> seats = seatRepository.findAll();
+        for (int i = 0; i < members.size(); i++) {
+            Seat seat = seats.get(i);
+            seat.setTicket(createTicketForUser(members.get(i)));
+            seatRepository.save(seat);
+        }
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(captain)).
+        when().
+            get("/teams/" + team.getTeamName() + SEAT_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("$", hasSize(4)).
+            body("ticket.owner.profile.displayName", containsInAnyOrder(members.stream().
+                    map(member -> member.getProfile().getDisplayName()).toArray()));
+        //@formatter:on
+    }
     //endregion Get Seat
     //region Add/Remove SeatGroups
     @Test
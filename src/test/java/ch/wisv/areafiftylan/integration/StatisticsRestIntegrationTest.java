@@ -0,0 +1,118 @@
+package ch.wisv.areafiftylan.integration;
+
+import ch.wisv.areafiftylan.extras.rfid.service.RFIDLinkRepository;
+import ch.wisv.areafiftylan.products.service.repository.TicketRepository;
+import ch.wisv.areafiftylan.statistics.model.Statistics;
+import ch.wisv.areafiftylan.statistics.service.StatisticsService;
+import ch.wisv.areafiftylan.teams.model.Team;
+import ch.wisv.areafiftylan.teams.service.TeamRepository;
+import ch.wisv.areafiftylan.users.model.User;
+import io.restassured.http.ContentType;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QueryBudget(method = "GET", path = "/statistics", max = 6)
+public class StatisticsRestIntegrationTest extends XAuthIntegrationTest {
+
+    private final String STATISTICS_ENDPOINT = "/statistics";
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private TicketRepository ticketRepository;
+
+    @Autowired
+    private TeamRepository teamRepository;
+
+    @Autowired
+    private RFIDLinkRepository rfidLinkRepository;
+
+    @Test
+    public void testGetStatisticsAsUser() {
+        User user = createUser();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+        when().
+            get(STATISTICS_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetStatisticsAsCommitteeMember() {
+        User committeeMember = createCommitteeMember();
+        User user = createUser();
+        createRFIDLink(String.format("9%09d", rfidLinkRepository.count()), createTicketForUser(user));
+        createTeamWithCaptain(user);
+        // The test data is saved without the services, so it isn't noticed without a reconcile
+        statisticsService.reconcile();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(committeeMember)).
+        when().
+            get(STATISTICS_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("tickets.test.sold", equalTo(ticketRepository.countByType(getTicketType()))).
+            body("teams", equalTo((int) teamRepository.count())).
+            body("rfidLinks", equalTo((int) rfidLinkRepository.count()));
+        //@formatter:on
+    }
+
+    @Test
+    public void testStatisticsFollowTeamChanges() {
+        User captain = createUser();
+        statisticsService.getStatistics();
+        statisticsService.reconcile();
+        long teamsBefore = statisticsService.getStatistics().getTeams();
+
+        Map<String, String> teamDTO = new HashMap<>();
+        teamDTO.put("captainEmail", captain.getEmail());
+        teamDTO.put("teamName", "Statistics " + captain.getId());
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(captain)).
+        when().
+            body(teamDTO).
+            contentType(ContentType.JSON).
+            post("/teams").
+        then().
+            statusCode(HttpStatus.SC_CREATED);
+        //@formatter:on
+
+        statisticsService.refreshChanged();
+
+        Statistics statistics = statisticsService.getStatistics();
+        assertEquals(teamsBefore + 1, statistics.getTeams());
+        assertEquals(teamRepository.count(), statistics.getTeams());
+    }
+
+    @Test
+    public void testStatisticsCountEmptyTeams() {
+        Team team = createTeamWithCaptain(createUser());
+        team.removeMember(team.getCaptain());
+        teamRepository.save(team);
+
+        statisticsService.getStatistics();
+        statisticsService.reconcile();
+
+        Statistics statistics = statisticsService.getStatistics();
+        assertEquals(teamRepository.count(), statistics.getTeams());
+        assertTrue(statistics.getTeamSizes().containsKey(0));
+    }
+}
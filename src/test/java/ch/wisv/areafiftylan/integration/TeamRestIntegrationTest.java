@@ -39,6 +39,7 @@
 import static org.junit.jupiter.api.Assertions.*;
 
 
+@QueryBudget(method = "GET", path = "/teams/{teamId}", max = 6)
 public class TeamRestIntegrationTest extends XAuthIntegrationTest {
 
     @Autowired
@@ -303,6 +304,29 @@ public void getTeamAsMember() {
         //formatter:on
     }
 
+    @Test
+    public void getTeamWithFourMembersAsMember() {
+        // With a query per member, this goes over the QueryBudget of the endpoint
+        User captain = createUser();
+        Team team = createTeamWithCaptain(captain);
+        User member = null;
+        for (int i = 0; i < 3; i++) {
+            member = createUser();
+            team = addMemberToTeam(team, member);
+        }
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(member)).
+        when().
+            get(TEAM_ENDPOINT + team.getId()).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("members", hasSize(4)).
+            body("members.profile.displayName", everyItem(notNullValue()));
+        //formatter:on
+    }
+
     @Test
     public void getTeamAsUser() {
         User captain = createUser();
@@ -336,6 +360,30 @@ public void getTeamCurrentUser() {
             body("[0].members.profile.displayName", hasItem(captain.getProfile().getDisplayName()));
         //@formatter:on
     }
+
+    @Test
+    public void getTeamCurrentUserAsMember() {
+        User captain = createUser();
+        User member = createUser();
+        User otherMember = createUser();
+        Team team = createTeamWithCaptain(captain);
+        addMemberToTeam(team, member);
+        addMemberToTeam(team, otherMember);
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(member)).
+        when().
+            get("/users/current/teams").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("$", hasSize(1)).
+            body("[0].teamName", equalTo(team.getTeamName())).
+            body("[0].members", hasSize(3)).
+            body("[0].members.profile.displayName", containsInAnyOrder(captain.getProfile().getDisplayName(),
+                    member.getProfile().getDisplayName(), otherMember.getProfile().getDisplayName()));
+        //@formatter:on
+    }
     //endregion
 
     //region Test Add/Invite Members
@@ -355,7 +403,8 @@ public void testInviteMemberAsAdmin() {
             statusCode(HttpStatus.SC_OK);
         //@formatter:on
 
-        Collection<TeamInviteToken> tokens = teamInviteTokenRepository.findByUserEmailIgnoreCase(member.getEmail());
+        Collection<TeamInviteToken> tokens =
+                teamInviteTokenRepository.findDistinctByUserEmailIgnoreCase(member.getEmail());
         assertFalse(tokens.isEmpty());
     }
 
@@ -407,7 +456,8 @@ public void testInviteMemberAsCaptain() {
             statusCode(HttpStatus.SC_OK);
         //@formatter:on
 
-        Collection<TeamInviteToken> tokens = teamInviteTokenRepository.findByUserEmailIgnoreCase(member.getEmail());
+        Collection<TeamInviteToken> tokens =
+                teamInviteTokenRepository.findDistinctByUserEmailIgnoreCase(member.getEmail());
         assertFalse(tokens.isEmpty());
     }
 
@@ -437,7 +487,8 @@ public void testInviteMemberTwiceAsCaptain() {
             statusCode(HttpStatus.SC_CONFLICT);
         //@formatter:on
 
-        Collection<TeamInviteToken> tokens = teamInviteTokenRepository.findByUserEmailIgnoreCase(user.getEmail());
+        Collection<TeamInviteToken> tokens =
+                teamInviteTokenRepository.findDistinctByUserEmailIgnoreCase(user.getEmail());
         assertEquals(1, tokens.size());
     }
 
@@ -718,7 +769,7 @@ public void testAcceptInviteAsUser() {
             statusCode(HttpStatus.SC_OK);
         //@formatter:on
 
-        Collection<Team> allByMembersEmail = teamRepository.findAllByMembersEmailIgnoreCase(user.getEmail());
+        Collection<Team> allByMembersEmail = teamRepository.findDistinctByMembersEmailIgnoreCase(user.getEmail());
         assertFalse(allByMembersEmail.isEmpty());
     }
 
@@ -740,7 +791,8 @@ public void testDeclineInviteAsUser() {
             statusCode(HttpStatus.SC_OK);
         //@formatter:on
 
-        Collection<TeamInviteToken> tokens = teamInviteTokenRepository.findByUserEmailIgnoreCase(user.getEmail());
+        Collection<TeamInviteToken> tokens =
+                teamInviteTokenRepository.findDistinctByUserEmailIgnoreCase(user.getEmail());
         tokens.removeIf(t -> !t.isValid());
 
         assertTrue(tokens.isEmpty());
@@ -764,7 +816,8 @@ public void testRevokeInviteAsCaptain() {
             statusCode(HttpStatus.SC_OK);
         //@formatter:on
 
-        Collection<TeamInviteToken> tokens = teamInviteTokenRepository.findByUserEmailIgnoreCase(user.getEmail());
+        Collection<TeamInviteToken> tokens =
+                teamInviteTokenRepository.findDistinctByUserEmailIgnoreCase(user.getEmail());
         tokens.removeIf(t -> !t.isValid());
 
         assertTrue(tokens.isEmpty());
@@ -1112,4 +1165,87 @@ public void changeCaptainByNonMember() {
 
     //endregion
 
+    @Test
+    public void testGetTeamsPageAsAdmin() {
+        Team team = createTeamWithCaptain(createUser());
+        Team team2 = createTeamWithCaptain(createUser());
+        User admin = createAdmin();
+
+        //@formatter:off
+        Integer cursor =
+            given().
+                header(getXAuthTokenHeaderForUser(admin)).
+                param("limit", 1).
+                param("after", team.getId() - 1).
+            when().
+                get(TEAM_ENDPOINT).
+            then().
+                statusCode(HttpStatus.SC_OK).
+                body("items.teamName", contains(team.getTeamName())).
+                body("nextCursor", equalTo(team.getId().intValue())).
+            extract().path("nextCursor");
+
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            param("limit", 1).
+            param("after", cursor).
+        when().
+            get(TEAM_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("items.teamName", contains(team2.getTeamName()));
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetTeamsPageFilteredByNameAsAdmin() {
+        Team team = createTeamWithCaptain(createUser());
+        User admin = createAdmin();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            param("limit", 10).
+            param("teamName", team.getTeamName().toUpperCase()).
+        when().
+            get(TEAM_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("items.teamName", hasItem(team.getTeamName())).
+            body("items.teamName", everyItem(containsStringIgnoringCase(team.getTeamName())));
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetTeamsPageAsUser() {
+        User user = createUser();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            param("limit", 10).
+        when().
+            get(TEAM_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+
+    @Test
+    public void testStreamTeamsAsAdmin() {
+        Team team = createTeamWithCaptain(createUser());
+        User admin = createAdmin();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            accept("application/x-ndjson").
+        when().
+            get(TEAM_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            contentType(startsWith("application/x-ndjson")).
+            body(containsString("\"teamName\":\"" + team.getTeamName() + "\""));
+        //@formatter:on
+    }
 }
@@ -35,15 +35,26 @@
 import ch.wisv.areafiftylan.teams.model.Team;
 import ch.wisv.areafiftylan.users.model.User;
 import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
 import org.apache.http.HttpStatus;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static io.restassured.RestAssured.given;
 import static io.restassured.RestAssured.when;
@@ -52,6 +63,7 @@
 import static org.junit.jupiter.api.Assertions.*;
 
 
+@QueryBudget(method = "GET", path = "/tickets/teammembers", max = 2)
 public class TicketRestIntegrationTest extends XAuthIntegrationTest {
     private final String TICKETS_ENDPOINT = "/tickets";
     private final String TRANSFER_ENDPOINT = TICKETS_ENDPOINT + "/transfer";
@@ -237,6 +249,41 @@ public void testGetAvailableTickets() {
         //@formatter:on
     }
 
+    @Test
+    public void testStreamAvailableTickets() throws Exception {
+        HttpRequest request =
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + TICKETS_ENDPOINT + "/available")).
+                        header("Accept", MediaType.TEXT_EVENT_STREAM_VALUE).build();
+        HttpResponse<Stream<String>> response =
+                HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofLines());
+
+        try (Stream<String> body = response.body()) {
+            Iterator<String> lines = body.iterator();
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                // The first event contains all available tickets
+                assertThat(JsonPath.from(nextEventData(lines)).getList("ticketType")).contains(TEST_TICKET);
+
+                orderService.create(TEST_TICKET, null);
+                int numberSold = ticketService.getNumberSoldOfType(getTicketType());
+
+                // Wait for the event with the new number of sold tickets
+                List<Integer> numbersSold;
+                do {
+                    numbersSold = JsonPath.from(nextEventData(lines)).
+                            getList("findAll { it.ticketType == '" + TEST_TICKET + "' }.numberSold", Integer.class);
+                } while (!numbersSold.contains(numberSold));
+            });
+        }
+    }
+
+    private static String nextEventData(Iterator<String> lines) {
+        String line;
+        do {
+            line = lines.next();
+        } while (!line.startsWith("data:"));
+        return line.substring("data:".length());
+    }
+
     @Test
     public void testGetTicketTypesAsAnon() {
         //@formatter:off
@@ -321,6 +368,43 @@ public void testEditTicketType() {
         assertThat(ticketService.getAllTicketTypes()).contains(type);
     }
 
+    @Test
+    public void testEditTicketTypeUpdatesAvailableTickets() {
+        User admin = createAdmin();
+        TicketType type = new TicketType("testCachedType", "Type for cache test", 10, 0,
+                LocalDateTime.now().plusDays(1), true);
+        type = ticketService.addTicketType(type);
+
+        // Read the available tickets first, so the TicketTypes are cached
+        //@formatter:off
+        given().
+        when().
+            get(TICKETS_ENDPOINT + "/available").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("ticketTypes.find { it.ticketType == 'testCachedType' }.price", is(10F));
+
+        type.setPrice(15F);
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+        when().
+            contentType(ContentType.JSON).
+            body(type).
+            put(TICKETS_ENDPOINT + "/types/" + type.getId()).
+        then().
+            statusCode(HttpStatus.SC_OK);
+
+        given().
+        when().
+            get(TICKETS_ENDPOINT + "/available").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("ticketTypes.find { it.ticketType == 'testCachedType' }.price", is(15F));
+        //@formatter:on
+
+        ticketService.deleteTicketType(type.getId());
+    }
+
     @Test
     public void testAddTicketOption() {
         TicketOption option = new TicketOption("addTest", 10);
@@ -783,6 +867,32 @@ public void testGetTicketInControlTeamMemberTicket() {
         //@formatter:on
     }
 
+    @Test
+    public void testGetTicketInControlFourTeamMembers() {
+        // With a query per member or Ticket, this goes over the QueryBudget of the endpoint
+        User user = createUser();
+        createTicketForUser(user);
+        Team team = createTeamWithCaptain(user);
+        List<String> emails = new ArrayList<>(List.of(user.getEmail()));
+        for (int i = 0; i < 3; i++) {
+            User teammate = createUser();
+            createTicketForUser(teammate);
+            addMemberToTeam(team, teammate);
+            emails.add(teammate.getEmail());
+        }
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+        when().
+            get(TICKETS_ENDPOINT + "/teammembers").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("owner.email", containsInAnyOrder(emails.toArray())).
+            body("owner.profile.displayName", everyItem(notNullValue()));
+        //@formatter:on
+    }
+
     @Test
     public void testGetTicketInControlMemberOfTeam() {
         User user = createUser();
@@ -833,15 +943,56 @@ public void testGetAllTicketsForTransportAsAdmin() {
         // this is tested in the unit test as well
 
         User admin = createAdmin();
-        createTicket(admin, Collections.singletonList(PICKUP_SERVICE));
+        User user = createUser();
+        Ticket ticket = createTicket(user, Collections.singletonList(PICKUP_SERVICE));
 
         //@formatter:off
-        Object enabledOptions = given().
+        given().
             header(getXAuthTokenHeaderForUser(admin)).
         when().
             get(TRANSPORT_ENDPOINT).
         then().
-            statusCode(HttpStatus.SC_OK);
+            statusCode(HttpStatus.SC_OK).
+            body("ticketId", hasItem(ticket.getId().intValue())).
+            body("find { it.ticketId == " + ticket.getId() + " }.email", equalTo(user.getEmail())).
+            body("[0]", not(hasKey("password")));
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetTicketsForTransportPageAsAdmin() {
+        User admin = createAdmin();
+        User user = createUser();
+        Ticket ticket = createTicket(user, Collections.singletonList(PICKUP_SERVICE));
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            param("after", ticket.getId() - 1).
+            param("limit", 1).
+        when().
+            get(TRANSPORT_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("items.ticketId", contains(ticket.getId().intValue())).
+            body("items[0].email", equalTo(user.getEmail())).
+            body("items[0].city", equalTo(user.getProfile().getCity())).
+            body("items[0]", not(hasKey("password")));
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetTicketsForTransportPageAsUser() {
+        User user = createUser();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            param("limit", 1).
+        when().
+            get(TRANSPORT_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
         //@formatter:on
     }
 
@@ -910,4 +1061,164 @@ public void testAddOptionToType() {
             body("object.possibleOptions.id", hasItem(Math.toIntExact(option.getId())));
         //@formatter:on
     }
+
+    @Test
+    public void testGetTicketsPageAsAdmin() {
+        User user = createUser();
+        Ticket ticket = createTicketForUser(user);
+        Ticket ticket2 = createTicketForUser(user);
+        User admin = createAdmin();
+
+        //@formatter:off
+        Integer cursor =
+            given().
+                header(getXAuthTokenHeaderForUser(admin)).
+                param("limit", 1).
+                param("after", ticket.getId() - 1).
+            when().
+                get(TICKETS_ENDPOINT).
+            then().
+                statusCode(HttpStatus.SC_OK).
+                body("items", hasSize(1)).
+                body("items[0].id", equalTo(ticket.getId().intValue())).
+                body("nextCursor", equalTo(ticket.getId().intValue())).
+            extract().path("nextCursor");
+
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            param("limit", 1).
+            param("after", cursor).
+        when().
+            get(TICKETS_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("items.id", contains(ticket2.getId().intValue()));
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetTicketsPageFilteredByValidityAsAdmin() {
+        User user = createUser();
+        Ticket invalidTicket = createTicketForUser(user);
+        invalidTicket.setValid(false);
+        ticketRepository.save(invalidTicket);
+        Ticket validTicket = createTicketForUser(user);
+        User admin = createAdmin();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            param("limit", 500).
+            param("after", invalidTicket.getId() - 1).
+            param("valid", false).
+        when().
+            get(TICKETS_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("items.id", hasItem(invalidTicket.getId().intValue())).
+            body("items.id", not(hasItem(validTicket.getId().intValue()))).
+            body("items.valid", everyItem(equalTo(false)));
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetTicketsPageAsUser() {
+        User user = createUser();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            param("limit", 10).
+        when().
+            get(TICKETS_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+
+    @Test
+    public void testStreamTicketsAsAdmin() {
+        User user = createUser();
+        createTicketForUser(user);
+        User admin = createAdmin();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            accept("application/x-ndjson").
+        when().
+            get(TICKETS_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            contentType(startsWith("application/x-ndjson")).
+            body(containsString("\"email\":\"" + user.getEmail() + "\""));
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetTransferTicketsPageAsAdmin() {
+        User user = createUser();
+        TicketTransferToken token = tttRepository.save(new TicketTransferToken(user, createTicketForUser(user)));
+        TicketTransferToken token2 = tttRepository.save(new TicketTransferToken(user, createTicketForUser(user)));
+        User admin = createAdmin();
+
+        //@formatter:off
+        Integer cursor =
+            given().
+                header(getXAuthTokenHeaderForUser(admin)).
+                param("limit", 1).
+                param("after", token.getId() - 1).
+            when().
+                get(TRANSFER_ENDPOINT).
+            then().
+                statusCode(HttpStatus.SC_OK).
+                body("items.token", contains(token.getToken())).
+                body("nextCursor", equalTo(token.getId().intValue())).
+            extract().path("nextCursor");
+
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            param("limit", 1).
+            param("after", cursor).
+        when().
+            get(TRANSFER_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("items.token", contains(token2.getToken()));
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetTransferTicketsPageAsUser() {
+        User user = createUser();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+            param("limit", 10).
+        when().
+            get(TRANSFER_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+
+    @Test
+    public void testStreamTransferTicketsAsAdmin() {
+        User user = createUser();
+        TicketTransferToken token = tttRepository.save(new TicketTransferToken(user, createTicketForUser(user)));
+        User admin = createAdmin();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            accept("application/x-ndjson").
+        when().
+            get(TRANSFER_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            contentType(startsWith("application/x-ndjson")).
+            body(containsString("\"token\":\"" + token.getToken() + "\""));
+        //@formatter:on
+    }
 }
@@ -18,7 +18,13 @@
 package ch.wisv.areafiftylan.integration;
 
 import ch.wisv.areafiftylan.products.model.Ticket;
+import ch.wisv.areafiftylan.products.model.order.Order;
+import ch.wisv.areafiftylan.products.service.repository.OrderRepository;
+import ch.wisv.areafiftylan.seats.model.Seat;
+import ch.wisv.areafiftylan.seats.service.SeatRepository;
+import ch.wisv.areafiftylan.seats.service.SeatService;
 import ch.wisv.areafiftylan.security.token.repository.VerificationTokenRepository;
+import ch.wisv.areafiftylan.teams.model.Team;
 import ch.wisv.areafiftylan.users.model.Role;
 import ch.wisv.areafiftylan.users.model.RoleDTO;
 import ch.wisv.areafiftylan.users.model.User;
@@ -29,6 +35,7 @@
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.time.LocalDate;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -39,11 +46,22 @@
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.*;
 
+// One statement for each of the 7 parts of My Area, and one to authenticate when the token isn't cached
+@QueryBudget(method = "GET", path = "/users/current/overview", max = 7 + 1)
 public class UserRestIntegrationTest extends XAuthIntegrationTest {
 
     @Autowired
     private VerificationTokenRepository verificationTokenRepository;
 
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private SeatRepository seatRepository;
+
+    @Autowired
+    private SeatService seatService;
+
     static Map<String, String> getProfileDTO() {
         Map<String, String> profileDTO = new HashMap<>();
         profileDTO.put("birthday", "2000-01-02");
@@ -102,6 +120,87 @@ public void testGetAllUsersAsAdmin() {
         //@formatter:on
     }
 
+    @Test
+    public void testGetUsersPageAsAdmin() {
+        User user = createUser();
+        createUser();
+        User admin = createAdmin();
+
+        //@formatter:off
+        Integer cursor =
+            given().
+                header(getXAuthTokenHeaderForUser(admin)).
+            when().
+                get("/users?limit=1&after=" + (user.getId() - 1)).
+            then().
+                statusCode(HttpStatus.SC_OK).
+                body("items", hasSize(1)).
+                body("items[0].email", equalTo(user.getEmail())).
+                body("nextCursor", equalTo(user.getId().intValue())).
+            extract().path("nextCursor");
+
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+        when().
+            get("/users?limit=500&after=" + cursor).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("items.email", not(hasItem(user.getEmail()))).
+            body("items.email", hasItem(admin.getEmail())).
+            body("nextCursor", nullValue());
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetUsersPageFilteredByEmailAsAdmin() {
+        User user = createUser();
+        User admin = createAdmin();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+        when().
+            get("/users?limit=10&email=" + user.getEmail().toUpperCase()).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("items.email", hasItem(user.getEmail())).
+            body("items.email", everyItem(containsString(user.getEmail())));
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetUsersPageAsUser() {
+        User user = createUser();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+        when().
+            get("/users?limit=10").
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+
+    @Test
+    public void testStreamUsersAsAdmin() {
+        User user = createUser();
+        User admin = createAdmin();
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(admin)).
+            accept("application/x-ndjson").
+        when().
+            get("/users").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            contentType(startsWith("application/x-ndjson")).
+            body(containsString("\"email\":\"" + user.getEmail() + "\"")).
+            body(containsString("\"email\":\"" + admin.getEmail() + "\""));
+        //@formatter:on
+    }
+
     @Test
     public void testGetCurrentUserAsAnonymous() {
         //@formatter:off
@@ -159,6 +258,116 @@ public void testGetCurrentUserAsAdmin() {
         //@formatter:on
     }
 
+    @Test
+    public void testGetMyAreaAsAnonymous() {
+        //@formatter:off
+        when().
+            get("/users/current/overview").
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetMyArea() {
+        User user = createUser();
+        Ticket ticket = createTicketForUser(user);
+        Team team = createTeamWithCaptain(user);
+
+        //@formatter:off
+        given().
+            header(getXAuthTokenHeaderForUser(user)).
+        when().
+            get("/users/current/overview").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            header("ETag", notNullValue()).
+            body("user.email", equalTo(user.getEmail())).
+            body("tickets.id", contains(ticket.getId().intValue())).
+            body("orders", empty()).
+            body("openOrders", empty()).
+            body("teams.teamName", contains(team.getTeamName())).
+            body("teams[0].captain.profile", not(hasKey("address"))).
+            body("teamInvites", empty()).
+            body("seats", empty()).
+            body("transferTokens", empty());
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetMyAreaWithTeamSeatAndOrder() {
+        // With a query per row in any of the parts, this goes over the QueryBudget of the endpoint
+        User user = createUser();
+        Team team = createTeamWithCaptain(user);
+        addMemberToTeam(team, createUser());
+        addMemberToTeam(team, createUser());
+
+        Ticket seatedTicket = createTicketForUser(user);
+        Seat seat = seatRepository.findBySeatGroupAndSeatNumber("A", 5).orElseThrow();
+        seat.setTicket(seatedTicket);
+        seatRepository.save(seat);
+
+        Order order = new Order(user);
+        order.addTicket(createTicket(user, Collections.singletonList(PICKUP_SERVICE)));
+        orderRepository.save(order);
+
+        try {
+            //@formatter:off
+            given().
+                header(getXAuthTokenHeaderForUser(user)).
+            when().
+                get("/users/current/overview").
+            then().
+                statusCode(HttpStatus.SC_OK).
+                body("user.email", equalTo(user.getEmail())).
+                body("tickets", hasSize(2)).
+                body("orders", hasSize(1)).
+                body("orders[0].tickets[0].enabledOptions.name", contains(PICKUP_SERVICE)).
+                body("openOrders", hasSize(1)).
+                body("teams[0].members", hasSize(3)).
+                body("seats.ticket.id", contains(seatedTicket.getId().intValue()));
+            //@formatter:on
+        } finally {
+            seatService.clearSeat("A", 5);
+        }
+    }
+
+    @Test
+    public void testGetMyAreaNotModified() {
+        User user = createUser();
+        Header header = getXAuthTokenHeaderForUser(user);
+
+        //@formatter:off
+        String eTag =
+            given().
+                header(header).
+            when().
+                get("/users/current/overview").
+            then().
+                statusCode(HttpStatus.SC_OK).
+            extract().header("ETag");
+
+        given().
+            header(header).
+            header("If-None-Match", eTag).
+        when().
+            get("/users/current/overview").
+        then().
+            statusCode(HttpStatus.SC_NOT_MODIFIED);
+
+        createTicketForUser(user);
+
+        given().
+            header(header).
+            header("If-None-Match", eTag).
+        when().
+            get("/users/current/overview").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("tickets", hasSize(1));
+        //@formatter:on
+    }
+
     @Test
     public void testGetOtherUserAsAnonymous() {
         //@formatter:off
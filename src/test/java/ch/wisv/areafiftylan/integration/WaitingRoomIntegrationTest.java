@@ -0,0 +1,241 @@
+package ch.wisv.areafiftylan.integration;
+
+import ch.wisv.areafiftylan.security.waitingroom.WaitingRoomService;
+import io.restassured.http.ContentType;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static ch.wisv.areafiftylan.security.waitingroom.WaitingRoomService.QUEUE_TOKEN_HEADER;
+import static io.restassured.RestAssured.given;
+import static io.restassured.RestAssured.when;
+import static org.hamcrest.Matchers.*;
+
+// This context has its own database, so it doesn't recreate the tables under the other integration tests. The
+// CacheManager is shared by all contexts, so it doesn't use the second-level cache either.
+@TestPropertySource(properties = { "a5l.waitingroom.enabled=true", "a5l.waitingroom.admissionsPerSecond=1",
+        "spring.datasource.url=jdbc:hsqldb:mem:a5l-waitingroom",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false" })
+public class WaitingRoomIntegrationTest extends XAuthIntegrationTest {
+
+    private final String ORDER_ENDPOINT = "/orders/";
+    private final String WAITINGROOM_ENDPOINT = "/waitingroom";
+
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    private Map<String, Object> getOrderDTO() {
+        Map<String, Object> orderDTO = new HashMap<>();
+        orderDTO.put("type", TEST_TICKET);
+        orderDTO.put("options", Arrays.asList(CH_MEMBER, PICKUP_SERVICE));
+        return orderDTO;
+    }
+
+    private String joinAndAdmit() {
+        String token = waitingRoomService.join();
+        while (!waitingRoomService.getPosition(token).orElseThrow().isAdmitted()) {
+            waitingRoomService.admitNext();
+        }
+        return token;
+    }
+
+    private long createOrder(String token) {
+        //@formatter:off
+        String location =
+            given().
+                header(QUEUE_TOKEN_HEADER, token).
+            when().
+                body(getOrderDTO()).contentType(ContentType.JSON).
+                post(ORDER_ENDPOINT).
+            then().
+                statusCode(HttpStatus.SC_CREATED).
+            extract().header(HttpHeaders.LOCATION);
+        //@formatter:on
+
+        return Long.parseLong(location.substring(location.lastIndexOf('/') + 1));
+    }
+
+    @Test
+    public void testJoinWaitingRoom() {
+        //@formatter:off
+        when().
+            post(WAITINGROOM_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_CREATED).
+            header(QUEUE_TOKEN_HEADER, startsWith("q1.")).
+            body("object.position", notNullValue());
+        //@formatter:on
+    }
+
+    @Test
+    public void testGetQueuePosition() {
+        String token = joinAndAdmit();
+
+        //@formatter:off
+        given().
+            header(QUEUE_TOKEN_HEADER, token).
+        when().
+            get(WAITINGROOM_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("admitted", is(true));
+        //@formatter:on
+    }
+
+    @Test
+    public void testCreateOrderWithoutQueueToken() {
+        //@formatter:off
+        given().
+        when().
+            body(getOrderDTO()).contentType(ContentType.JSON).
+            post(ORDER_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+
+    @Test
+    public void testCreateOrderWithInvalidQueueToken() {
+        //@formatter:off
+        given().
+            header(QUEUE_TOKEN_HEADER, "q1.forged.token").
+        when().
+            body(getOrderDTO()).contentType(ContentType.JSON).
+            post(ORDER_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+
+    @Test
+    public void testCreateOrderBeforeAdmission() {
+        // Only one position is admitted per second, so the last of these has to wait
+        String token = null;
+        for (int i = 0; i < 10; i++) {
+            token = waitingRoomService.join();
+        }
+
+        //@formatter:off
+        given().
+            header(QUEUE_TOKEN_HEADER, token).
+        when().
+            body(getOrderDTO()).contentType(ContentType.JSON).
+            post(ORDER_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_TOO_MANY_REQUESTS).
+            header(HttpHeaders.RETRY_AFTER, not(emptyOrNullString()));
+        //@formatter:on
+    }
+
+    @Test
+    public void testCreateOrderAfterAdmission() {
+        String token = joinAndAdmit();
+
+        createOrder(token);
+    }
+
+    @Test
+    public void testQueueTokenCreatesSingleOrder() {
+        String token = joinAndAdmit();
+        createOrder(token);
+
+        //@formatter:off
+        given().
+            header(QUEUE_TOKEN_HEADER, token).
+        when().
+            body(getOrderDTO()).contentType(ContentType.JSON).
+            post(ORDER_ENDPOINT).
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+
+    @Test
+    public void testCreateOrderRetriedWithIdempotencyKey() {
+        String token = joinAndAdmit();
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            //@formatter:off
+            given().
+                header(QUEUE_TOKEN_HEADER, token).
+                header("Idempotency-Key", "waiting-room-order").
+            when().
+                body(getOrderDTO()).contentType(ContentType.JSON).
+                post(ORDER_ENDPOINT).
+            then().
+                statusCode(HttpStatus.SC_CREATED).
+                header("Idempotent-Replayed", attempt == 0 ? nullValue() : equalTo("true"));
+            //@formatter:on
+        }
+    }
+
+    @Test
+    public void testAddTicketWithQueueTokenOfOrder() {
+        String token = joinAndAdmit();
+        long orderId = createOrder(token);
+
+        //@formatter:off
+        given().
+            header(QUEUE_TOKEN_HEADER, token).
+        when().
+            body(getOrderDTO()).contentType(ContentType.JSON).
+            post(ORDER_ENDPOINT + orderId).
+        then().
+            statusCode(HttpStatus.SC_OK).
+            body("object.tickets", hasSize(2));
+        //@formatter:on
+    }
+
+    @Test
+    public void testAddTicketWithoutQueueToken() {
+        long orderId = createOrder(joinAndAdmit());
+
+        //@formatter:off
+        given().
+        when().
+            body(getOrderDTO()).contentType(ContentType.JSON).
+            post(ORDER_ENDPOINT + orderId).
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+
+    @Test
+    public void testAddTicketWithQueueTokenOfOtherOrder() {
+        long orderId = createOrder(joinAndAdmit());
+        String otherToken = joinAndAdmit();
+        createOrder(otherToken);
+
+        //@formatter:off
+        given().
+            header(QUEUE_TOKEN_HEADER, otherToken).
+        when().
+            body(getOrderDTO()).contentType(ContentType.JSON).
+            post(ORDER_ENDPOINT + orderId).
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+
+    @Test
+    public void testAddTicketWithUnusedQueueToken() {
+        long orderId = createOrder(joinAndAdmit());
+
+        //@formatter:off
+        given().
+            header(QUEUE_TOKEN_HEADER, joinAndAdmit()).
+        when().
+            body(getOrderDTO()).contentType(ContentType.JSON).
+            post(ORDER_ENDPOINT + orderId).
+        then().
+            statusCode(HttpStatus.SC_FORBIDDEN);
+        //@formatter:on
+    }
+}
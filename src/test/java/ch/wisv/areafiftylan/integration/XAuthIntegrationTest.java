@@ -53,7 +53,9 @@
 import java.util.List;
 
 @ExtendWith(SpringExtension.class)
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+                "ch.wisv.areafiftylan.integration.QueryCounter")
 @ContextConfiguration(classes = ApplicationTest.class)
 @ActiveProfiles("test")
 public abstract class XAuthIntegrationTest {
@@ -91,6 +93,7 @@ public void setXAuthIntegrationTest() {
         RestAssured.port = port;
         RestAssured.config().redirect(RedirectConfig.redirectConfig().followRedirects(false));
         RestAssured.enableLoggingOfRequestAndResponseIfValidationFails();
+        RestAssured.replaceFiltersWith(new QueryBudgetFilter(getClass()));
     }
 
     protected User createUser() {
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.load;
+
+import ch.wisv.areafiftylan.exception.PaymentServiceConnectionException;
+import ch.wisv.areafiftylan.products.model.order.Order;
+import ch.wisv.areafiftylan.products.model.order.OrderStatus;
+import ch.wisv.areafiftylan.products.service.PaymentService;
+import ch.wisv.areafiftylan.products.service.repository.OrderRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.internet.MimeMessage;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replaces the payment provider and the mail server of the application with stand-ins that run in memory, so the load
+ * test only measures the application itself.
+ */
+@TestConfiguration
+public class LoadTestConfiguration {
+
+    @Bean
+    public InMemoryMailSender mailService() {
+        return new InMemoryMailSender();
+    }
+
+    @Bean
+    @Primary
+    public StubPaymentService paymentService(OrderRepository orderRepository,
+                                             @Value("${a5l.load.payment.latencyMillis:100}") long latencyMillis,
+                                             @Value("${a5l.load.payment.errorRate:0.0}") double errorRate) {
+        return new StubPaymentService(orderRepository, latencyMillis, errorRate);
+    }
+
+    /**
+     * JavaMailSender that counts the messages instead of sending them.
+     */
+    public static class InMemoryMailSender extends JavaMailSenderImpl {
+
+        private final AtomicInteger sent = new AtomicInteger();
+
+        @Override
+        protected void doSend(MimeMessage[] mimeMessages, Object[] originalMessages) {
+            sent.addAndGet(mimeMessages.length);
+        }
+
+        public int getSent() {
+            return sent.get();
+        }
+    }
+
+    /**
+     * PaymentService that behaves like Mollie: registering an Order makes it PENDING, and the status update that
+     * follows the webhook makes it PAID. Every call waits for the configured latency, and fails with the configured
+     * error rate like a connection problem with Mollie would.
+     */
+    public static class StubPaymentService implements PaymentService {
+
+        private static final String PAYMENT_URL = "https://payments.invalid/";
+
+        private final OrderRepository orderRepository;
+        private final long latencyMillis;
+        private final double errorRate;
+
+        StubPaymentService(OrderRepository orderRepository, long latencyMillis, double errorRate) {
+            this.orderRepository = orderRepository;
+            this.latencyMillis = latencyMillis;
+            this.errorRate = errorRate;
+        }
+
+        @Override
+        public String registerOrder(Order order) {
+            callProvider();
+
+            order.setReference("tr_" + order.getId());
+            order.setStatus(OrderStatus.PENDING);
+            orderRepository.saveAndFlush(order);
+
+            return PAYMENT_URL + order.getReference();
+        }
+
+        @Override
+        public Optional<OrderStatus> getStatus(String orderReference) {
+            callProvider();
+            return Optional.of(OrderStatus.PAID);
+        }
+
+        @Override
+        public String getPaymentUrl(String orderReference) {
+            callProvider();
+            return PAYMENT_URL + orderReference;
+        }
+
+        private void callProvider() {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                throw new PaymentServiceConnectionException("Stub payment provider error");
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2018  W.I.S.V. 'Christiaan Huygens'
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.wisv.areafiftylan.load;
+
+import ch.wisv.areafiftylan.integration.QueryCounter;
+import ch.wisv.areafiftylan.load.LoadTestConfiguration.InMemoryMailSender;
+import ch.wisv.areafiftylan.products.model.Ticket;
+import ch.wisv.areafiftylan.products.model.TicketType;
+import ch.wisv.areafiftylan.products.model.order.OrderStatus;
+import ch.wisv.areafiftylan.products.service.TicketService;
+import ch.wisv.areafiftylan.products.service.repository.OrderRepository;
+import ch.wisv.areafiftylan.products.service.repository.TicketRepository;
+import ch.wisv.areafiftylan.security.authentication.AuthenticationService;
+import ch.wisv.areafiftylan.users.model.Role;
+import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.users.service.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Simulates the ticket launch: every virtual user creates an Order at the same moment, assigns it, checks out and
+ * pays through the payment provider webhook. The test fails when more Tickets are sold than available.
+ * <p>
+ * This test is excluded from the normal build. Run it with ./gradlew loadTest, and tune it with system properties:
+ * a5l.load.users, a5l.load.concurrency, a5l.load.tickets, a5l.load.payment.latencyMillis and
+ * a5l.load.payment.errorRate. It runs against HSQLDB, unless the spring.datasource and spring.jpa properties point it
+ * to PostgreSQL, for example -Dspring.datasource.url=jdbc:postgresql://localhost/loadtest
+ * -Dspring.datasource.driver-class-name=org.postgresql.Driver -Dspring.jpa.database=postgresql
+ * -Dspring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect
+ */
+@Tag("load")
+@Slf4j
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+                "ch.wisv.areafiftylan.integration.QueryCounter",
+        "a5l.ticketLimit=1000000",
+        // All virtual users connect from localhost, so only limit them per user
+        "a5l.ratelimit.order-creation.ip=0" })
+@ContextConfiguration(classes = LoadTestConfiguration.class)
+@ActiveProfiles("test")
+public class TicketLaunchLoadTest {
+
+    private static final String TICKET_TYPE = "launch";
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Value("${a5l.load.users:500}")
+    private int users;
+
+    @Value("${a5l.load.concurrency:50}")
+    private int concurrency;
+
+    @Value("${a5l.load.tickets:400}")
+    private int tickets;
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private AuthenticationService authenticationService;
+    @Autowired
+    private TicketService ticketService;
+    @Autowired
+    private TicketRepository ticketRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private InMemoryMailSender mailSender;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private final Map<String, Queue<Long>> latencies = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> errors = new ConcurrentHashMap<>();
+    private final AtomicInteger purchased = new AtomicInteger();
+    private final AtomicInteger soldOut = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    @Test
+    public void ticketLaunch() throws InterruptedException {
+        TicketType type = ticketService.addTicketType(
+                new TicketType(TICKET_TYPE, "Ticket launch", 42.5F, tickets, LocalDateTime.now().plusDays(1), true));
+
+        List<String> authTokens = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            User user = new User("launch" + i + "@mail.com", "passwordHash");
+            user.addRole(Role.ROLE_USER);
+            userRepository.save(user);
+            authTokens.add(authenticationService.createNewAuthToken(user.getEmail()));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        CountDownLatch launch = new CountDownLatch(1);
+        authTokens.forEach(authToken -> executor.execute(() -> {
+            try {
+                launch.await();
+                purchaseTicket(authToken);
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                log.warn("Purchase failed", e);
+            }
+        }));
+
+        QueryCounter.start();
+        long start = System.nanoTime();
+        launch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.MINUTES), "Load test did not finish in time");
+        long duration = System.nanoTime() - start;
+        int statements = QueryCounter.stop().size();
+
+        long sold = ticketRepository.countByType(type);
+        long paid = ticketRepository.findAll().stream()
+                .filter(ticket -> ticket.getType().getName().equals(TICKET_TYPE))
+                .filter(Ticket::isValid)
+                .count();
+        long paidOrders = orderRepository.findDistinctByOrderByIdAsc().stream()
+                .filter(order -> order.getStatus() == OrderStatus.PAID)
+                .count();
+
+        log.info(createReport(duration, statements, sold, paid));
+
+        assertEquals(users, purchased.get() + soldOut.get() + failed.get());
+        assertTrue(sold <= tickets, "Oversold: " + sold + " tickets reserved, " + tickets + " available");
+        assertTrue(paid <= tickets, "Oversold: " + paid + " tickets paid, " + tickets + " available");
+        assertEquals(purchased.get(), paidOrders, "Every completed purchase should have a paid Order");
+    }
+
+    /**
+     * The purchase funnel of one virtual user, as the frontend does it.
+     */
+    private void purchaseTicket(String authToken) throws Exception {
+        HttpResponse<String> created = send("POST /orders", authToken, "/orders",
+                "{\"type\":\"" + TICKET_TYPE + "\",\"options\":[]}");
+        if (created.statusCode() == 410) {
+            soldOut.incrementAndGet();
+            return;
+        }
+        if (created.statusCode() != 201) {
+            failed.incrementAndGet();
+            return;
+        }
+        String orderId = getLastPathSegment(created);
+
+        HttpResponse<String> assigned =
+                send("POST /orders/{id}/assign", authToken, "/orders/" + orderId + "/assign", "");
+        if (assigned.statusCode() != 200) {
+            failed.incrementAndGet();
+            return;
+        }
+
+        HttpResponse<String> checkedOut =
+                send("POST /orders/{id}/checkout", authToken, "/orders/" + orderId + "/checkout", "");
+        if (checkedOut.statusCode() != 200) {
+            failed.incrementAndGet();
+            return;
+        }
+        String reference = getLastPathSegment(checkedOut);
+
+        // The payment provider calls the webhook without authentication
+        HttpResponse<String> webhook = send("POST /orders/status", null, "/orders/status?id=" + reference, "");
+        if (webhook.statusCode() != 200) {
+            failed.incrementAndGet();
+            return;
+        }
+        purchased.incrementAndGet();
+    }
+
+    private HttpResponse<String> send(String step, String authToken, String path, String json) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json));
+        if (authToken != null) {
+            request.header("X-Auth-Token", authToken);
+        }
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        latencies.computeIfAbsent(step, s -> new ConcurrentLinkedQueue<>()).add(System.nanoTime() - start);
+        if (response.statusCode() >= 400 && response.statusCode() != 410) {
+            errors.computeIfAbsent(step, s -> new AtomicInteger()).incrementAndGet();
+        }
+
+        return response;
+    }
+
+    private static String getLastPathSegment(HttpResponse<String> response) {
+        String location = response.headers().firstValue("Location").orElseThrow();
+        return location.substring(location.lastIndexOf('/') + 1);
+    }
+
+    private String createReport(long duration, int statements, long sold, long paid) {
+        double seconds = duration / 1e9;
+        StringBuilder report = new StringBuilder("\n");
+        report.append(String.format("Ticket launch: %d users, %d concurrent, %d tickets, %.1f s%n", users, concurrency,
+                tickets, seconds));
+        report.append(String.format("Purchases: %d completed (%.1f/s), %d sold out, %d failed%n", purchased.get(),
+                purchased.get() / seconds, soldOut.get(), failed.get()));
+        report.append(String.format("Tickets: %d reserved, %d paid%n", sold, paid));
+        report.append(String.format("Statements: %d (%.1f per user)%n", statements, (double) statements / users));
+        report.append(String.format("Mails sent: %d%n", mailSender.getSent()));
+
+        report.append(String.format("%-28s %8s %8s %10s %10s %10s%n", "Step", "Requests", "Errors", "Req/s",
+                "p50 ms", "p99 ms"));
+        new TreeMap<>(latencies).forEach((step, stepLatencies) -> {
+            List<Long> sorted = new ArrayList<>(stepLatencies);
+            Collections.sort(sorted);
+            AtomicInteger stepErrors = errors.getOrDefault(step, new AtomicInteger());
+            report.append(String.format("%-28s %8d %8d %10.1f %10.1f %10.1f%n", step, sorted.size(), stepErrors.get(),
+                    sorted.size() / seconds, percentile(sorted, 50) / 1e6, percentile(sorted, 99) / 1e6));
+        });
+
+        return report.toString();
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0));
+    }
+}
@@ -0,0 +1,62 @@
+package ch.wisv.areafiftylan.unit;
+
+import ch.wisv.areafiftylan.exception.PasswordEncoderSaturatedException;
+import ch.wisv.areafiftylan.security.BoundedPasswordEncoder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BoundedPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BoundedPasswordEncoder passwordEncoder = new BoundedPasswordEncoder(meterRegistry, 1, 1);
+
+    @AfterEach
+    public void shutdown() {
+        passwordEncoder.shutdown();
+    }
+
+    @Test
+    public void encodeAndMatch() {
+        String hash = passwordEncoder.encode("password");
+
+        assertTrue(passwordEncoder.matches("password", hash));
+        assertFalse(passwordEncoder.matches("wrongPassword", hash));
+        assertEquals(1, meterRegistry.get("a5l.password.hash").tag("operation", "encode").timer().count());
+        assertEquals(2, meterRegistry.get("a5l.password.hash").tag("operation", "matches").timer().count());
+    }
+
+    @Test
+    public void rejectWhenSaturated() throws InterruptedException {
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(callers.submit(() -> passwordEncoder.encode("password")));
+        }
+
+        int rejected = 0;
+        for (Future<String> result : results) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof PasswordEncoderSaturatedException);
+                rejected++;
+            }
+        }
+        callers.shutdown();
+
+        assertTrue(rejected > 0);
+        assertEquals(rejected, meterRegistry.get("a5l.password.rejected").counter().count());
+    }
+}
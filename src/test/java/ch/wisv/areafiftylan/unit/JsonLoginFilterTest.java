@@ -0,0 +1,97 @@
+package ch.wisv.areafiftylan.unit;
+
+import ch.wisv.areafiftylan.security.BoundedPasswordEncoder;
+import ch.wisv.areafiftylan.security.JsonLoginAuthenticationAttemptHandler;
+import ch.wisv.areafiftylan.security.JsonLoginFilter;
+import ch.wisv.areafiftylan.security.ratelimit.RateLimitService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.Authentication;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JsonLoginFilterTest {
+
+    private static final int USERS = 20;
+    private static final int ATTEMPTS_PER_USER = 25;
+
+    private JsonLoginAuthenticationAttemptHandler attemptHandler;
+    private JsonLoginFilter jsonLoginFilter;
+
+    @BeforeEach
+    public void setup() {
+        AuthenticationManager authenticationManager = mock(AuthenticationManager.class);
+        when(authenticationManager.authenticate(any(Authentication.class))).thenAnswer(invocation -> {
+            // Give other logins the chance to interleave with this one
+            Thread.yield();
+            throw new BadCredentialsException("Bad credentials");
+        });
+
+        BoundedPasswordEncoder passwordEncoder = mock(BoundedPasswordEncoder.class);
+        RateLimitService rateLimitService = mock(RateLimitService.class);
+        when(rateLimitService.getClientIP(any())).thenReturn("127.0.0.1");
+        when(rateLimitService.tryAcquire(any(), any(), anyString())).thenReturn(true);
+
+        attemptHandler = mock(JsonLoginAuthenticationAttemptHandler.class);
+        jsonLoginFilter = new JsonLoginFilter(authenticationManager, attemptHandler, passwordEncoder, rateLimitService);
+    }
+
+    @Test
+    public void failedLoginsAttributedToTheirOwnEmail() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> statuses = new ArrayList<>();
+
+        for (int attempt = 0; attempt < ATTEMPTS_PER_USER; attempt++) {
+            for (int user = 0; user < USERS; user++) {
+                String email = user + "@mail.com";
+                statuses.add(executor.submit(() -> {
+                    start.await();
+                    MockHttpServletResponse response = new MockHttpServletResponse();
+                    jsonLoginFilter.doFilter(loginRequest(email, "wrongPassword"), response, new MockFilterChain());
+                    return response.getStatus();
+                }));
+            }
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        for (Future<Integer> status : statuses) {
+            assertEquals(401, status.get());
+        }
+        for (int user = 0; user < USERS; user++) {
+            verify(attemptHandler, times(ATTEMPTS_PER_USER)).onAuthenticationFailure(user + "@mail.com");
+        }
+    }
+
+    private static MockHttpServletRequest loginRequest(String email, String password) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+        request.setServletPath("/login");
+        request.setContentType("application/json");
+        request.setContent(("{\"email\":\"" + email + "\",\"password\":\"" + password + "\"}")
+                .getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
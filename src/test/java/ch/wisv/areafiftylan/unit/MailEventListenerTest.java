@@ -0,0 +1,82 @@
+package ch.wisv.areafiftylan.unit;
+
+import ch.wisv.areafiftylan.products.model.order.Order;
+import ch.wisv.areafiftylan.products.service.OrderPaidEvent;
+import ch.wisv.areafiftylan.seats.model.Seat;
+import ch.wisv.areafiftylan.seats.service.SeatReservedEvent;
+import ch.wisv.areafiftylan.utils.mail.MailEventListener;
+import ch.wisv.areafiftylan.utils.mail.MailService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+public class MailEventListenerTest {
+
+    private final MailService mailService = mock(MailService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private MailEventListener mailEventListener;
+
+    @AfterEach
+    public void tearDown() {
+        mailEventListener.shutdown();
+    }
+
+    @Test
+    public void orderPaidSendsConfirmation() {
+        mailEventListener = new MailEventListener(mailService, meterRegistry, 2, 10);
+        Order order = new Order();
+
+        mailEventListener.orderPaid(new OrderPaidEvent(order));
+
+        verify(mailService, timeout(1000)).sendOrderConfirmation(order);
+    }
+
+    @Test
+    public void seatReservedOnFreeSeatSendsNoMail() {
+        mailEventListener = new MailEventListener(mailService, meterRegistry, 2, 10);
+
+        mailEventListener.seatReserved(new SeatReservedEvent(new Seat("A", 1), null));
+        mailEventListener.shutdown();
+
+        verifyNoInteractions(mailService);
+    }
+
+    @Test
+    public void fullQueueSendsOnPublishingThread() {
+        mailEventListener = new MailEventListener(mailService, meterRegistry, 1, 1);
+        CountDownLatch mailServerDown = new CountDownLatch(1);
+        List<String> sendingThreads = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            sendingThreads.add(Thread.currentThread().getName());
+            if (Thread.currentThread().getName().startsWith("mail-events-")) {
+                mailServerDown.await();
+            }
+            return null;
+        }).when(mailService).sendOrderConfirmation(any(Order.class));
+
+        // The first mail blocks the only thread, the second one waits in the queue
+        mailEventListener.orderPaid(new OrderPaidEvent(new Order()));
+        mailEventListener.orderPaid(new OrderPaidEvent(new Order()));
+        mailEventListener.orderPaid(new OrderPaidEvent(new Order()));
+
+        assertEquals(1, meterRegistry.counter("a5l.events.callerRuns", "subscriber", "mail").count());
+        assertTrue(sendingThreads.contains(Thread.currentThread().getName()));
+
+        mailServerDown.countDown();
+        verify(mailService, timeout(1000).times(3)).sendOrderConfirmation(any(Order.class));
+    }
+}
@@ -22,20 +22,24 @@
 import ch.wisv.areafiftylan.products.model.TicketType;
 import ch.wisv.areafiftylan.products.model.order.Order;
 import ch.wisv.areafiftylan.products.model.order.OrderStatus;
+import ch.wisv.areafiftylan.products.service.OrderPaidEvent;
 import ch.wisv.areafiftylan.products.service.TicketService;
 import ch.wisv.areafiftylan.users.model.User;
-import ch.wisv.areafiftylan.utils.mail.MailService;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.time.LocalDateTime;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -43,13 +47,14 @@
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.*;
 
+@RecordApplicationEvents
 public class OrderServiceTest extends ServiceTest {
 
     @Autowired
     private TicketService ticketService;
 
     @Autowired
-    private MailService mailService;
+    private ApplicationEvents applicationEvents;
 
     @Value("${a5l.paymentReturnUrl}")
     private String RETURN_URL;
@@ -574,11 +579,11 @@ public void updateOrdersStatusById() {
         order.setUser(persistUser());
         order.setReference("updateOrderStatusById");
         order = testEntityManager.persist(order);
-        given(paymentService.updateStatus(Mockito.anyString())).willReturn(order);
+        given(paymentService.getStatus(Mockito.anyString())).willReturn(Optional.of(order.getStatus()));
 
         orderService.updateOrderStatusByOrderId(order.getId());
 
-        verify(paymentService, times(1)).updateStatus(Mockito.anyString());
+        verify(paymentService, times(1)).getStatus(Mockito.anyString());
 
         reset(paymentService);
     }
@@ -599,11 +604,11 @@ public void updateOrderStatusByReference() {
         order.setUser(persistUser());
         order.setReference("updateOrderStatusByReference");
         order = testEntityManager.persist(order);
-        given(paymentService.updateStatus(Mockito.anyString())).willReturn(order);
+        given(paymentService.getStatus(Mockito.anyString())).willReturn(Optional.of(order.getStatus()));
 
         orderService.updateOrderStatusByReference("updateOrderStatusByReference");
 
-        verify(paymentService, times(1)).updateStatus(Mockito.anyString());
+        verify(paymentService, times(1)).getStatus(Mockito.anyString());
 
         reset(paymentService);
     }
@@ -619,7 +624,7 @@ public void updateOrderStatusByReferenceOrderStatusPaid() {
         order.setReference("updateOrderStatusByReferenceOrderStatusPaid");
 
         order = testEntityManager.persist(order);
-        given(paymentService.updateStatus(Mockito.anyString())).willReturn(order);
+        given(paymentService.getStatus(Mockito.anyString())).willReturn(Optional.of(order.getStatus()));
 
         orderService.updateOrderStatusByReference("updateOrderStatusByReferenceOrderStatusPaid");
 
@@ -639,7 +644,7 @@ public void updateOrderStatusByReferenceOrderStatusAssigned() {
         order.setUser(user);
         order.setReference("updateOrderStatusByReferenceOrderStatusAssigned");
         order = testEntityManager.persist(order);
-        given(paymentService.updateStatus(Mockito.anyString())).willReturn(order);
+        given(paymentService.getStatus(Mockito.anyString())).willReturn(Optional.of(order.getStatus()));
 
         orderService.updateOrderStatusByReference("updateOrderStatusByReferenceOrderStatusAssigned");
 
@@ -655,7 +660,7 @@ public void updateOrderStatusByReferenceOrderStatusAnonymous() {
         order.addTicket(persistTicket());
         order.setReference("updateOrderStatusByReferenceOrderStatusAnonymous");
         order = testEntityManager.persist(order);
-        given(paymentService.updateStatus(Mockito.anyString())).willReturn(order);
+        given(paymentService.getStatus(Mockito.anyString())).willReturn(Optional.of(order.getStatus()));
 
         assertThrows(UnassignedOrderException.class, () -> orderService.updateOrderStatusByReference("updateOrderStatusByReferenceOrderStatusAnonymous"));
 
@@ -677,7 +682,7 @@ public void updateOrderStatusByReferenceOrderStatusPending() {
         order.setStatus(OrderStatus.PENDING);
         order.setReference("updateOrderStatusByReferenceOrderStatusPending");
         order = testEntityManager.persist(order);
-        given(paymentService.updateStatus(Mockito.anyString())).willReturn(order);
+        given(paymentService.getStatus(Mockito.anyString())).willReturn(Optional.of(order.getStatus()));
 
         orderService.updateOrderStatusByReference("updateOrderStatusByReferenceOrderStatusPending");
 
@@ -694,7 +699,7 @@ public void updateOrderStatusByReferenceUnassignedOrder() {
         order.addTicket(persistTicket());
         order.setReference("updateOrderStatusByReferenceUnassignedOrder");
         order = testEntityManager.persist(order);
-        given(paymentService.updateStatus(Mockito.anyString())).willReturn(order);
+        given(paymentService.getStatus(Mockito.anyString())).willReturn(Optional.of(order.getStatus()));
 
         assertThrows(UnassignedOrderException.class, () -> orderService.updateOrderStatusByReference("updateOrderStatusByReferenceUnassignedOrder"));
 
@@ -708,14 +713,71 @@ public void updateOrderStatusToPaid() {
         User user = persistUser();
         Order order = new Order(user);
         order.setReference("updateOrderStatusToPaid");
-        order = testEntityManager.persist(order);
-        Order paidOrder = new Order(user);
-        paidOrder.setStatus(OrderStatus.PAID);
-        given(paymentService.updateStatus(anyString())).willReturn(paidOrder);
+        testEntityManager.persist(order);
+        given(paymentService.getStatus(anyString())).willReturn(Optional.of(OrderStatus.PAID));
 
         orderService.updateOrderStatusByReference("updateOrderStatusToPaid");
 
-        verify(mailService, times(1)).sendOrderConfirmation(any(Order.class));
+        assertEquals(1, applicationEvents.stream(OrderPaidEvent.class).count());
+
+        reset(paymentService);
+    }
+
+    @Test
+    public void updateOrderStatusRacingPaymentReconciler() {
+        User user = persistUser();
+        Order order = new Order(user);
+        order.setStatus(OrderStatus.PENDING);
+        order.setReference("updateOrderStatusRacingPaymentReconciler");
+        testEntityManager.persist(order);
+        Map<String, OrderStatus> statuses =
+                Collections.singletonMap("updateOrderStatusRacingPaymentReconciler", OrderStatus.PAID);
+        // The PaymentReconciler applies the status while the webhook waits for the payment provider
+        given(paymentService.getStatus(anyString())).willAnswer(invocation -> {
+            orderService.applyPaymentStatuses(statuses);
+            return Optional.of(OrderStatus.PAID);
+        });
+
+        orderService.updateOrderStatusByReference("updateOrderStatusRacingPaymentReconciler");
+
+        assertEquals(OrderStatus.PAID,
+                orderService.getOrderByReference("updateOrderStatusRacingPaymentReconciler").getStatus());
+        assertEquals(1, applicationEvents.stream(OrderPaidEvent.class).count());
+
+        reset(paymentService);
+    }
+
+    @Test
+    public void applyPaymentStatusesToPaid() {
+        User user = persistUser();
+        Order order = new Order(user);
+        order.setStatus(OrderStatus.PENDING);
+        order.setReference("applyPaymentStatusesToPaid");
+        Long orderId = testEntityManager.persistAndGetId(order, Long.class);
+
+        List<Order> changedOrders = orderService.applyPaymentStatuses(
+                Collections.singletonMap("applyPaymentStatusesToPaid", OrderStatus.PAID));
+
+        assertEquals(1, changedOrders.size());
+        assertEquals(OrderStatus.PAID, orderService.getOrderById(orderId).getStatus());
+        assertEquals(1, applicationEvents.stream(OrderPaidEvent.class).count());
+    }
+
+    @Test
+    public void applyPaymentStatusesAfterWebhook() {
+        User user = persistUser();
+        Order order = new Order(user);
+        order.setStatus(OrderStatus.PENDING);
+        order.setReference("applyPaymentStatusesAfterWebhook");
+        testEntityManager.persist(order);
+        given(paymentService.getStatus(anyString())).willReturn(Optional.of(OrderStatus.PAID));
+
+        orderService.updateOrderStatusByReference("applyPaymentStatusesAfterWebhook");
+        List<Order> changedOrders = orderService.applyPaymentStatuses(
+                Collections.singletonMap("applyPaymentStatusesAfterWebhook", OrderStatus.PAID));
+
+        assertTrue(changedOrders.isEmpty());
+        assertEquals(1, applicationEvents.stream(OrderPaidEvent.class).count());
 
         reset(paymentService);
     }
@@ -0,0 +1,122 @@
+package ch.wisv.areafiftylan.unit;
+
+import ch.wisv.areafiftylan.products.model.order.Order;
+import ch.wisv.areafiftylan.products.model.order.OrderStatus;
+import ch.wisv.areafiftylan.products.service.MolliePaymentService;
+import ch.wisv.areafiftylan.products.service.OrderService;
+import ch.wisv.areafiftylan.products.service.PaymentReconciler;
+import ch.wisv.areafiftylan.products.service.repository.OrderRepository;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class PaymentReconcilerTest {
+
+    /**
+     * Payment statuses served by the stub of the Mollie API, by payment id
+     */
+    private final Map<String, String> mollieStatuses = new ConcurrentHashMap<>();
+    private final AtomicInteger mollieRequests = new AtomicInteger();
+
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final OrderService orderService = mock(OrderService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private HttpServer mollie;
+    private PaymentReconciler paymentReconciler;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        mollie = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        mollie.createContext("/v1/payments/", this::handlePayment);
+        mollie.start();
+
+        MolliePaymentService paymentService = new MolliePaymentService(orderRepository, "test_key",
+                "http://localhost:" + mollie.getAddress().getPort() + "/v1");
+        paymentReconciler = new PaymentReconciler(orderRepository, orderService, paymentService, meterRegistry, 2, 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        paymentReconciler.shutdown();
+        mollie.stop(0);
+    }
+
+    private void handlePayment(HttpExchange exchange) throws IOException {
+        mollieRequests.incrementAndGet();
+        String path = exchange.getRequestURI().getPath();
+        String id = path.substring(path.lastIndexOf('/') + 1);
+        String status = mollieStatuses.get(id);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        String body;
+        if (status == null) {
+            body = "{\"error\":{\"type\":\"request\",\"message\":\"The payment id is invalid\"}}";
+            exchange.sendResponseHeaders(404, body.length());
+        } else {
+            body = "{\"id\":\"" + id + "\",\"status\":\"" + status + "\"}";
+            exchange.sendResponseHeaders(200, body.length());
+        }
+
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private Order pendingOrder(long id, String reference) {
+        Order order = mock(Order.class);
+        given(order.getId()).willReturn(id);
+        given(order.getReference()).willReturn(reference);
+        given(order.getStatus()).willReturn(OrderStatus.PENDING);
+        return order;
+    }
+
+    @Test
+    public void reconcilePendingOrders() {
+        mollieStatuses.put("tr_paid", "paid");
+        mollieStatuses.put("tr_open", "open");
+        mollieStatuses.put("tr_expired", "expired");
+
+        given(orderRepository.findAllByIdGreaterThanAndStatusOrderByIdAsc(eq(0L), eq(OrderStatus.PENDING), any()))
+                .willReturn(Arrays.asList(pendingOrder(1L, "tr_paid"), pendingOrder(2L, "tr_open")));
+        given(orderRepository.findAllByIdGreaterThanAndStatusOrderByIdAsc(eq(2L), eq(OrderStatus.PENDING), any()))
+                .willReturn(Arrays.asList(pendingOrder(3L, "tr_expired"), pendingOrder(4L, "tr_unknown")));
+
+        int checked = paymentReconciler.reconcilePendingOrders();
+
+        assertEquals(4, checked);
+        assertEquals(4, mollieRequests.get());
+        verify(orderService).applyPaymentStatuses(Collections.singletonMap("tr_paid", OrderStatus.PAID));
+        verify(orderService).applyPaymentStatuses(Collections.singletonMap("tr_expired", OrderStatus.EXPIRED));
+        assertEquals(1, meterRegistry.get("a5l.payments.reconcile").tag("result", "failed").counter().count());
+    }
+
+    @Test
+    public void reconcileWithoutPendingOrders() {
+        int checked = paymentReconciler.reconcilePendingOrders();
+
+        assertEquals(0, checked);
+        assertEquals(0, mollieRequests.get());
+        assertEquals(0, meterRegistry.get("a5l.payments.reconcile").tag("result", "checked").counter().count());
+    }
+}
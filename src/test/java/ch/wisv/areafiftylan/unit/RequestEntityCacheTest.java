@@ -0,0 +1,119 @@
+package ch.wisv.areafiftylan.unit;
+
+import ch.wisv.areafiftylan.teams.model.Team;
+import ch.wisv.areafiftylan.utils.RequestEntityCache;
+import ch.wisv.areafiftylan.utils.RequestEntityCacheListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RequestEntityCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final Supplier<Team> loader = () -> {
+        loads.incrementAndGet();
+        return new Team();
+    };
+
+    private ServletRequestAttributes requestAttributes;
+
+    @BeforeEach
+    public void startRequest() {
+        requestAttributes = new ServletRequestAttributes(new MockHttpServletRequest());
+        RequestContextHolder.setRequestAttributes(requestAttributes);
+    }
+
+    @AfterEach
+    public void endRequest() {
+        RequestContextHolder.resetRequestAttributes();
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    public void loadOnMiss() {
+        Team team = RequestEntityCache.get(Team.class, 1L, loader);
+
+        assertEquals(1, loads.get());
+        assertNotSame(team, RequestEntityCache.get(Team.class, 2L, loader));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void returnCachedEntityOnHit() {
+        Team team = RequestEntityCache.get(Team.class, 1L, loader);
+
+        assertSame(team, RequestEntityCache.get(Team.class, 1L, loader));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void failedLoadIsNotCached() {
+        assertThrows(IllegalStateException.class, () -> RequestEntityCache.get(Team.class, 1L, () -> {
+            throw new IllegalStateException("Not found");
+        }));
+
+        RequestEntityCache.get(Team.class, 1L, loader);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void evictOnWrite() {
+        Team team = RequestEntityCache.get(Team.class, 1L, loader);
+
+        new RequestEntityCacheListener().clearRequestEntityCache(team);
+
+        assertNotSame(team, RequestEntityCache.get(Team.class, 1L, loader));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void cleanupAtEndOfRequest() {
+        Team team = RequestEntityCache.get(Team.class, 1L, loader);
+
+        requestAttributes.requestCompleted();
+        endRequest();
+        startRequest();
+
+        assertNotSame(team, RequestEntityCache.get(Team.class, 1L, loader));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void loadOutsideOfRequest() {
+        endRequest();
+
+        RequestEntityCache.get(Team.class, 1L, loader);
+        RequestEntityCache.get(Team.class, 1L, loader);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void loadAgainInTransaction() {
+        Team detached = RequestEntityCache.get(Team.class, 1L, loader);
+
+        // The cached entity is detached, so the transaction gets one from its own persistence context
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        Team managed = RequestEntityCache.get(Team.class, 1L, loader);
+        assertNotSame(detached, managed);
+        assertEquals(2, loads.get());
+
+        // After the transaction, the entity loaded in it is the cached one
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        assertSame(managed, RequestEntityCache.get(Team.class, 1L, loader));
+        assertEquals(2, loads.get());
+    }
+}
@@ -14,10 +14,12 @@
 import ch.wisv.areafiftylan.teams.model.Team;
 import ch.wisv.areafiftylan.teams.service.TeamServiceImpl;
 import ch.wisv.areafiftylan.users.model.Gender;
+import ch.wisv.areafiftylan.security.BoundedPasswordEncoder;
 import ch.wisv.areafiftylan.users.model.User;
 import ch.wisv.areafiftylan.users.service.UserRepository;
 import ch.wisv.areafiftylan.users.service.UserServiceImpl;
 import ch.wisv.areafiftylan.utils.mail.MailServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -29,6 +31,7 @@
 import org.springframework.context.annotation.Import;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.thymeleaf.spring5.SpringTemplateEngine;
 
@@ -40,7 +43,10 @@
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 @DataJpaTest
-@Import({TestRunner.class, OrderServiceImpl.class, RFIDServiceImpl.class, SeatServiceImpl.class, TicketServiceImpl.class, SubscriptionServiceImpl.class, UserServiceImpl.class, TeamServiceImpl.class})
+// Every @DataJpaTest gets a database of its own, but the CacheManager is shared by all contexts in the JVM
+@TestPropertySource(properties = { "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false" })
+@Import({TestRunner.class, OrderServiceImpl.class, RFIDServiceImpl.class, SeatServiceImpl.class, TicketServiceImpl.class, SubscriptionServiceImpl.class, UserServiceImpl.class, TeamServiceImpl.class, BoundedPasswordEncoder.class, SimpleMeterRegistry.class})
 public abstract class ServiceTest {
 
     @MockBean
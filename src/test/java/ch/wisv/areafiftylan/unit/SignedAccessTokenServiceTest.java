@@ -0,0 +1,124 @@
+package ch.wisv.areafiftylan.unit;
+
+import ch.wisv.areafiftylan.exception.AccessTokenUnavailableException;
+import ch.wisv.areafiftylan.security.token.AuthenticationToken;
+import ch.wisv.areafiftylan.security.token.SignedAccessToken;
+import ch.wisv.areafiftylan.security.token.SignedAccessTokenService;
+import ch.wisv.areafiftylan.users.model.Role;
+import ch.wisv.areafiftylan.users.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SignedAccessTokenServiceTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    private final Clock clock = mock(Clock.class);
+
+    private final SignedAccessTokenService signedAccessTokenService =
+            new SignedAccessTokenService(true, 15, "test-secret", clock);
+
+    private AuthenticationToken authenticationToken;
+
+    @BeforeEach
+    public void setup() {
+        when(clock.millis()).thenReturn(NOW);
+
+        User user = new User("user@mail.com", "hash");
+        user.setId(42L);
+        user.addRole(Role.ROLE_USER);
+        user.addRole(Role.ROLE_OPERATOR);
+
+        authenticationToken = new AuthenticationToken(user);
+        authenticationToken.setId(7L);
+    }
+
+    @Test
+    public void issueAndVerify() {
+        String token = signedAccessTokenService.issue(authenticationToken);
+
+        Optional<SignedAccessToken> accessToken = signedAccessTokenService.verify(token);
+
+        assertTrue(signedAccessTokenService.isSignedToken(token));
+        assertTrue(accessToken.isPresent());
+        assertEquals(42L, accessToken.get().getUserId());
+        assertEquals("user@mail.com", accessToken.get().getEmail());
+        assertEquals(7L, accessToken.get().getSessionId());
+        assertTrue(accessToken.get().getRoles().contains(Role.ROLE_OPERATOR));
+    }
+
+    @Test
+    public void principalFromClaims() {
+        String token = signedAccessTokenService.issue(authenticationToken);
+
+        User principal = signedAccessTokenService.verify(token).orElseThrow().toPrincipal();
+
+        assertEquals(42L, principal.getId());
+        assertEquals("user@mail.com", principal.getEmail());
+        assertTrue(principal.hasRole(Role.ROLE_OPERATOR));
+        assertFalse(principal.hasRole(Role.ROLE_ADMIN));
+    }
+
+    @Test
+    public void rejectExpiredToken() {
+        String token = signedAccessTokenService.issue(authenticationToken);
+
+        when(clock.millis()).thenReturn(NOW + TimeUnit.MINUTES.toMillis(15));
+
+        assertFalse(signedAccessTokenService.verify(token).isPresent());
+    }
+
+    @Test
+    public void issueWhenDisabled() {
+        SignedAccessTokenService disabled = new SignedAccessTokenService(false, 15, "test-secret", clock);
+
+        assertThrows(AccessTokenUnavailableException.class, () -> disabled.issue(authenticationToken));
+    }
+
+    @Test
+    public void rejectTamperedToken() {
+        String token = signedAccessTokenService.issue(authenticationToken);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertFalse(signedAccessTokenService.verify(tampered).isPresent());
+        assertFalse(signedAccessTokenService.verify("v2.garbage").isPresent());
+    }
+
+    @Test
+    public void rejectTokenSignedWithOtherSecret() {
+        String token = new SignedAccessTokenService(true, 15, "other-secret", clock).issue(authenticationToken);
+
+        assertFalse(signedAccessTokenService.verify(token).isPresent());
+    }
+
+    @Test
+    public void rejectRevokedSession() {
+        String token = signedAccessTokenService.issue(authenticationToken);
+
+        signedAccessTokenService.revokeSession(7L);
+
+        assertFalse(signedAccessTokenService.verify(token).isPresent());
+    }
+
+    @Test
+    public void rejectTokensIssuedBeforeUserRevocation() {
+        String token = signedAccessTokenService.issue(authenticationToken);
+
+        signedAccessTokenService.revokeUser(42L);
+        when(clock.millis()).thenReturn(NOW + 1);
+
+        assertFalse(signedAccessTokenService.verify(token).isPresent());
+        assertTrue(signedAccessTokenService.verify(signedAccessTokenService.issue(authenticationToken)).isPresent());
+    }
+}
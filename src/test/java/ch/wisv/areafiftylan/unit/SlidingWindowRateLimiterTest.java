@@ -0,0 +1,115 @@
+package ch.wisv.areafiftylan.unit;
+
+import ch.wisv.areafiftylan.security.ratelimit.SlidingWindowRateLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SlidingWindowRateLimiterTest {
+
+    private static final long WINDOW = 60_000;
+
+    private final AtomicLong clock = new AtomicLong(100 * WINDOW);
+
+    @Test
+    public void blockAfterLimit() {
+        SlidingWindowRateLimiter rateLimiter = new SlidingWindowRateLimiter(10, WINDOW, 1024, clock::get);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(rateLimiter.tryAcquire("10.0.0.1"));
+        }
+        assertFalse(rateLimiter.tryAcquire("10.0.0.1"));
+        assertTrue(rateLimiter.tryAcquire("10.0.0.2"));
+    }
+
+    @Test
+    public void resetKey() {
+        SlidingWindowRateLimiter rateLimiter = new SlidingWindowRateLimiter(1, WINDOW, 1024, clock::get);
+
+        assertTrue(rateLimiter.tryAcquire("10.0.0.1"));
+        assertFalse(rateLimiter.tryAcquire("10.0.0.1"));
+        rateLimiter.reset("10.0.0.1");
+        assertTrue(rateLimiter.tryAcquire("10.0.0.1"));
+    }
+
+    @Test
+    public void previousWindowSlidesOut() {
+        SlidingWindowRateLimiter rateLimiter = new SlidingWindowRateLimiter(10, WINDOW, 1024, clock::get);
+
+        clock.set(100 * WINDOW + WINDOW - 1000);
+        for (int i = 0; i < 10; i++) {
+            rateLimiter.tryAcquire("10.0.0.1");
+        }
+
+        // Right after the window rolls over, the previous window still counts almost fully
+        clock.set(101 * WINDOW + 1000);
+        assertFalse(rateLimiter.tryAcquire("10.0.0.1"));
+
+        // Near the end of the next window it has mostly slid out
+        clock.set(101 * WINDOW + WINDOW - 1000);
+        assertTrue(rateLimiter.tryAcquire("10.0.0.1"));
+
+        clock.set(103 * WINDOW);
+        assertTrue(rateLimiter.tryAcquire("10.0.0.1"));
+    }
+
+    @Test
+    public void rotatingKeysDontFlushCounters() {
+        SlidingWindowRateLimiter rateLimiter = new SlidingWindowRateLimiter(5, WINDOW, 16, clock::get);
+
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.tryAcquire("victim");
+        }
+        for (int i = 0; i < 10_000; i++) {
+            rateLimiter.tryAcquire("attacker" + i);
+        }
+
+        assertFalse(rateLimiter.tryAcquire("victim"));
+    }
+
+    @Test
+    public void fullTableDoesntLockOutNewKeys() {
+        SlidingWindowRateLimiter rateLimiter = new SlidingWindowRateLimiter(5, WINDOW, 16, clock::get);
+
+        for (int i = 0; i < 10_000; i++) {
+            rateLimiter.tryAcquire("attacker" + i);
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(rateLimiter.tryAcquire("user"));
+        }
+        assertFalse(rateLimiter.tryAcquire("user"));
+    }
+
+    @Test
+    public void exactUnderContention() throws InterruptedException {
+        SlidingWindowRateLimiter rateLimiter = new SlidingWindowRateLimiter(100, WINDOW, 1024, clock::get);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger allowed = new AtomicInteger();
+
+        for (int i = 0; i < 10_000; i++) {
+            executor.submit(() -> {
+                start.await();
+                if (rateLimiter.tryAcquire("10.0.0.1")) {
+                    allowed.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(100, allowed.get());
+    }
+}
@@ -2,6 +2,7 @@
 
 import ch.wisv.areafiftylan.products.model.order.Order;
 import ch.wisv.areafiftylan.security.authentication.AuthenticationServiceImpl;
+import ch.wisv.areafiftylan.security.token.SignedAccessTokenService;
 import ch.wisv.areafiftylan.utils.ScheduledTasks;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,7 +13,7 @@
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
-@Import({ScheduledTasks.class, AuthenticationServiceImpl.class})
+@Import({ScheduledTasks.class, AuthenticationServiceImpl.class, SignedAccessTokenService.class})
 public class TaskSchedulerTest extends ServiceTest {
 
     @Autowired
@@ -0,0 +1,40 @@
+package ch.wisv.areafiftylan.unit;
+
+import ch.wisv.areafiftylan.products.service.TicketAvailabilityBroadcaster;
+import ch.wisv.areafiftylan.products.service.TicketService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TicketAvailabilityBroadcasterTest {
+
+    private final TicketService ticketService = mock(TicketService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final TicketAvailabilityBroadcaster broadcaster =
+            new TicketAvailabilityBroadcaster(ticketService, meterRegistry, 30, 1, 2);
+
+    @AfterEach
+    public void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    public void rejectSubscribersAboveLimit() {
+        when(ticketService.getAvailableTickets()).thenReturn(Collections.emptyList());
+
+        assertTrue(broadcaster.subscribe().isPresent());
+        assertTrue(broadcaster.subscribe().isPresent());
+        assertFalse(broadcaster.subscribe().isPresent());
+
+        assertEquals(2, meterRegistry.get("a5l.tickets.subscribers").gauge().value());
+    }
+}
@@ -2,11 +2,15 @@
 
 import ch.wisv.areafiftylan.exception.*;
 import ch.wisv.areafiftylan.extras.rfid.model.RFIDLink;
+import ch.wisv.areafiftylan.products.model.TeamMemberTicketResponse;
 import ch.wisv.areafiftylan.products.model.Ticket;
+import ch.wisv.areafiftylan.products.model.TicketInformationResponse;
 import ch.wisv.areafiftylan.products.model.TicketOption;
 import ch.wisv.areafiftylan.products.model.TicketType;
+import ch.wisv.areafiftylan.products.model.TransportTicketDTO;
 import ch.wisv.areafiftylan.security.token.TicketTransferToken;
 import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.utils.KeysetPage;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -95,6 +99,38 @@ public void getNumberSoldOfTypeTypeNull() {
         assertEquals(Integer.valueOf(0), ticketService.getNumberSoldOfType(null));
     }
 
+    @Test
+    public void getAvailableTicketsAfterRequest() {
+        TicketType ticketType = persistTicket().getType();
+        int numberSold = ticketService.getNumberSoldOfType(ticketType);
+
+        assertThat(ticketService.getAvailableTickets()).
+                filteredOn(info -> info.getTicketType().equals(TEST_TICKET)).
+                extracting(TicketInformationResponse::getNumberSold).
+                containsExactly(numberSold);
+
+        persistTicket();
+
+        assertThat(ticketService.getAvailableTickets()).
+                filteredOn(info -> info.getTicketType().equals(TEST_TICKET)).
+                extracting(TicketInformationResponse::getNumberSold).
+                containsExactly(numberSold + 1);
+    }
+
+    @Test
+    public void getAvailableTicketsAfterRemove() {
+        Ticket ticket = persistTicket();
+        int numberSold = ticketService.getNumberSoldOfType(ticket.getType());
+        ticketService.getAvailableTickets();
+
+        ticketService.removeTicket(ticket.getId());
+
+        assertThat(ticketService.getAvailableTickets()).
+                filteredOn(info -> info.getTicketType().equals(TEST_TICKET)).
+                extracting(TicketInformationResponse::getNumberSold).
+                containsExactly(numberSold - 1);
+    }
+
     @Test
     public void findValidTicketsByOwnerEmail() {
         User user = persistUser();
@@ -173,6 +209,23 @@ public void validateTicketAlreadyValid() {
         assertTrue(testEntityManager.find(Ticket.class, ticket.getId()).isValid());
     }
 
+    @Test
+    public void markTicketsPaid() {
+        User user = persistUser();
+        Ticket ticket = persistTicket();
+        Ticket otherTicket = persistTicket();
+
+        ticketService.markTicketsPaid(Arrays.asList(ticket, otherTicket), user);
+
+        assertTrue(ticket.isValid());
+        assertEquals(user, ticket.getOwner());
+        for (Long ticketId : Arrays.asList(ticket.getId(), otherTicket.getId())) {
+            Ticket stored = ticketRepository.findById(ticketId).orElseThrow();
+            assertTrue(stored.isValid());
+            assertEquals(user.getId(), stored.getOwner().getId());
+        }
+    }
+
     @Test
     public void validateTicketNotFound() {
         Long id = 9999L;
@@ -452,11 +505,25 @@ public void getOwnedTicketsAndFromTeamMembersFull() {
         persistTeamWithCaptainAndMembers("Team1", captain, Arrays.asList(member1Team1, member2Team1));
         persistTeamWithCaptainAndMembers("Team2", captain, Arrays.asList(member1Team2, member2Team2));
 
-        Collection<Ticket> tickets = ticketService.getOwnedTicketsAndFromTeamMembers(captain);
+        Collection<TeamMemberTicketResponse> tickets = ticketService.getOwnedTicketsAndFromTeamMembers(captain);
+
+        assertThat(tickets).extracting(TeamMemberTicketResponse::getId).containsExactlyInAnyOrder(
+                captainTicket.getId(), member1Team1Ticket.getId(), member2Team1Ticket.getId(),
+                member1Team2Ticket.getId(), member2Team2Ticket.getId());
+    }
+
+    @Test
+    public void getOwnedTicketsAndFromTeamMembersSkipsInvalidTickets() {
+        User captain = persistUser();
+        Ticket captainTicket = persistTicketForUser(captain);
+        User member = persistUser();
+        Ticket memberTicket = persistTicketForUser(member);
+        memberTicket.setValid(false);
+        persistTeamWithCaptainAndMembers("Team1", captain, Collections.singletonList(member));
 
-        assertThat(tickets).containsAll(
-                Arrays.asList(captainTicket, member1Team1Ticket, member2Team1Ticket, member1Team2Ticket,
-                        member2Team2Ticket));
+        Collection<TeamMemberTicketResponse> tickets = ticketService.getOwnedTicketsAndFromTeamMembers(captain);
+
+        assertThat(tickets).extracting(TeamMemberTicketResponse::getId).containsExactly(captainTicket.getId());
     }
 
     @Test
@@ -466,9 +533,9 @@ public void getOwnedTicketsAndFromTeamMembersOnlyCaptainInTeams() {
         persistTeamWithCaptain("Team1", captain);
         persistTeamWithCaptain("Team2", captain);
 
-        Collection<Ticket> tickets = ticketService.getOwnedTicketsAndFromTeamMembers(captain);
+        Collection<TeamMemberTicketResponse> tickets = ticketService.getOwnedTicketsAndFromTeamMembers(captain);
 
-        assertThat(tickets).containsExactly(captainTicket);
+        assertThat(tickets).extracting(TeamMemberTicketResponse::getId).containsExactly(captainTicket.getId());
     }
 
     @Test
@@ -476,9 +543,9 @@ public void getOwnedTicketsAndFromTeamMembersOnlyCaptainNoTeams() {
         User captain = persistUser();
         Ticket captainTicket = persistTicketForUser(captain);
 
-        Collection<Ticket> tickets = ticketService.getOwnedTicketsAndFromTeamMembers(captain);
+        Collection<TeamMemberTicketResponse> tickets = ticketService.getOwnedTicketsAndFromTeamMembers(captain);
 
-        assertThat(tickets).containsExactly(captainTicket);
+        assertThat(tickets).extracting(TeamMemberTicketResponse::getId).containsExactly(captainTicket.getId());
     }
 
     @Test
@@ -525,9 +592,10 @@ public void getAllTicketsWithTransport() {
         ticketWithoutPickup.setValid(true);
         testEntityManager.persist(ticketWithoutPickup);
 
-        Collection<Ticket> tickets = ticketService.getAllTicketsWithTransport();
+        Collection<TransportTicketDTO> tickets = ticketService.getAllTicketsWithTransport();
 
-        assertEquals(tickets, Arrays.asList(ticketWithPickup, ticketWithPickup2));
+        assertThat(tickets).extracting(TransportTicketDTO::getTicketId)
+                .containsExactly(ticketWithPickup.getId(), ticketWithPickup2.getId());
     }
 
     @Test
@@ -537,11 +605,36 @@ public void getAllTicketsWithTransportZero() {
         ticketWithoutPickup.setValid(true);
         testEntityManager.persist(ticketWithoutPickup);
 
-        Collection<Ticket> tickets = ticketService.getAllTicketsWithTransport();
+        Collection<TransportTicketDTO> tickets = ticketService.getAllTicketsWithTransport();
 
         assertThat(tickets).isEmpty();
     }
 
+    @Test
+    public void getTicketsWithTransportPage() {
+        User user = persistUser();
+        Ticket ticketWithPickup = persistTicketForUser(user);
+        Ticket ticketWithoutOwner = persistTicket();
+        Ticket ticketWithoutPickup =
+                ticketService.requestTicketOfType(TEST_TICKET, Collections.singletonList(CH_MEMBER_OPTION));
+        testEntityManager.persist(ticketWithoutPickup);
+
+        KeysetPage<TransportTicketDTO> firstPage = ticketService.getTicketsWithTransport(0, 1);
+        KeysetPage<TransportTicketDTO> secondPage =
+                ticketService.getTicketsWithTransport(firstPage.getNextCursor(), 1);
+
+        assertThat(firstPage.getItems()).hasSize(1);
+        TransportTicketDTO transportTicket = firstPage.getItems().get(0);
+        assertEquals(ticketWithPickup.getId(), transportTicket.getTicketId());
+        assertEquals(user.getEmail(), transportTicket.getEmail());
+        assertEquals(user.getProfile().getAddress(), transportTicket.getAddress());
+        assertEquals(user.getProfile().getPhoneNumber(), transportTicket.getPhoneNumber());
+
+        assertThat(secondPage.getItems()).extracting(TransportTicketDTO::getTicketId)
+                .containsExactly(ticketWithoutOwner.getId());
+        assertThat(secondPage.getItems().get(0).getEmail()).isNull();
+    }
+
     @Test
     public void assignTicketToUserAnonymous() {
         User user = persistUser();
@@ -0,0 +1,137 @@
+package ch.wisv.areafiftylan.unit;
+
+import ch.wisv.areafiftylan.security.token.repository.PasswordResetTokenRepository;
+import ch.wisv.areafiftylan.security.token.repository.VerificationTokenRepository;
+import ch.wisv.areafiftylan.users.model.Role;
+import ch.wisv.areafiftylan.users.model.RoleDTO;
+import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.users.model.UserDTO;
+import ch.wisv.areafiftylan.users.service.UserRepository;
+import ch.wisv.areafiftylan.users.service.UserServiceImpl;
+import ch.wisv.areafiftylan.utils.mail.MailService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UserEmailCacheTest {
+
+    private static final String EMAIL = "user@mail.com";
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    private UserServiceImpl userService;
+    private User user;
+
+    @BeforeEach
+    public void setup() {
+        PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+        when(passwordEncoder.encode(anyString())).thenReturn("hash");
+
+        userService = new UserServiceImpl(userRepository, mock(VerificationTokenRepository.class),
+                mock(PasswordResetTokenRepository.class), mock(MailService.class), passwordEncoder,
+                mock(ApplicationEventPublisher.class), 100, 300);
+
+        user = new User(EMAIL, "hash");
+        user.setEmail(EMAIL);
+        user.setId(1L);
+        user.addRole(Role.ROLE_USER);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userRepository.findOneByNormalizedEmail(EMAIL)).thenReturn(Optional.of(user));
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    public void emailResolvedFromCache() {
+        assertEquals(user, userService.getUserByEmail(EMAIL));
+        assertEquals(user, userService.getUserByEmail("User@Mail.com"));
+        assertEquals(user, userService.loadUserByUsername(EMAIL));
+
+        verify(userRepository, times(1)).findOneByNormalizedEmail(EMAIL);
+        verify(userRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    public void staleEntryFallsBackToEmail() {
+        userService.getUserByEmail(EMAIL);
+
+        // The email changed on another instance, so the cached id now belongs to another email
+        User otherUser = new User("other@mail.com", "hash");
+        otherUser.setEmail("other@mail.com");
+        otherUser.setId(1L);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(otherUser));
+        when(userRepository.findOneByNormalizedEmail(EMAIL)).thenReturn(Optional.empty());
+
+        assertTrue(userService.checkEmailAvailable(EMAIL));
+        verify(userRepository, times(2)).findOneByNormalizedEmail(EMAIL);
+    }
+
+    @Test
+    public void editEvicts() {
+        assertEvictedBy(() -> userService.edit(1L, userDTO("new@mail.com", "")));
+    }
+
+    @Test
+    public void replaceEvicts() {
+        assertEvictedBy(() -> userService.replace(1L, userDTO("new@mail.com", "password")));
+    }
+
+    @Test
+    public void lockEvicts() {
+        assertEvictedBy(() -> userService.lock(1L));
+    }
+
+    @Test
+    public void unlockEvicts() {
+        assertEvictedBy(() -> userService.unlock(1L));
+    }
+
+    @Test
+    public void addRoleEvicts() {
+        RoleDTO roleDTO = new RoleDTO();
+        roleDTO.setRole(Role.ROLE_ADMIN);
+        assertEvictedBy(() -> userService.addRole(1L, roleDTO));
+    }
+
+    @Test
+    public void deleteRoleEvicts() {
+        user.addRole(Role.ROLE_ADMIN);
+        RoleDTO roleDTO = new RoleDTO();
+        roleDTO.setRole(Role.ROLE_ADMIN);
+        assertEvictedBy(() -> userService.deleteRole(1L, roleDTO));
+    }
+
+    private static UserDTO userDTO(String email, String password) {
+        UserDTO userDTO = new UserDTO();
+        ReflectionTestUtils.setField(userDTO, "email", email);
+        ReflectionTestUtils.setField(userDTO, "password", password);
+        return userDTO;
+    }
+
+    /**
+     * Resolve the email once to cache it, run the change and check that resolving the email again goes to the
+     * database instead of the cache.
+     */
+    private void assertEvictedBy(Runnable change) {
+        userService.getUserByEmail(EMAIL);
+        verify(userRepository, times(1)).findOneByNormalizedEmail(EMAIL);
+
+        change.run();
+        userService.checkEmailAvailable(EMAIL);
+
+        verify(userRepository, times(2)).findOneByNormalizedEmail(EMAIL);
+    }
+}
@@ -0,0 +1,39 @@
+package ch.wisv.areafiftylan.unit;
+
+import ch.wisv.areafiftylan.users.model.User;
+import ch.wisv.areafiftylan.users.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class UserNormalizedEmailTest extends ServiceTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    public void updateMigratedDuplicate() {
+        User duplicate = testEntityManager.persistAndFlush(new User("Duplicate@Mail.com", "hash"));
+        String suffixedEmail = "duplicate@mail.com#duplicate-" + duplicate.getId();
+
+        // Like V1_1 does for a user whose email only differs in case from the email of an older user
+        testEntityManager.getEntityManager().
+                createNativeQuery("update users set normalized_email = ?1 where id = ?2").
+                setParameter(1, suffixedEmail).
+                setParameter(2, duplicate.getId()).
+                executeUpdate();
+        testEntityManager.persistAndFlush(
+                new User("duplicate@mail.com", new BCryptPasswordEncoder().encode("password")));
+        testEntityManager.clear();
+
+        userService.lock(duplicate.getId());
+        testEntityManager.clear();
+
+        User updated = userRepository.findById(duplicate.getId()).orElseThrow();
+        assertFalse(updated.isAccountNonLocked());
+        assertEquals(suffixedEmail, updated.getNormalizedEmail());
+    }
+}
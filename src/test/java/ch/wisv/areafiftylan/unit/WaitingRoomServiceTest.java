@@ -0,0 +1,110 @@
+package ch.wisv.areafiftylan.unit;
+
+import ch.wisv.areafiftylan.security.waitingroom.QueuePosition;
+import ch.wisv.areafiftylan.security.waitingroom.WaitingRoomService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WaitingRoomServiceTest {
+
+    private final WaitingRoomService waitingRoomService =
+            new WaitingRoomService(true, 2, 60, "test-secret", new SimpleMeterRegistry());
+
+    @Test
+    public void joinGivesIncreasingPositions() {
+        QueuePosition first = waitingRoomService.getPosition(waitingRoomService.join()).orElseThrow();
+        QueuePosition second = waitingRoomService.getPosition(waitingRoomService.join()).orElseThrow();
+
+        assertEquals(0, first.getPosition());
+        assertEquals(1, second.getPosition());
+        assertFalse(second.isAdmitted());
+        assertEquals(1, second.getAhead());
+    }
+
+    @Test
+    public void admitNextAdmitsRate() {
+        String first = waitingRoomService.join();
+        String second = waitingRoomService.join();
+        String third = waitingRoomService.join();
+
+        waitingRoomService.admitNext();
+
+        assertTrue(waitingRoomService.getPosition(first).orElseThrow().isAdmitted());
+        assertTrue(waitingRoomService.getPosition(second).orElseThrow().isAdmitted());
+        QueuePosition thirdPosition = waitingRoomService.getPosition(third).orElseThrow();
+        assertFalse(thirdPosition.isAdmitted());
+        assertEquals(0, thirdPosition.getAhead());
+        assertEquals(1, thirdPosition.getEstimatedWaitSeconds());
+    }
+
+    @Test
+    public void admitNextDoesNotAdmitAhead() {
+        waitingRoomService.admitNext();
+        waitingRoomService.admitNext();
+
+        String first = waitingRoomService.join();
+        String second = waitingRoomService.join();
+        String third = waitingRoomService.join();
+
+        assertFalse(waitingRoomService.getPosition(first).orElseThrow().isAdmitted());
+
+        waitingRoomService.admitNext();
+
+        assertTrue(waitingRoomService.getPosition(second).orElseThrow().isAdmitted());
+        assertFalse(waitingRoomService.getPosition(third).orElseThrow().isAdmitted());
+    }
+
+    @Test
+    public void tamperedTokenRejected() {
+        String token = waitingRoomService.join();
+        String tampered = token.substring(0, 3) + "A" + token.substring(4);
+
+        assertFalse(waitingRoomService.getPosition(tampered).isPresent());
+        assertFalse(waitingRoomService.getPosition("garbage").isPresent());
+        assertFalse(waitingRoomService.getPosition(null).isPresent());
+    }
+
+    @Test
+    public void tokenFromOtherSecretRejected() {
+        WaitingRoomService other = new WaitingRoomService(true, 2, 60, "other-secret", new SimpleMeterRegistry());
+
+        assertFalse(waitingRoomService.getPosition(other.join()).isPresent());
+    }
+
+    @Test
+    public void expiredTokenRejected() {
+        WaitingRoomService expiring = new WaitingRoomService(true, 2, -1, "test-secret", new SimpleMeterRegistry());
+
+        assertFalse(expiring.getPosition(expiring.join()).isPresent());
+    }
+
+    @Test
+    public void positionClaimedOnce() {
+        assertTrue(waitingRoomService.claim(0));
+        assertFalse(waitingRoomService.claim(0));
+    }
+
+    @Test
+    public void releasedPositionClaimedAgain() {
+        waitingRoomService.claim(0);
+        waitingRoomService.release(0);
+
+        assertTrue(waitingRoomService.claim(0));
+    }
+
+    @Test
+    public void boundPositionNotReleased() {
+        waitingRoomService.claim(0);
+        waitingRoomService.bind(0, 42);
+        waitingRoomService.release(0);
+
+        assertFalse(waitingRoomService.claim(0));
+        assertTrue(waitingRoomService.isBoundTo(0, 42));
+        assertFalse(waitingRoomService.isBoundTo(0, 43));
+        assertFalse(waitingRoomService.isBoundTo(1, 42));
+    }
+}